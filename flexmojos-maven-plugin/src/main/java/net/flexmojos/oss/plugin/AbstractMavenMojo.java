@@ -29,6 +29,7 @@ import net.flexmojos.oss.plugin.compiler.attributes.MavenRuntimeException;
 import net.flexmojos.oss.plugin.compiler.lazyload.Cacheable;
 import net.flexmojos.oss.plugin.compiler.lazyload.NotCacheable;
 import net.flexmojos.oss.plugin.utilities.MavenUtils;
+import net.flexmojos.oss.plugin.utilities.SourceIndex;
 import net.flexmojos.oss.util.PathUtil;
 import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.lang.ArrayUtils;
@@ -795,6 +796,14 @@ public abstract class AbstractMavenMojo
         return PathUtil.file(targetDirectory);
     }
 
+    /**
+     * @return the index of the module sources, shared with the other mojos of the build
+     */
+    protected SourceIndex getSourceIndex()
+    {
+        return SourceIndex.getInstance( targetDirectory );
+    }
+
     public File getUnpackedArtifact( String groupId, String artifactId, String version, String classifier, String type )
     {
         Artifact artifact = resolve( groupId, artifactId, version, classifier, type );
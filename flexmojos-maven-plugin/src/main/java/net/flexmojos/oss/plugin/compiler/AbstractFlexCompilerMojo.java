@@ -71,7 +71,6 @@ import org.apache.maven.model.Contributor;
 import org.apache.maven.model.Developer;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
-import org.codehaus.plexus.archiver.UnArchiver;
 import org.codehaus.plexus.util.FileUtils;
 import org.codehaus.plexus.util.IOUtil;
 import org.codehaus.plexus.util.xml.Xpp3Dom;
@@ -117,6 +116,7 @@ import net.flexmojos.oss.plugin.compiler.attributes.MavenRuntimeException;
 import net.flexmojos.oss.plugin.compiler.lazyload.Cacheable;
 import net.flexmojos.oss.plugin.utilities.ConfigurationResolver;
 import net.flexmojos.oss.plugin.utilities.MavenUtils;
+import net.flexmojos.oss.plugin.utilities.SwcArchive;
 import net.flexmojos.oss.util.PathUtil;
 
 public abstract class AbstractFlexCompilerMojo<CFG, C extends AbstractFlexCompilerMojo<CFG, C>>
@@ -1469,10 +1469,8 @@ public abstract class AbstractFlexCompilerMojo<CFG, C extends AbstractFlexCompil
         File dest;
         try
         {
-            UnArchiver unzip = archiverManager.getUnArchiver( "zip" );
-            unzip.setSourceFile( baseRbSwc.getFile() );
             dest = FileUtils.createTempFile( baseRbSwc.getArtifactId(), requestedLocale, getOutputDirectory() );
-            unzip.extract( "locale/" + baseRbSwc.getClassifier(), dest );
+            SwcArchive.open( baseRbSwc.getFile() ).extract( "locale/" + baseRbSwc.getClassifier() + "/", dest );
         }
         catch ( Exception e )
         {
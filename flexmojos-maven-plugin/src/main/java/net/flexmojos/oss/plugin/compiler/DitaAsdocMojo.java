@@ -24,9 +24,7 @@ import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.Enumeration;
 import java.util.zip.ZipEntry;
-import java.util.zip.ZipFile;
 import java.util.zip.ZipOutputStream;
 
 import org.apache.maven.plugin.MojoExecutionException;
@@ -34,6 +32,7 @@ import org.apache.maven.plugin.MojoFailureException;
 import org.codehaus.plexus.util.DirectoryScanner;
 import org.codehaus.plexus.util.FileUtils;
 import org.codehaus.plexus.util.IOUtil;
+import net.flexmojos.oss.plugin.utilities.SwcArchive;
 import net.flexmojos.oss.util.PathUtil;
 
 /**
@@ -110,19 +109,23 @@ public class DitaAsdocMojo
 
             File temp = File.createTempFile( getFinalName(), SWC, tmp );
 
-            FileUtils.copyFile( output, temp );
-            output.delete();
+            temp.delete();
+            if ( !output.renameTo( temp ) )
+            {
+                FileUtils.copyFile( output, temp );
+                output.delete();
+            }
 
-            ZipFile source = new ZipFile( temp );
+            SwcArchive source = SwcArchive.open( temp );
             out = new ZipOutputStream( new FileOutputStream( output ) );
 
-            Enumeration<? extends ZipEntry> entries = source.entries();
-            while ( entries.hasMoreElements() )
+            for ( SwcArchive.Entry entry : source.getEntries() )
             {
-                ZipEntry entry = (ZipEntry) entries.nextElement();
-                out.putNextEntry( entry );
+                ZipEntry zipEntry = new ZipEntry( entry.getName() );
+                zipEntry.setTime( entry.getTime() );
+                out.putNextEntry( zipEntry );
 
-                InputStream input = source.getInputStream( entry );
+                InputStream input = source.getInputStream( entry.getName() );
                 try
                 {
                     IOUtil.copy( input, out );
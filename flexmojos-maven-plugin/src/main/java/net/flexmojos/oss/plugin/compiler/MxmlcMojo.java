@@ -302,7 +302,7 @@ public class MxmlcMojo
     protected File getSourceFile()
     {
         return SourceFileResolver.resolveSourceFile( project.getCompileSourceRoots(), sourceFile, project.getGroupId(),
-                                                     project.getArtifactId() );
+                                                     project.getArtifactId(), getSourceIndex() );
     }
 
     public boolean isUpdateSecuritySandbox()
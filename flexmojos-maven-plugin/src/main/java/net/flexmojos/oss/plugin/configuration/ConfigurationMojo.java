@@ -195,7 +195,7 @@ public class ConfigurationMojo
     protected File getSourceFile()
     {
         return SourceFileResolver.resolveSourceFile( project.getCompileSourceRoots(), sourceFile, project.getGroupId(),
-                                                     project.getArtifactId() );
+                                                     project.getArtifactId(), getSourceIndex() );
     }
 
 }
@@ -17,13 +17,18 @@
  */
 package net.flexmojos.oss.plugin.optimizer;
 
+import static net.flexmojos.oss.plugin.common.FlexExtension.SWF;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
 import java.io.File;
 import java.io.IOException;
 import java.text.DecimalFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
+import org.apache.maven.execution.MavenExecutionRequest;
 import org.apache.maven.model.Build;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
@@ -50,8 +55,6 @@ public abstract class AbstractOptimizerMojo
     extends AbstractMavenMojo
 {
 
-    private static final DecimalFormat DECIMAL_FORMAT = new DecimalFormat( "#.##" );
-
     /**
      * @parameter expression="${project.build}"
      * @required
@@ -237,6 +240,45 @@ public abstract class AbstractOptimizerMojo
      */
     protected String compilerName;
 
+    /**
+     * Write the size, tag count, byte code size and duration of each stage to
+     * <code>target/flexmojos/optimizer-report.xml</code>, also gathered for the whole reactor on
+     * <code>target/flexmojos/optimizer-reactor-report.xml</code> of the top level project.
+     *
+     * @parameter default-value="true" expression="${flex.optimizerReport}"
+     */
+    protected boolean optimizerReport;
+
+    /**
+     * @parameter expression="${reactorProjects}"
+     * @required
+     * @readonly
+     */
+    protected List<MavenProject> reactorProjects;
+
+    /**
+     * Reuse the result of a previous build when neither the input SWF nor the optimizer settings changed
+     *
+     * @parameter default-value="true" expression="${flex.optimizerCache}"
+     */
+    protected boolean optimizerCache;
+
+    /**
+     * Where optimized SWFs are kept between builds. Defaults to a directory shared by all projects using the same local
+     * repository.
+     *
+     * @parameter expression="${flex.optimizerCacheDirectory}"
+     *            default-value="${settings.localRepository}/.cache/flexmojos/optimizer"
+     */
+    protected File optimizerCacheDirectory;
+
+    /**
+     * Days an optimized SWF is kept on the optimizer cache without being used
+     *
+     * @parameter default-value="30" expression="${flex.optimizerCacheMaxAge}"
+     */
+    protected int optimizerCacheMaxAge;
+
     public abstract String getInput();
 
     public String[] getKeepAs3Metadata()
@@ -270,58 +312,263 @@ public abstract class AbstractOptimizerMojo
     protected File optimize()
         throws MojoFailureException, MojoExecutionException
     {
-        File input = PathUtil.file( getInput() );
-        double originalSize = input.length();
+        // none of the stages touch their input, so the original is read in place instead of being backed up
+        final File original = PathUtil.file( getInput() );
+        double originalSize = original.length();
+
+        OptimizerReport report =
+            optimizerReport ? new OptimizerReport( project.getId(), packaging, getBuildId() ) : null;
+        addStage( report, "original", System.currentTimeMillis(), original );
+
+        OptimizationCache cache = getOptimizationCache();
+        String key = null;
+        if ( cache != null )
         {
-            getLog().debug( "Backuping original file " + input );
-            final File output = new File( project.getBuild().getOutputDirectory(), "original.swf" );
+            int pruned = cache.prune( optimizerCacheMaxAge * 24L * 60 * 60 * 1000 );
+            if ( pruned != 0 )
+            {
+                getLog().debug( "Removed " + pruned + " unused entries from the optimizer cache" );
+            }
+
             try
             {
-                FileUtils.copyFile( input, output );
+                long started = System.currentTimeMillis();
+                key = cache.key( original, getOptimizerSettings() );
+
+                final File output = PathUtil.file( getOutput() );
+                if ( cache.restore( key, SWF, output ) )
+                {
+                    getLog().info( "Reusing optimized " + PathUtil.path( original ) );
+                    addStage( report, "cache", started, output );
+                    writeReport( report, true );
+                    logResult( originalSize, output );
+                    return output;
+                }
             }
             catch ( IOException e )
             {
-                throw new MojoExecutionException( e.getMessage(), e );
+                getLog().warn( "Unable to read optimizer cache: " + e.getMessage() );
+                key = null;
             }
-            input = output;
         }
 
-        input = optimize( input );
+        File stagesDirectory = new File( project.getBuild().getOutputDirectory() );
+        stagesDirectory.mkdirs();
+
+        long started = System.currentTimeMillis();
+        File input = optimize( original );
+        if ( !input.equals( original ) )
+        {
+            addStage( report, "optimize", started, input );
+        }
 
         if ( reduce )
         {
             getLog().debug( "Reducing" );
-            final File output = new File( project.getBuild().getOutputDirectory(), "reduced.swf" );
+            started = System.currentTimeMillis();
+            final File output = new File( stagesDirectory, "reduced.swf" );
             reduce( input, output );
-            input = output;
+            addStage( report, "reduce", started, output );
+            input = nextStage( input, original, output );
         }
 
         if ( strip )
         {
             getLog().debug( "Stripping" );
-            final File output = new File( project.getBuild().getOutputDirectory(), "stripped.swf" );
-            reduce( input, output );
-            input = output;
+            started = System.currentTimeMillis();
+            final File output = new File( stagesDirectory, "stripped.swf" );
+            strip( input, output );
+            addStage( report, "strip", started, output );
+            input = nextStage( input, original, output );
         }
 
         {
             getLog().debug( "Placing optimized file on target folder" );
             final File output = PathUtil.file( getOutput() );
-            try
+            place( input, original, output );
+
+            if ( key != null )
             {
-                FileUtils.copyFile( input, output );
+                try
+                {
+                    cache.store( key, SWF, output );
+                }
+                catch ( IOException e )
+                {
+                    getLog().warn( "Unable to cache optimized " + PathUtil.path( original ) + ": " + e.getMessage() );
+                }
             }
-            catch ( IOException e )
+
+            writeReport( report, false );
+            logResult( originalSize, output );
+
+            return output;
+        }
+    }
+
+    /**
+     * Statistics are informative only, a SWF that can't be read doesn't fail the build
+     */
+    private void addStage( OptimizerReport report, String stage, long started, File output )
+    {
+        if ( report == null )
+        {
+            return;
+        }
+
+        try
+        {
+            report.addStage( stage, System.currentTimeMillis() - started, output );
+        }
+        catch ( IOException e )
+        {
+            getLog().debug( "Unable to read " + stage + " SWF statistics: " + e.getMessage() );
+        }
+        catch ( RuntimeException e )
+        {
+            // statistics are informative, a SWF they don't understand must not fail the build
+            getLog().debug( "Unable to read " + stage + " SWF statistics: " + e, e );
+        }
+    }
+
+    private void writeReport( OptimizerReport report, boolean cached )
+    {
+        if ( report == null )
+        {
+            return;
+        }
+
+        report.setCached( cached );
+        File file = new File( build.getDirectory(), OptimizerReport.PATH );
+        try
+        {
+            report.write( file );
+
+            MavenProject topLevelProject = session.getTopLevelProject();
+            if ( topLevelProject == null )
+            {
+                topLevelProject = project;
+            }
+
+            List<File> reports = new ArrayList<File>();
+            for ( MavenProject reactorProject : reactorProjects )
             {
-                throw new MojoExecutionException( e.getMessage(), e );
+                reports.add( new File( reactorProject.getBuild().getDirectory(), OptimizerReport.PATH ) );
             }
+            File reactorReport = new File( topLevelProject.getBuild().getDirectory(), OptimizerReport.REACTOR_PATH );
+            OptimizerReport.aggregate( reports, getBuildId(), reactorReport );
+        }
+        catch ( IOException e )
+        {
+            getLog().warn( "Unable to write optimizer report " + PathUtil.path( file ) + ": " + e.getMessage() );
+        }
+    }
+
+    /**
+     * Tells the reports of this build apart from the ones left behind by earlier builds
+     */
+    private String getBuildId()
+    {
+        MavenExecutionRequest request = session.getRequest();
+        if ( request.getStartTime() == null )
+        {
+            return "request-" + System.identityHashCode( request );
+        }
+        return String.valueOf( request.getStartTime().getTime() );
+    }
 
-            double finalSize = output.length();
-            double rate = ( finalSize / originalSize ) * 100;
+    private void logResult( double originalSize, File output )
+    {
+        double finalSize = output.length();
+        double rate = ( finalSize / originalSize ) * 100;
 
-            getLog().info( "Optimization result: " + DECIMAL_FORMAT.format( rate ) + "%" );
+        // DecimalFormat isn't thread safe and optimizer goals may run concurrently on parallel builds
+        getLog().info( "Optimization result: " + new DecimalFormat( "#.##" ).format( rate ) + "%" );
+    }
 
-            return output;
+    /**
+     * @return null when the optimizer cache is disabled
+     */
+    protected OptimizationCache getOptimizationCache()
+    {
+        if ( !optimizerCache || optimizerCacheDirectory == null )
+        {
+            return null;
+        }
+        return new OptimizationCache( optimizerCacheDirectory );
+    }
+
+    /**
+     * Everything besides the input SWF that changes the optimizer result, subclasses append their own settings
+     */
+    protected String getOptimizerSettings()
+        throws IOException
+    {
+        StringBuilder settings = new StringBuilder();
+        settings.append( "compiler=" ).append( compilerName ).append( ':' ).append( getCompilerVersion() );
+        settings.append( "\nkeepAs3Metadata=" ).append( Arrays.toString( getKeepAs3Metadata() ) );
+        for ( File config : ConfigurationResolver.resolveConfiguration( loadConfigs, loadConfig, configDirectory ) )
+        {
+            settings.append( "\nloadConfig=" ).append( PathUtil.path( config ) );
+            settings.append( ':' ).append( OptimizationCache.hash( config ) );
+        }
+        settings.append( "\nreduce=" ).append( reduce );
+        if ( reduce )
+        {
+            settings.append( ':' ).append( reduceDeblock ).append( ':' ).append( reduceLzma );
+            settings.append( ':' ).append( reduceMatryoshkaType ).append( ':' ).append( reduceMergeABC );
+            settings.append( ':' ).append( reduceQuality ).append( ':' ).append( reduceSortCPool );
+            settings.append( ':' ).append( reduceMergeCF );
+            if ( reduceMatryoshka != null )
+            {
+                settings.append( ':' ).append( PathUtil.path( reduceMatryoshka ) );
+                settings.append( ':' ).append( OptimizationCache.hash( reduceMatryoshka ) );
+            }
+        }
+        settings.append( "\nstrip=" ).append( strip );
+        return settings.toString();
+    }
+
+    /**
+     * Drop the intermediate SWF of the previous stage as soon as the next one is done with it
+     */
+    private File nextStage( File previous, File original, File next )
+    {
+        if ( !previous.equals( original ) && !previous.equals( next ) )
+        {
+            FileUtils.fileDelete( previous.getAbsolutePath() );
+        }
+        return next;
+    }
+
+    /**
+     * Move the last stage result to the final location, the original file is the only one that must be copied
+     */
+    private void place( File input, File original, File output )
+        throws MojoExecutionException
+    {
+        if ( input.getAbsoluteFile().equals( output.getAbsoluteFile() ) )
+        {
+            return;
+        }
+
+        output.getParentFile().mkdirs();
+        if ( !input.equals( original ) )
+        {
+            output.delete();
+            if ( input.renameTo( output ) )
+            {
+                return;
+            }
+        }
+
+        try
+        {
+            FileUtils.copyFile( input, output );
+        }
+        catch ( IOException e )
+        {
+            throw new MojoExecutionException( e.getMessage(), e );
         }
     }
 
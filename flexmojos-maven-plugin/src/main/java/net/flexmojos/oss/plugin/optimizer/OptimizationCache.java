@@ -0,0 +1,183 @@
+/**
+ * Flexmojos is a set of maven goals to allow maven users to compile, optimize and test Flex SWF, Flex SWC, Air SWF and Air SWC.
+ * Copyright (C) 2008-2012  Marvin Froeder <marvin@flexmojos.net>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.flexmojos.oss.plugin.optimizer;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.util.IOUtil;
+
+/**
+ * Results of previous optimizer runs, keyed by the content of their input and the settings used to produce them. The
+ * directory may be shared by concurrent builds, entries are written to a temporary file and renamed into place. Entries
+ * not used for a while are dropped by {@link #prune(long)}.
+ */
+public class OptimizationCache
+{
+
+    /**
+     * Bumped whenever the way results are produced changes, so older entries are no longer hit
+     */
+    private static final String CACHE_VERSION = "1";
+
+    private final File directory;
+
+    public OptimizationCache( File directory )
+    {
+        this.directory = directory;
+    }
+
+    public File getDirectory()
+    {
+        return directory;
+    }
+
+    /**
+     * @return the hex encoded SHA-1 of the input content and the settings
+     */
+    public String key( File input, String settings )
+        throws IOException
+    {
+        MessageDigest digest = digest( input );
+        digest.update( ( '\n' + CACHE_VERSION + '\n' + settings ).getBytes( "UTF-8" ) );
+        return toHex( digest.digest() );
+    }
+
+    /**
+     * @return the hex encoded SHA-1 of the file content
+     */
+    public static String hash( File file )
+        throws IOException
+    {
+        return toHex( digest( file ).digest() );
+    }
+
+    private static MessageDigest digest( File file )
+        throws IOException
+    {
+        MessageDigest digest;
+        try
+        {
+            digest = MessageDigest.getInstance( "SHA-1" );
+        }
+        catch ( NoSuchAlgorithmException e )
+        {
+            throw new IllegalStateException( e );
+        }
+
+        InputStream in = new FileInputStream( file );
+        try
+        {
+            byte[] buffer = new byte[8192];
+            int read;
+            while ( ( read = in.read( buffer ) ) != -1 )
+            {
+                digest.update( buffer, 0, read );
+            }
+        }
+        finally
+        {
+            IOUtil.close( in );
+        }
+        return digest;
+    }
+
+    private static String toHex( byte[] bytes )
+    {
+        StringBuilder hex = new StringBuilder();
+        for ( byte b : bytes )
+        {
+            hex.append( Character.forDigit( ( b >> 4 ) & 0xF, 16 ) ).append( Character.forDigit( b & 0xF, 16 ) );
+        }
+        return hex.toString();
+    }
+
+    /**
+     * Copy the cached result to the target file
+     *
+     * @return false when there is no result for that key
+     */
+    public boolean restore( String key, String extension, File target )
+        throws IOException
+    {
+        File cached = new File( directory, key + "." + extension );
+        if ( !cached.isFile() )
+        {
+            return false;
+        }
+
+        // recently used entries survive the pruning
+        cached.setLastModified( System.currentTimeMillis() );
+        FileUtils.copyFile( cached, target );
+        return true;
+    }
+
+    public void store( String key, String extension, File source )
+        throws IOException
+    {
+        directory.mkdirs();
+
+        File tmp = File.createTempFile( key, ".tmp", directory );
+        try
+        {
+            FileUtils.copyFile( source, tmp );
+
+            File cached = new File( directory, key + "." + extension );
+            cached.delete();
+            if ( !tmp.renameTo( cached ) && !cached.isFile() )
+            {
+                throw new IOException( "Unable to create " + cached );
+            }
+        }
+        finally
+        {
+            tmp.delete();
+        }
+    }
+
+    /**
+     * Delete the entries, and the temporary files left behind by killed builds, not used for longer than the given age
+     *
+     * @return how many files were deleted
+     */
+    public int prune( long maxAge )
+    {
+        File[] files = directory.listFiles();
+        if ( files == null )
+        {
+            return 0;
+        }
+
+        long limit = System.currentTimeMillis() - maxAge;
+        int deleted = 0;
+        for ( File file : files )
+        {
+            if ( file.isFile() && file.lastModified() < limit && file.delete() )
+            {
+                deleted++;
+            }
+        }
+        return deleted;
+    }
+
+}
@@ -0,0 +1,193 @@
+/**
+ * Flexmojos is a set of maven goals to allow maven users to compile, optimize and test Flex SWF, Flex SWC, Air SWF and Air SWC.
+ * Copyright (C) 2008-2012  Marvin Froeder <marvin@flexmojos.net>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.flexmojos.oss.plugin.optimizer;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.List;
+
+import org.codehaus.plexus.util.IOUtil;
+import org.codehaus.plexus.util.xml.Xpp3Dom;
+import org.codehaus.plexus.util.xml.Xpp3DomBuilder;
+import org.codehaus.plexus.util.xml.Xpp3DomWriter;
+import org.codehaus.plexus.util.xml.pull.XmlPullParserException;
+
+/**
+ * Sizes and durations of each optimizer stage, written under the module target folder and aggregated for the whole
+ * reactor. Each stage reports the SWF it produced along with the size of the SWF it was given. Reports are tagged with
+ * the build that wrote them, so reports left behind by earlier builds stay out of the aggregation.
+ */
+public class OptimizerReport
+{
+
+    public static final String PATH = "flexmojos/optimizer-report.xml";
+
+    public static final String REACTOR_PATH = "flexmojos/optimizer-reactor-report.xml";
+
+    /**
+     * Modules built in parallel share the reactor report
+     */
+    private static final Object REACTOR_LOCK = new Object();
+
+    private final Xpp3Dom dom = new Xpp3Dom( "optimizer-report" );
+
+    private long lastSize = -1;
+
+    private long duration;
+
+    /**
+     * @param build identifies the current build, see {@link #aggregate(List, String, File)}
+     */
+    public OptimizerReport( String project, String packaging, String build )
+    {
+        dom.setAttribute( "project", project );
+        dom.setAttribute( "packaging", packaging );
+        dom.setAttribute( "build", build );
+    }
+
+    /**
+     * @param duration in milliseconds
+     * @param output the SWF produced by the stage
+     */
+    public void addStage( String name, long duration, File output )
+        throws IOException
+    {
+        SwfStatistics statistics = SwfStatistics.read( output );
+
+        Xpp3Dom stage = new Xpp3Dom( "stage" );
+        stage.setAttribute( "name", name );
+        stage.setAttribute( "duration", String.valueOf( duration ) );
+        if ( lastSize != -1 )
+        {
+            stage.setAttribute( "inputSize", String.valueOf( lastSize ) );
+        }
+        stage.setAttribute( "size", String.valueOf( statistics.getSize() ) );
+        stage.setAttribute( "compression", statistics.getCompression() );
+        stage.setAttribute( "version", String.valueOf( statistics.getVersion() ) );
+        if ( statistics.getTags() != -1 )
+        {
+            stage.setAttribute( "tags", String.valueOf( statistics.getTags() ) );
+            stage.setAttribute( "abcs", String.valueOf( statistics.getAbcs() ) );
+            stage.setAttribute( "abcSize", String.valueOf( statistics.getAbcSize() ) );
+        }
+        dom.addChild( stage );
+
+        if ( lastSize == -1 )
+        {
+            dom.setAttribute( "originalSize", String.valueOf( statistics.getSize() ) );
+        }
+        dom.setAttribute( "finalSize", String.valueOf( statistics.getSize() ) );
+        lastSize = statistics.getSize();
+        this.duration += duration;
+        dom.setAttribute( "duration", String.valueOf( this.duration ) );
+    }
+
+    public void setCached( boolean cached )
+    {
+        dom.setAttribute( "cached", String.valueOf( cached ) );
+    }
+
+    public void write( File file )
+        throws IOException
+    {
+        write( dom, file );
+    }
+
+    /**
+     * Gather the reports of the modules into a single one, modules without a report of this build are left out
+     */
+    public static void aggregate( List<File> reports, String build, File output )
+        throws IOException
+    {
+        synchronized ( REACTOR_LOCK )
+        {
+            Xpp3Dom aggregated = new Xpp3Dom( "optimizer-reports" );
+            long originalSize = 0;
+            long finalSize = 0;
+            long duration = 0;
+            for ( File report : reports )
+            {
+                if ( !report.isFile() )
+                {
+                    continue;
+                }
+
+                Xpp3Dom dom = read( report );
+                if ( !build.equals( dom.getAttribute( "build" ) ) )
+                {
+                    continue;
+                }
+                originalSize += toLong( dom.getAttribute( "originalSize" ) );
+                finalSize += toLong( dom.getAttribute( "finalSize" ) );
+                duration += toLong( dom.getAttribute( "duration" ) );
+                aggregated.addChild( dom );
+            }
+            aggregated.setAttribute( "originalSize", String.valueOf( originalSize ) );
+            aggregated.setAttribute( "finalSize", String.valueOf( finalSize ) );
+            aggregated.setAttribute( "duration", String.valueOf( duration ) );
+
+            write( aggregated, output );
+        }
+    }
+
+    private static long toLong( String value )
+    {
+        return value == null ? 0 : Long.parseLong( value );
+    }
+
+    private static Xpp3Dom read( File file )
+        throws IOException
+    {
+        Reader reader = new InputStreamReader( new FileInputStream( file ), "UTF-8" );
+        try
+        {
+            return Xpp3DomBuilder.build( reader );
+        }
+        catch ( XmlPullParserException e )
+        {
+            throw new IOException( "Invalid optimizer report " + file + ": " + e.getMessage() );
+        }
+        finally
+        {
+            IOUtil.close( reader );
+        }
+    }
+
+    private static void write( Xpp3Dom dom, File file )
+        throws IOException
+    {
+        file.getParentFile().mkdirs();
+        Writer writer = new OutputStreamWriter( new FileOutputStream( file ), "UTF-8" );
+        try
+        {
+            writer.write( "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" );
+            Xpp3DomWriter.write( writer, dom );
+        }
+        finally
+        {
+            IOUtil.close( writer );
+        }
+    }
+
+}
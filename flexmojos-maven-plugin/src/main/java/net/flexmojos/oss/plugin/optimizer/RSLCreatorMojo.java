@@ -21,17 +21,14 @@ import static net.flexmojos.oss.plugin.common.FlexExtension.SWC;
 import static net.flexmojos.oss.plugin.common.FlexExtension.SWF;
 
 import java.io.File;
-import java.io.FileOutputStream;
-import java.io.InputStream;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipFile;
+import java.io.IOException;
 
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
 import org.codehaus.plexus.archiver.manager.ArchiverManager;
-import org.codehaus.plexus.util.IOUtil;
 import net.flexmojos.oss.compiler.IDigestConfiguration;
 import net.flexmojos.oss.plugin.compiler.attributes.MavenRuntimeException;
+import net.flexmojos.oss.plugin.utilities.SwcArchive;
 import net.flexmojos.oss.util.PathUtil;
 
 /**
@@ -41,6 +38,7 @@ import net.flexmojos.oss.util.PathUtil;
  * @since 4.0
  * @goal create-rsl
  * @phase package
+ * @threadSafe
  */
 public class RSLCreatorMojo
     extends AbstractOptimizerMojo
@@ -115,20 +113,7 @@ public class RSLCreatorMojo
 
         if ( updateSwcDigest )
         {
-            int result;
-            try
-            {
-                result = compiler.digest( getDigestConfiguration( input ), true, compilerName ).getExitCode();
-            }
-            catch ( Exception e )
-            {
-                throw new MojoExecutionException( e.getMessage(), e );
-            }
-
-            if ( result != 0 )
-            {
-                throw new MojoFailureException( "Got " + result + " errors building project, check logs" );
-            }
+            digest( input );
         }
 
         getLog().debug( "attaching Artifact " );
@@ -149,6 +134,70 @@ public class RSLCreatorMojo
         return input;
     }
 
+    /**
+     * Update the SWC catalog with the RSL digest. The digested SWC only depends on the SWC content, which embeds the
+     * original library.swf, and on the optimizer settings, so it is reused from the optimizer cache when available.
+     */
+    protected void digest( File rsl )
+        throws MojoExecutionException, MojoFailureException
+    {
+        File swc = project.getArtifact().getFile();
+
+        OptimizationCache cache = getOptimizationCache();
+        String key = null;
+        if ( cache != null )
+        {
+            try
+            {
+                key = cache.key( swc, getOptimizerSettings() + "\ndigest" );
+                if ( cache.restore( key, SWC, swc ) )
+                {
+                    getLog().debug( "Reusing digested " + PathUtil.path( swc ) );
+                    return;
+                }
+            }
+            catch ( IOException e )
+            {
+                getLog().warn( "Unable to read optimizer cache: " + e.getMessage() );
+                key = null;
+            }
+        }
+
+        int result;
+        try
+        {
+            result = compiler.digest( getDigestConfiguration( rsl ), true, compilerName ).getExitCode();
+        }
+        catch ( Exception e )
+        {
+            throw new MojoExecutionException( e.getMessage(), e );
+        }
+
+        if ( result != 0 )
+        {
+            throw new MojoFailureException( "Got " + result + " errors building project, check logs" );
+        }
+
+        if ( key != null )
+        {
+            try
+            {
+                cache.store( key, SWC, swc );
+            }
+            catch ( IOException e )
+            {
+                getLog().warn( "Unable to cache digested " + PathUtil.path( swc ) + ": " + e.getMessage() );
+            }
+        }
+    }
+
+    @Override
+    protected String getOptimizerSettings()
+        throws IOException
+    {
+        return super.getOptimizerSettings() + "\noptimizeRsl=" + optimizeRsl;
+    }
+
     public IDigestConfiguration getDigestConfiguration( final File input )
     {
         return new IDigestConfiguration()
@@ -181,16 +230,13 @@ public class RSLCreatorMojo
         File bkpOriginalFile = new File( build.getDirectory(), build.getFinalName() + ".swf" );
         try
         {
-            ZipFile zipFile = new ZipFile( originalFile );
-            ZipEntry entry = zipFile.getEntry( "library.swf" );
-            if ( entry == null )
+            // streamed straight out of the swc, which isn't kept open as the digest rewrites it later on
+            if ( !SwcArchive.open( originalFile ).copy( "library.swf", bkpOriginalFile ) )
             {
                 throw new MavenRuntimeException( "Invalid SWC file. Library.swf not found. " + originalFile );
             }
-            InputStream inputSWF = zipFile.getInputStream( entry );
-            IOUtil.copy( inputSWF, new FileOutputStream( bkpOriginalFile ) );
         }
-        catch ( Exception e )
+        catch ( IOException e )
         {
             throw new MavenRuntimeException( e.getMessage() + ": " + PathUtil.path( originalFile ), e );
         }
@@ -35,6 +35,7 @@ import net.flexmojos.oss.util.PathUtil;
  * @since 4.0
  * @goal optimize-swf
  * @phase package
+ * @threadSafe
  */
 public class SwfOptimizerMojo
     extends AbstractOptimizerMojo
@@ -113,4 +114,11 @@ public class SwfOptimizerMojo
 
         return output;
     }
+
+    @Override
+    protected String getOptimizerSettings()
+        throws IOException
+    {
+        return super.getOptimizerSettings() + "\noptimize=true";
+    }
 }
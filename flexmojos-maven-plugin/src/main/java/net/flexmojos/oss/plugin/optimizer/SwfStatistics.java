@@ -0,0 +1,300 @@
+/**
+ * Flexmojos is a set of maven goals to allow maven users to compile, optimize and test Flex SWF, Flex SWC, Air SWF and Air SWC.
+ * Copyright (C) 2008-2012  Marvin Froeder <marvin@flexmojos.net>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.flexmojos.oss.plugin.optimizer;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipException;
+
+import org.codehaus.plexus.util.IOUtil;
+
+/**
+ * Size, tag count and ActionScript byte code size of a SWF, streamed through its tag headers without keeping the SWF
+ * in memory or parsing the tags. LZMA compressed SWFs only report their size, the JDK has no LZMA decoder.
+ */
+public class SwfStatistics
+{
+
+    private static final int DO_ABC = 72;
+
+    private static final int DO_ABC2 = 82;
+
+    private final long size;
+
+    private final String compression;
+
+    private int version;
+
+    private int tags = -1;
+
+    private int abcs;
+
+    private long abcSize;
+
+    private SwfStatistics( long size, String compression )
+    {
+        this.size = size;
+        this.compression = compression;
+    }
+
+    public static SwfStatistics read( File swf )
+        throws IOException
+    {
+        InputStream in = new BufferedInputStream( new FileInputStream( swf ) );
+        try
+        {
+            byte[] header = new byte[8];
+            if ( !readFully( in, header, header.length ) || header[1] != 'W' || header[2] != 'S' )
+            {
+                throw new IOException( "Not a SWF file: " + swf );
+            }
+
+            SwfStatistics statistics;
+            if ( header[0] == 'F' )
+            {
+                statistics = new SwfStatistics( swf.length(), "none" );
+            }
+            else if ( header[0] == 'C' )
+            {
+                statistics = new SwfStatistics( swf.length(), "zlib" );
+                in = new InflaterInputStream( in );
+            }
+            else if ( header[0] == 'Z' )
+            {
+                statistics = new SwfStatistics( swf.length(), "lzma" );
+                statistics.version = header[3] & 0xff;
+                return statistics;
+            }
+            else
+            {
+                throw new IOException( "Not a SWF file: " + swf );
+            }
+            statistics.version = header[3] & 0xff;
+
+            // the uncompressed length, including the 8 bytes header
+            long length = u32( header, 4 );
+            if ( length < 8 )
+            {
+                throw new IOException( "Corrupted SWF file " + swf + ": invalid length " + length );
+            }
+            statistics.readTags( in, length - 8, swf );
+            return statistics;
+        }
+        catch ( ZipException e )
+        {
+            throw new IOException( "Corrupted SWF file " + swf + ": " + e.getMessage() );
+        }
+        finally
+        {
+            IOUtil.close( in );
+        }
+    }
+
+    /**
+     * Stream through the tag headers, skipping the tag bodies
+     *
+     * @param remaining bytes left according to the SWF header
+     */
+    private void readTags( InputStream in, long remaining, File swf )
+        throws IOException
+    {
+        byte[] buffer = new byte[8];
+        if ( remaining < 1 || !readFully( in, buffer, 1 ) )
+        {
+            throw new IOException( "Truncated SWF file: " + swf );
+        }
+
+        // frame size rectangle: 5 bits holding the bit size of each of its 4 fields, then frame rate and count
+        int bits = ( buffer[0] & 0xff ) >> 3;
+        long skip = ( 5 + bits * 4 + 7 ) / 8 - 1 + 4;
+        remaining -= 1 + skip;
+        if ( remaining < 0 || !skipFully( in, skip ) )
+        {
+            throw new IOException( "Truncated SWF file: " + swf );
+        }
+
+        tags = 0;
+        while ( remaining >= 2 )
+        {
+            if ( !readFully( in, buffer, 2 ) )
+            {
+                throw new IOException( "Truncated SWF file: " + swf );
+            }
+            remaining -= 2;
+            int header = u16( buffer, 0 );
+            int code = header >> 6;
+            long length = header & 0x3f;
+            if ( length == 0x3f )
+            {
+                if ( remaining < 4 || !readFully( in, buffer, 4 ) )
+                {
+                    throw new IOException( "Truncated SWF file: " + swf );
+                }
+                remaining -= 4;
+                length = u32( buffer, 0 );
+            }
+            if ( length > remaining )
+            {
+                throw new IOException( "Corrupted SWF file " + swf + ": tag " + code + " of " + length
+                    + " bytes past the end of the file" );
+            }
+            remaining -= length;
+
+            tags++;
+            if ( code == DO_ABC )
+            {
+                abcs++;
+                abcSize += length;
+            }
+            else if ( code == DO_ABC2 )
+            {
+                // flags and name come before the byte code
+                long prefix = 4;
+                if ( length < prefix || !skipFully( in, prefix ) )
+                {
+                    throw new IOException( "Corrupted SWF file " + swf + ": invalid DoABC2 tag" );
+                }
+                int b;
+                do
+                {
+                    if ( prefix == length || ( b = in.read() ) == -1 )
+                    {
+                        throw new IOException( "Corrupted SWF file " + swf + ": invalid DoABC2 tag" );
+                    }
+                    prefix++;
+                }
+                while ( b != 0 );
+
+                abcs++;
+                abcSize += length - prefix;
+                length -= prefix;
+            }
+
+            if ( !skipFully( in, length ) )
+            {
+                throw new IOException( "Truncated SWF file: " + swf );
+            }
+            if ( code == 0 )
+            {
+                break;
+            }
+        }
+    }
+
+    /**
+     * @return false when the end of the stream came first
+     */
+    private static boolean readFully( InputStream in, byte[] buffer, int length )
+        throws IOException
+    {
+        int read = 0;
+        while ( read < length )
+        {
+            int count = in.read( buffer, read, length - read );
+            if ( count == -1 )
+            {
+                return false;
+            }
+            read += count;
+        }
+        return true;
+    }
+
+    /**
+     * @return false when the end of the stream came first
+     */
+    private static boolean skipFully( InputStream in, long length )
+        throws IOException
+    {
+        while ( length > 0 )
+        {
+            long skipped = in.skip( length );
+            if ( skipped <= 0 )
+            {
+                // skip may give up before the end, only a read tells it apart
+                if ( in.read() == -1 )
+                {
+                    return false;
+                }
+                skipped = 1;
+            }
+            length -= skipped;
+        }
+        return true;
+    }
+
+    private static int u16( byte[] b, int position )
+    {
+        return ( b[position] & 0xff ) | ( b[position + 1] & 0xff ) << 8;
+    }
+
+    private static long u32( byte[] b, int position )
+    {
+        return u16( b, position ) | ( (long) u16( b, position + 2 ) ) << 16;
+    }
+
+    /**
+     * @return the size of the file, in bytes
+     */
+    public long getSize()
+    {
+        return size;
+    }
+
+    /**
+     * @return none, zlib or lzma
+     */
+    public String getCompression()
+    {
+        return compression;
+    }
+
+    public int getVersion()
+    {
+        return version;
+    }
+
+    /**
+     * @return the number of tags, including the end tag, or -1 when the tags couldn't be read
+     */
+    public int getTags()
+    {
+        return tags;
+    }
+
+    /**
+     * @return the number of DoABC tags
+     */
+    public int getAbcs()
+    {
+        return abcs;
+    }
+
+    /**
+     * @return the size of the byte code held by the DoABC tags, in bytes
+     */
+    public long getAbcSize()
+    {
+        return abcSize;
+    }
+
+}
@@ -21,15 +21,26 @@ import static net.flexmojos.oss.util.PathUtil.files;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
+import java.util.Set;
 
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.project.MavenProject;
 import org.codehaus.plexus.util.FileUtils;
 
+import net.flexmojos.oss.coverage.CoverageDataFile;
+import net.flexmojos.oss.coverage.CoverageReportException;
+import net.flexmojos.oss.coverage.CoverageReportRequest;
+import net.flexmojos.oss.coverage.CoverageReporter;
+import net.flexmojos.oss.coverage.CoverageReporterManager;
 import net.flexmojos.oss.plugin.AbstractMavenMojo;
 import net.flexmojos.oss.plugin.SourcePathAware;
+import net.flexmojos.oss.util.PathUtil;
 
 /**
  * Goal to generate coverage report from unit tests
@@ -78,11 +89,63 @@ public class CoverageReportMojo
      */
     private List<String> sourcePaths;
 
+    /**
+     * Build a single report out of the coverage data left by the tests of every reactor project, without running the
+     * tests again. Usually enabled on the aggregator project.
+     * 
+     * @parameter expression="${flex.coverageAggregate}" default-value="false"
+     */
+    private boolean aggregate;
+
+    /**
+     * @parameter expression="${reactorProjects}"
+     * @required
+     * @readonly
+     */
+    private List<MavenProject> reactorProjects;
+
+    /**
+     * Framework that will be used to produce the aggregated report. Accepts "emma" and "cobertura"
+     * 
+     * @parameter expression="${flex.coverageProvider}" default-value="cobertura"
+     */
+    private String coverageProvider;
+
+    /**
+     * Classes that shouldn't be include on the aggregated report.
+     * 
+     * @parameter
+     */
+    private String[] coverageExclusions;
+
+    /**
+     * The aggregated report format. Can be 'html', 'xml' and/or 'summaryXml'. Default value is 'html'.
+     * 
+     * @parameter
+     */
+    private List<String> coverageReportFormat = Collections.singletonList( "html" );
+
+    /**
+     * Encoding used to generate the aggregated report
+     * 
+     * @parameter expression="${project.build.sourceEncoding}"
+     */
+    private String coverageReportEncoding;
+
+    /**
+     * @component
+     */
+    private CoverageReporterManager coverageReporterManager;
+
     public void fmExecute()
         throws MojoExecutionException, MojoFailureException
     {
-        // nothing to be done, the lifecycle deal with this report generation
-    	
+        // unless aggregating, nothing to be done, the lifecycle deal with this report generation
+        if ( aggregate )
+        {
+            aggregate();
+        }
+
     	File index = new File(coverageReportOutputDirectory.getAbsolutePath() + "/index.bak.html");
     	if(index.exists())
     	{
@@ -97,6 +160,57 @@ public class CoverageReportMojo
     	}
     }
 
+    private void aggregate()
+        throws MojoExecutionException
+    {
+        List<File> dataFiles = new ArrayList<File>();
+        Set<File> sources = new LinkedHashSet<File>();
+        for ( MavenProject p : reactorProjects )
+        {
+            File dataFile = new File( p.getBuild().getDirectory(), "flexmojos/" + CoverageDataFile.NAME );
+            if ( dataFile.isFile() )
+            {
+                dataFiles.add( dataFile );
+                sources.addAll( PathUtil.existingFilesList( p.getCompileSourceRoots() ) );
+            }
+        }
+
+        if ( dataFiles.isEmpty() )
+        {
+            getLog().warn( "No coverage data found on the reactor projects, run the tests with coverage enabled first" );
+            return;
+        }
+        getLog().info( "Aggregating coverage data of " + dataFiles.size() + " projects" );
+
+        try
+        {
+            CoverageReporter reporter = coverageReporterManager.getReporter( coverageProvider );
+            reporter.setExcludes( coverageExclusions );
+            reporter.addCoverageData( CoverageDataFile.merge( dataFiles ) );
+
+            File dataDirectory = new File( project.getBuild().getDirectory(), "flexmojos/aggregate" );
+            dataDirectory.mkdirs();
+            reporter.generateReport( new CoverageReportRequest( dataDirectory, coverageReportFormat,
+                                                                coverageReportEncoding,
+                                                                coverageReportOutputDirectory,
+                                                                sources.toArray( new File[0] ) ) );
+
+            File index = new File( coverageReportOutputDirectory, "index.html" );
+            if ( index.exists() )
+            {
+                FileUtils.copyFile( index, new File( coverageReportOutputDirectory, "index.bak.html" ) );
+            }
+        }
+        catch ( CoverageReportException e )
+        {
+            throw new MojoExecutionException( e.getMessage(), e );
+        }
+        catch ( IOException e )
+        {
+            throw new MojoExecutionException( "Unable to aggregate coverage data: " + e.getMessage(), e );
+        }
+    }
+
     public String getDescription( Locale locale )
     {
         return description;
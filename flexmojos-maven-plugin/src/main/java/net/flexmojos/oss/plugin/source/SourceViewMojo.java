@@ -40,6 +40,7 @@ import org.apache.velocity.exception.ResourceNotFoundException;
 import org.apache.velocity.runtime.log.NullLogChute;
 import org.apache.velocity.runtime.resource.loader.ClasspathResourceLoader;
 import net.flexmojos.oss.plugin.utilities.SourceFileResolver;
+import net.flexmojos.oss.plugin.utilities.SourceIndex;
 
 import com.uwyn.jhighlight.renderer.XhtmlRendererFactory;
 
@@ -308,9 +309,10 @@ public class SourceViewMojo
     @SuppressWarnings( "unchecked" )
     protected String getContentFrameSource()
     {
+        SourceIndex index = SourceIndex.getInstance( new File( project.getBuild().getDirectory() ) );
         File mainSourceFile =
             SourceFileResolver.resolveSourceFile( project.getCompileSourceRoots(), null, project.getGroupId(),
-                                                  project.getArtifactId() );
+                                                  project.getArtifactId(), index );
 
         return ( mainSourceFile == null ) ? "about:blank" : mainSourceFile.getName() + ".html";
     }
@@ -18,6 +18,7 @@
 package net.flexmojos.oss.plugin.test;
 
 import flex2.compiler.common.SinglePathResolver;
+import net.flexmojos.oss.compiler.IDefine;
 import net.flexmojos.oss.compiler.IRuntimeSharedLibraryPath;
 import net.flexmojos.oss.compiler.MxmlcConfigurationHolder;
 import net.flexmojos.oss.compiler.command.Result;
@@ -27,9 +28,11 @@ import net.flexmojos.oss.plugin.compiler.MxmlcMojo;
 import net.flexmojos.oss.plugin.compiler.attributes.MavenRuntimeException;
 import net.flexmojos.oss.plugin.test.scanners.FlexClassScanner;
 import net.flexmojos.oss.plugin.utilities.MavenUtils;
+import net.flexmojos.oss.plugin.utilities.SourceIndex;
 import net.flexmojos.oss.util.CollectionUtils;
 import net.flexmojos.oss.util.PathUtil;
 import net.flexmojos.oss.util.SocketUtil;
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
 import org.apache.maven.artifact.Artifact;
 import org.apache.maven.model.FileSet;
@@ -70,6 +73,12 @@ public class TestCompilerMojo
 
     public static final String FLEXMOJOS_TEST_PORT = "flexmojos_test_port";
 
+    public static final String FLEXMOJOS_TEST_SHARD = "flexmojos_test_shard";
+
+    public static final String FLEXMOJOS_TEST_IMPACT = "flexmojos_test_impact";
+
+    private static final String TEST_RUNNER = "TestRunner";
+
     /**
      * Uses instruments the bytecode (using apparat) to create test coverage report. Only the test-swf is affected by
      * this.
@@ -177,6 +186,24 @@ public class TestCompilerMojo
      */
     private Integer testControlPort;
 
+    /**
+     * When true only the test classes affected by the sources changed since the last successful test run are compiled
+     * and run. The source files each test class depends on are taken from the test runner link report and recorded on
+     * <code>testImpactIndex</code>. Test classes unknown to the index always run, and so do all of them when a library
+     * or the pom changed. Ignored when <code>test</code> is defined.
+     * 
+     * @parameter default-value="false" expression="${flex.testImpactAnalysis}"
+     */
+    private boolean testImpactAnalysis;
+
+    /**
+     * Where the test impact analysis keeps the dependencies of each test class
+     * 
+     * @parameter default-value="${project.build.directory}/flexmojos/test-impact.idx"
+     *            expression="${flex.testImpactIndex}"
+     */
+    private File testImpactIndex;
+
     /**
      * @parameter expression="${project.build.testOutputDirectory}"
      * @required
@@ -205,22 +232,50 @@ public class TestCompilerMojo
      */
     private File testRunnerTemplate;
 
+    /**
+     * Zero based index of the shard of test classes this build should compile. Used together with
+     * <code>testShardCount</code> to split the test classes matched by <code>includeTestFiles</code>/
+     * <code>excludeTestFiles</code> across several build agents.
+     * 
+     * @parameter expression="${flex.testShardIndex}"
+     */
+    private Integer testShardIndex;
+
+    /**
+     * Number of shards the test classes are split into. Each test class is assigned to a shard by its name hash, so all
+     * agents agree on the partition without talking to each other. When not defined all test classes are compiled.
+     * 
+     * @parameter expression="${flex.testShardCount}"
+     */
+    private Integer testShardCount;
+
     public Result buildTest( String testFilename, List<? extends String> testClasses, Integer testControlPort,
                              Integer testPort )
         throws MojoExecutionException, MojoFailureException
     {
         getLog().info( "Compiling test class: " + testClasses );
 
-        File testMxml;
+        File testMxml = generateTester( testClasses, testFilename, testControlPort, testPort );
+        return compileTester( testFilename, testMxml );
+    }
+
+    private File generateTester( List<? extends String> testClasses, String testFilename, Integer testControlPort,
+                                 Integer testPort )
+        throws MojoExecutionException
+    {
         try
         {
-            testMxml = generateTester( testClasses, testFilename, testControlPort, testPort );
+            return writeTester( testClasses, testFilename, testControlPort, testPort );
         }
         catch ( Exception e )
         {
             throw new MojoExecutionException( "Unable to generate tester class.", e );
         }
+    }
 
+    private Result compileTester( String testFilename, File testMxml )
+        throws MojoExecutionException, MojoFailureException
+    {
         TestCompilerMojo cfg = this.clone();
         cfg.finalName = testFilename;
 
@@ -230,21 +285,256 @@ public class TestCompilerMojo
     public void buildTests( List<String> testClasses )
         throws MojoFailureException, MojoExecutionException
     {
-        String testFilename = "TestRunner";
+        String testFilename = TEST_RUNNER;
+
+        allocatePorts();
+        putPluginContext( FLEXMOJOS_TEST_CONTROL_PORT, testControlPort );
+        putPluginContext( FLEXMOJOS_TEST_PORT, testPort );
+        getLog().debug( "Flexmojos test port: " + testPort + " - control: " + testControlPort );
+
+        File testMxml = generateTester( testClasses, testFilename, testControlPort, testPort );
+        writeTesterPorts();
+
+        File testSwf = new File( testOutputDirectory, testFilename + "." + getProjectType() );
+        File settingsFile = new File( testOutputDirectory, testFilename + "-settings.sha1" );
+        String settings = getTesterSettings();
+        if ( isTesterUpToDate( testSwf, testMxml, settingsFile, settings ) )
+        {
+            getLog().info( "Test runner is up to date, skipping test compiler: " + testSwf.getName() );
+            return;
+        }
+
+        getLog().info( "Compiling test class: " + testClasses );
+        checkResult( compileTester( testFilename, testMxml ) );
+
+        try
+        {
+            FileUtils.writeStringToFile( settingsFile, settings );
+        }
+        catch ( IOException e )
+        {
+            getLog().debug( "Unable to save test runner settings: " + e.getMessage() );
+        }
+    }
+
+    /**
+     * @return a hash of the settings that change the runner without changing its source: compiler version, coverage,
+     *         includes, defines and the source and library paths
+     */
+    private String getTesterSettings()
+    {
+        StringBuilder settings = new StringBuilder();
+        settings.append( "compiler=" ).append( getCompilerVersion() ).append( '\n' );
+        settings.append( "coverage=" ).append( coverage ).append( '\n' );
+        settings.append( "includes=" ).append( getIncludes() ).append( '\n' );
+        IDefine[] defines = getDefine();
+        if ( defines != null )
+        {
+            for ( IDefine define : defines )
+            {
+                settings.append( "define=" ).append( define.name() ).append( '=' ).append( define.value() );
+                settings.append( '\n' );
+            }
+        }
+        appendFiles( settings, "source-path", getSourcePath() );
+        appendFiles( settings, "library-path", getLibraryPath() );
+        appendFiles( settings, "include-libraries", getIncludeLibraries() );
+        appendFiles( settings, "external-library-path", getExternalLibraryPath() );
+        return TestImpactIndex.sha1( settings.toString() );
+    }
+
+    /**
+     * Libraries are listed with their size, so one replaced by an older file is noticed too
+     */
+    private static void appendFiles( StringBuilder settings, String name, File[] files )
+    {
+        if ( files == null )
+        {
+            return;
+        }
+        for ( File file : files )
+        {
+            settings.append( name ).append( '=' ).append( file.getAbsolutePath() );
+            if ( file.isFile() )
+            {
+                settings.append( ':' ).append( file.length() );
+            }
+            settings.append( '\n' );
+        }
+    }
 
+    /**
+     * Ports not configured keep the values of the previous build while they are still free, otherwise the runner
+     * source would change and need to be compiled again on every build.
+     */
+    private void allocatePorts()
+    {
+        Properties previous = readTesterPorts();
         if ( testControlPort == null )
         {
-            testControlPort = freePort();
+            testControlPort = reusePort( previous.getProperty( "controlPort" ) );
         }
         if ( testPort == null )
         {
-            testPort = freePort();
+            testPort = reusePort( previous.getProperty( "port" ) );
         }
-        putPluginContext( FLEXMOJOS_TEST_CONTROL_PORT, testControlPort );
-        putPluginContext( FLEXMOJOS_TEST_PORT, testPort );
-        getLog().debug( "Flexmojos test port: " + testPort + " - control: " + testControlPort );
+    }
+
+    private Integer reusePort( String previous )
+    {
+        if ( previous != null )
+        {
+            try
+            {
+                int port = Integer.parseInt( previous );
+                if ( SocketUtil.isFree( port ) )
+                {
+                    return port;
+                }
+            }
+            catch ( NumberFormatException e )
+            {
+                getLog().debug( "Invalid test port " + previous );
+            }
+        }
+        return freePort();
+    }
+
+    private File getTesterPortsFile()
+    {
+        return new File( testOutputDirectory, TEST_RUNNER + "-ports.properties" );
+    }
+
+    private Properties readTesterPorts()
+    {
+        Properties ports = new Properties();
+        File file = getTesterPortsFile();
+        if ( file.isFile() )
+        {
+            InputStream in = null;
+            try
+            {
+                in = new FileInputStream( file );
+                ports.load( in );
+            }
+            catch ( IOException e )
+            {
+                getLog().debug( "Unable to read previous test ports: " + e.getMessage() );
+            }
+            finally
+            {
+                IOUtils.closeQuietly( in );
+            }
+        }
+        return ports;
+    }
+
+    private void writeTesterPorts()
+    {
+        Properties ports = new Properties();
+        ports.setProperty( "controlPort", testControlPort.toString() );
+        ports.setProperty( "port", testPort.toString() );
 
-        checkResult( buildTest( testFilename, testClasses, testControlPort, testPort ) );
+        OutputStream out = null;
+        try
+        {
+            out = new FileOutputStream( getTesterPortsFile() );
+            ports.store( out, "flexmojos test runner ports" );
+        }
+        catch ( IOException e )
+        {
+            getLog().debug( "Unable to save test ports: " + e.getMessage() );
+        }
+        finally
+        {
+            IOUtils.closeQuietly( out );
+        }
+    }
+
+    /**
+     * The runner is compiled again when its source, the test or main sources, the resources, the libraries, the
+     * template or the pom are newer than the last compiled runner. Removed sources are noticed by the modification
+     * date of their folders. Settings changes are noticed by the hash saved next to the runner.
+     */
+    private boolean isTesterUpToDate( File testSwf, File testMxml, File settingsFile, String settings )
+    {
+        if ( !testSwf.isFile() || !settingsFile.isFile() )
+        {
+            return false;
+        }
+
+        try
+        {
+            if ( !settings.equals( FileUtils.readFileToString( settingsFile ) ) )
+            {
+                getLog().debug( "Test runner is stale, compiler settings changed" );
+                return false;
+            }
+        }
+        catch ( IOException e )
+        {
+            getLog().debug( "Unable to read test runner settings: " + e.getMessage() );
+            return false;
+        }
+
+        List<File> files = new ArrayList<File>();
+        files.add( testMxml );
+        files.add( project.getFile() );
+        if ( testRunnerTemplate != null )
+        {
+            files.add( testRunnerTemplate );
+        }
+        files.addAll( asList( getSourcePath() ) );
+        List<Resource> allResources = new ArrayList<Resource>( resources );
+        allResources.addAll( testResources );
+        for ( Resource resource : allResources )
+        {
+            if ( resource.getDirectory() != null )
+            {
+                files.add( new File( resource.getDirectory() ) );
+            }
+        }
+        files.addAll( asList( getLibraryPath() ) );
+        files.addAll( asList( getIncludeLibraries() ) );
+        files.addAll( asList( getExternalLibraryPath() ) );
+
+        long compiled = testSwf.lastModified();
+        for ( File file : files )
+        {
+            File newer = findNewer( file, compiled );
+            if ( newer != null )
+            {
+                getLog().debug( "Test runner is stale, found updated file: " + newer );
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static File findNewer( File file, long time )
+    {
+        if ( file == null )
+        {
+            return null;
+        }
+        if ( file.lastModified() > time )
+        {
+            return file;
+        }
+
+        File[] children = file.listFiles();
+        if ( children != null )
+        {
+            for ( File child : children )
+            {
+                File newer = findNewer( child, time );
+                if ( newer != null )
+                {
+                    return newer;
+                }
+            }
+        }
+        return null;
     }
 
     @Override
@@ -282,7 +572,118 @@ public class TestCompilerMojo
             return;
         }
 
+        List<String> allTestClasses = testClasses;
+
+        TestImpactIndex impact = getTestImpactIndex();
+        if ( impact != null )
+        {
+            impact.setEnvironment( getTestImpactEnvironment() );
+            if ( impact.isEnvironmentChanged() )
+            {
+                getLog().info( "Test impact analysis: libraries or pom changed since the last test run" );
+            }
+            testClasses = impact.select( testClasses );
+            getLog().info( "Test impact analysis: " + testClasses.size() + " of " + allTestClasses.size()
+                               + " test classes affected by " + impact.getChangedFiles().size() + " changed files" );
+
+            if ( testClasses.isEmpty() )
+            {
+                getLog().info( "Skipping test compiler, no test class affected by the changes." );
+
+                // a runner left behind by a previous build would run the tests again
+                deleteTestRunner();
+                return;
+            }
+        }
+
+        TestShard shard = getTestShard();
+        if ( shard != null )
+        {
+            testClasses = shard.filter( testClasses );
+            putPluginContext( FLEXMOJOS_TEST_SHARD, shard );
+            getLog().info( "Test shard " + shard + ": " + testClasses.size() + " test classes" );
+
+            if ( testClasses.isEmpty() )
+            {
+                getLog().warn( "Skipping test compiler, no test class found on shard " + shard );
+
+                // a runner left behind by a previous build would run other shard tests
+                deleteTestRunner();
+                return;
+            }
+        }
+
         buildTests( testClasses );
+
+        if ( impact != null )
+        {
+            recordTestImpact( impact, allTestClasses, testClasses );
+        }
+    }
+
+    private void deleteTestRunner()
+    {
+        new File( testOutputDirectory, TEST_RUNNER + "." + getProjectType() ).delete();
+    }
+
+    /**
+     * @return the index of the previous successful test run or null if test impact analysis is disabled
+     */
+    protected TestImpactIndex getTestImpactIndex()
+    {
+        if ( !testImpactAnalysis )
+        {
+            return null;
+        }
+
+        if ( test != null )
+        {
+            getLog().info( "Test impact analysis ignored, running selected tests: " + test );
+            return null;
+        }
+
+        try
+        {
+            return TestImpactIndex.load( testImpactIndex );
+        }
+        catch ( IOException e )
+        {
+            getLog().warn( "Unable to read test impact index, running all tests: " + e.getMessage() );
+            return new TestImpactIndex( testImpactIndex );
+        }
+    }
+
+    /**
+     * Library classes aren't tracked one by one, tests are affected by any change on the libraries or the pom
+     */
+    private String getTestImpactEnvironment()
+    {
+        List<File> libraries = new ArrayList<File>();
+        for ( File[] path : asList( getLibraryPath(), getIncludeLibraries(), getExternalLibraryPath() ) )
+        {
+            if ( path != null )
+            {
+                libraries.addAll( asList( path ) );
+            }
+        }
+        return TestImpactIndex.environment( project.getFile(), libraries.toArray( new File[libraries.size()] ) );
+    }
+
+    /**
+     * The index is only saved by test-run once all tests pass, otherwise the failing tests would be skipped next time
+     */
+    private void recordTestImpact( TestImpactIndex impact, List<String> allTestClasses, List<String> testClasses )
+    {
+        File linkReport = new File( testOutputDirectory, TEST_RUNNER + "-" + FlexClassifier.LINK_REPORT + "." + XML );
+        try
+        {
+            impact.record( linkReport, allTestClasses, testClasses );
+            putPluginContext( FLEXMOJOS_TEST_IMPACT, impact );
+        }
+        catch ( IOException e )
+        {
+            getLog().warn( "Unable to record test impact, affected tests will run again: " + e.getMessage() );
+        }
     }
 
     protected Integer freePort()
@@ -297,8 +698,8 @@ public class TestCompilerMojo
         }
     }
 
-    private File generateTester( List<? extends String> testClasses, String testFilename, Integer testControlPort,
-                                 Integer testPort )
+    private File writeTester( List<? extends String> testClasses, String testFilename, Integer testControlPort,
+                              Integer testPort )
         throws Exception
     {
         // can't use velocity, got:
@@ -318,6 +719,14 @@ public class TestCompilerMojo
         sourceString = sourceString.replace( "$port", testPort.toString() );
         sourceString = sourceString.replace( "$controlPort", String.valueOf( testControlPort ) );
         File testSourceFile = new File( testOutputDirectory, testFilename + ".mxml" );
+
+        // keep the modification date of an unchanged runner, so it isn't compiled again
+        if ( testSourceFile.isFile() && sourceString.equals( FileUtils.readFileToString( testSourceFile ) ) )
+        {
+            getLog().debug( "Test runner source is unchanged: " + testSourceFile );
+            return testSourceFile;
+        }
+
         FileWriter fileWriter = new FileWriter( testSourceFile );
         IOUtils.write( sourceString, fileWriter );
         fileWriter.flush();
@@ -346,6 +755,16 @@ public class TestCompilerMojo
         return true;
     }
 
+    /**
+     * The test runner is compiled on most builds, so it reuses the compiler cache unless told otherwise
+     */
+    @Override
+    public Boolean getIncremental()
+    {
+        Boolean incremental = super.getIncremental();
+        return incremental == null ? Boolean.TRUE : incremental;
+    }
+
     @SuppressWarnings( "unchecked" )
     @Override
     public File[] getExternalLibraryPath()
@@ -393,7 +812,17 @@ public class TestCompilerMojo
             context.put( FlexClassifier.LINK_REPORT,
                          file( project.getBuild().getFinalName() + "-" + FlexClassifier.LINK_REPORT + "." + XML,
                                project.getBuild().getDirectory() ) );
+            SourceIndex index = getSourceIndex();
+            context.put( SourceIndex.class.getName(), index );
             scanner.scan( sp, coverageExclusions, context );
+            try
+            {
+                index.save();
+            }
+            catch ( IOException e )
+            {
+                getLog().debug( "Unable to save source index: " + e.getMessage() );
+            }
         }
         return scanner;
     }
@@ -668,6 +1097,19 @@ public class TestCompilerMojo
         return testClasses;
     }
 
+    protected TestShard getTestShard()
+        throws MojoExecutionException
+    {
+        try
+        {
+            return TestShard.valueOf( testShardIndex, testShardCount );
+        }
+        catch ( IllegalArgumentException e )
+        {
+            throw new MojoExecutionException( e.getMessage(), e );
+        }
+    }
+
     protected void initializeIncludes()
     {
         if ( test != null )
@@ -0,0 +1,405 @@
+/**
+ * Flexmojos is a set of maven goals to allow maven users to compile, optimize and test Flex SWF, Flex SWC, Air SWF and Air SWC.
+ * Copyright (C) 2008-2012  Marvin Froeder <marvin@flexmojos.net>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.flexmojos.oss.plugin.test;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.UnsupportedEncodingException;
+import java.math.BigInteger;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.codehaus.plexus.util.IOUtil;
+import net.flexmojos.oss.plugin.utilities.LinkReport;
+
+/**
+ * Remembers which source files each test class depends on, so only the test classes affected by changed sources need
+ * to run. Dependencies come from the link report of the test runner, a source file is considered changed when its
+ * size or last modified date differ from the ones recorded when the test class was last compiled. Fingerprints are
+ * kept per test class, so a test left out of a run (by a shard for instance) still sees the files changed since its
+ * own last run. Library entries aren't followed, the libraries and the pom are fingerprinted as a whole instead (the
+ * environment) and any change there affects every test class.
+ */
+public class TestImpactIndex
+{
+
+    private static final String HEADER = "# flexmojos test impact index";
+
+    private static final String TEST = "test";
+
+    private static final String ENVIRONMENT = "env";
+
+    private static final String DEPENDENCY = "dep";
+
+    private final File file;
+
+    /**
+     * Test class to its source files and their fingerprint
+     */
+    private final Map<String, Map<String, String>> dependencies = new LinkedHashMap<String, Map<String, String>>();
+
+    /**
+     * Current fingerprint of the files, computed once
+     */
+    private final Map<String, String> currentFingerprints = new HashMap<String, String>();
+
+    /**
+     * Test class to the environment it was last compiled with
+     */
+    private final Map<String, String> environments = new HashMap<String, String>();
+
+    private String environment = "-";
+
+    private Set<String> changedFiles;
+
+    public TestImpactIndex( File file )
+    {
+        this.file = file;
+    }
+
+    /**
+     * @return the index saved on the file, or an empty index when there is none yet
+     */
+    public static TestImpactIndex load( File file )
+        throws IOException
+    {
+        TestImpactIndex index = new TestImpactIndex( file );
+        if ( !file.isFile() )
+        {
+            return index;
+        }
+
+        BufferedReader reader = new BufferedReader( new InputStreamReader( new FileInputStream( file ), "UTF-8" ) );
+        try
+        {
+            String test = null;
+            Map<String, String> current = null;
+            String line;
+            while ( ( line = reader.readLine() ) != null )
+            {
+                if ( line.length() == 0 || line.startsWith( "#" ) )
+                {
+                    continue;
+                }
+
+                String[] fields = line.split( "\t", 3 );
+                if ( TEST.equals( fields[0] ) && fields.length == 2 )
+                {
+                    test = fields[1];
+                    current = new TreeMap<String, String>();
+                    index.dependencies.put( test, current );
+                }
+                else if ( ENVIRONMENT.equals( fields[0] ) && fields.length == 2 && test != null )
+                {
+                    index.environments.put( test, fields[1] );
+                }
+                else if ( DEPENDENCY.equals( fields[0] ) && fields.length == 3 && current != null )
+                {
+                    current.put( fields[2], fields[1] );
+                }
+                else
+                {
+                    throw new IOException( "Invalid test impact index " + file + ": " + line );
+                }
+            }
+        }
+        finally
+        {
+            IOUtil.close( reader );
+        }
+        return index;
+    }
+
+    public File getFile()
+    {
+        return file;
+    }
+
+    public boolean isEmpty()
+    {
+        return dependencies.isEmpty();
+    }
+
+    /**
+     * @param environment fingerprint of the libraries and pom the tests are compiled with
+     * @see #environment(File, File[])
+     */
+    public void setEnvironment( String environment )
+    {
+        this.environment = environment;
+    }
+
+    /**
+     * @return true when a test class was last compiled with other libraries or another pom
+     */
+    public boolean isEnvironmentChanged()
+    {
+        for ( String testClass : dependencies.keySet() )
+        {
+            if ( !environment.equals( environments.get( testClass ) ) )
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the source files modified or removed since the index was recorded
+     */
+    public Set<String> getChangedFiles()
+    {
+        if ( changedFiles == null )
+        {
+            changedFiles = new TreeSet<String>();
+            for ( Map<String, String> files : dependencies.values() )
+            {
+                changedFiles.addAll( getChangedFiles( files ) );
+            }
+        }
+        return changedFiles;
+    }
+
+    private Set<String> getChangedFiles( Map<String, String> files )
+    {
+        Set<String> changed = new TreeSet<String>();
+        for ( Map.Entry<String, String> entry : files.entrySet() )
+        {
+            if ( !entry.getValue().equals( currentFingerprint( entry.getKey() ) ) )
+            {
+                changed.add( entry.getKey() );
+            }
+        }
+        return changed;
+    }
+
+    private String currentFingerprint( String path )
+    {
+        String fingerprint = currentFingerprints.get( path );
+        if ( fingerprint == null )
+        {
+            fingerprint = fingerprint( new File( path ) );
+            currentFingerprints.put( path, fingerprint );
+        }
+        return fingerprint;
+    }
+
+    /**
+     * @return the test classes unknown to the index, compiled with another environment or depending on a changed
+     *         source file
+     */
+    public List<String> select( List<String> testClasses )
+    {
+        List<String> affected = new ArrayList<String>();
+        for ( String testClass : testClasses )
+        {
+            Map<String, String> files = dependencies.get( testClass );
+            if ( files == null || files.isEmpty() || !environment.equals( environments.get( testClass ) )
+                || !getChangedFiles( files ).isEmpty() )
+            {
+                affected.add( testClass );
+            }
+        }
+        return affected;
+    }
+
+    /**
+     * Update the dependencies of the compiled test classes from the test runner link report. Only the compiled test
+     * classes get the current fingerprints and environment, the others keep the ones of their last run.
+     *
+     * @param testClasses all test classes of the project, the others are dropped from the index
+     * @param compiledClasses the test classes inside the runner
+     */
+    public void record( File linkReport, List<String> testClasses, List<String> compiledClasses )
+        throws IOException
+    {
+        dependencies.keySet().retainAll( testClasses );
+        environments.keySet().retainAll( testClasses );
+
+        LinkReport graph = LinkReport.read( linkReport );
+        for ( String testClass : compiledClasses )
+        {
+            Map<String, String> files = new TreeMap<String, String>();
+            for ( String path : collectFiles( graph, toDefinition( testClass ) ) )
+            {
+                files.put( path, currentFingerprint( path ) );
+            }
+            dependencies.put( testClass, files );
+            environments.put( testClass, environment );
+        }
+        changedFiles = null;
+    }
+
+    public void save()
+        throws IOException
+    {
+        file.getParentFile().mkdirs();
+
+        BufferedWriter writer =
+            new BufferedWriter( new OutputStreamWriter( new FileOutputStream( file ), "UTF-8" ) );
+        try
+        {
+            writer.write( HEADER );
+            writer.newLine();
+            for ( Map.Entry<String, Map<String, String>> entry : dependencies.entrySet() )
+            {
+                writer.write( TEST + "\t" + entry.getKey() );
+                writer.newLine();
+                String testEnvironment = environments.get( entry.getKey() );
+                if ( testEnvironment != null )
+                {
+                    writer.write( ENVIRONMENT + "\t" + testEnvironment );
+                    writer.newLine();
+                }
+                for ( Map.Entry<String, String> dependency : entry.getValue().entrySet() )
+                {
+                    writer.write( DEPENDENCY + "\t" + dependency.getValue() + "\t" + dependency.getKey() );
+                    writer.newLine();
+                }
+            }
+        }
+        finally
+        {
+            IOUtil.close( writer );
+        }
+    }
+
+    /**
+     * @return every source file reachable from the definition, classes from libraries are left out as the environment
+     *         covers them
+     */
+    private static Set<String> collectFiles( LinkReport graph, String definition )
+    {
+        Set<String> files = new TreeSet<String>();
+        Set<String> visited = new HashSet<String>();
+        LinkedList<String> queue = new LinkedList<String>();
+        queue.add( definition );
+
+        while ( !queue.isEmpty() )
+        {
+            String script = graph.getScript( queue.removeFirst() );
+            if ( script == null || !visited.add( script ) )
+            {
+                continue;
+            }
+
+            // swc entries look like lib.swc(mx.core:UIComponent)
+            if ( !script.endsWith( ")" ) && new File( script ).isFile() )
+            {
+                files.add( script );
+            }
+            queue.addAll( graph.getDependencies( script ) );
+        }
+        return files;
+    }
+
+    /**
+     * com.acme.FooTest is defined on the link report as com.acme:FooTest
+     */
+    static String toDefinition( String className )
+    {
+        int i = className.lastIndexOf( '.' );
+        if ( i == -1 )
+        {
+            return className;
+        }
+        return className.substring( 0, i ) + ":" + className.substring( i + 1 );
+    }
+
+    /**
+     * @return a hash of the pom and of the libraries fingerprints, folders are fingerprinted by their content
+     */
+    public static String environment( File pom, File[] libraries )
+    {
+        List<String> fingerprints = new ArrayList<String>();
+        addFingerprints( pom, fingerprints );
+        for ( File library : libraries )
+        {
+            addFingerprints( library, fingerprints );
+        }
+        Collections.sort( fingerprints );
+
+        StringBuilder content = new StringBuilder();
+        for ( String fingerprint : fingerprints )
+        {
+            content.append( fingerprint ).append( '\n' );
+        }
+        return sha1( content.toString() );
+    }
+
+    /**
+     * @return the hex encoded SHA-1 of the text
+     */
+    static String sha1( String text )
+    {
+        try
+        {
+            byte[] hash = MessageDigest.getInstance( "SHA-1" ).digest( text.getBytes( "UTF-8" ) );
+            return new BigInteger( 1, hash ).toString( 16 );
+        }
+        catch ( NoSuchAlgorithmException e )
+        {
+            throw new IllegalStateException( e );
+        }
+        catch ( UnsupportedEncodingException e )
+        {
+            throw new IllegalStateException( e );
+        }
+    }
+
+    private static void addFingerprints( File file, List<String> fingerprints )
+    {
+        File[] children = file.listFiles();
+        if ( children == null )
+        {
+            fingerprints.add( fingerprint( file ) + "\t" + file.getAbsolutePath() );
+            return;
+        }
+        for ( File child : children )
+        {
+            addFingerprints( child, fingerprints );
+        }
+    }
+
+    static String fingerprint( File file )
+    {
+        if ( !file.exists() )
+        {
+            return "-";
+        }
+        return file.lastModified() + ":" + file.length();
+    }
+
+}
@@ -0,0 +1,241 @@
+/**
+ * Flexmojos is a set of maven goals to allow maven users to compile, optimize and test Flex SWF, Flex SWC, Air SWF and Air SWC.
+ * Copyright (C) 2008-2012  Marvin Froeder <marvin@flexmojos.net>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.flexmojos.oss.plugin.test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.StringReader;
+import java.io.Writer;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.stream.XMLStreamException;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+import org.codehaus.plexus.util.IOUtil;
+import net.flexmojos.oss.coverage.CoverageReporter;
+import net.flexmojos.oss.test.monitor.TestResultListener;
+import net.flexmojos.oss.test.report.ErrorReport;
+import net.flexmojos.oss.test.report.TestReportHandler;
+import net.flexmojos.oss.test.report.TestReportParser;
+
+/**
+ * Writes each test suite to its surefire report the moment it arrives, while the remaining tests are still running.
+ * The suites are streamed once through {@link TestReportParser}, collecting the totals, the method durations and the
+ * coverage data. Writing happens on a thread of its own so the socket monitor never waits on the disk.
+ */
+public class TestReportWriter
+    implements TestResultListener
+{
+
+    private final File reportPath;
+
+    private final TestTimingHistory history;
+
+    private final CoverageReporter reporter;
+
+    private final Log log;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor( new ThreadFactory()
+    {
+        public Thread newThread( Runnable r )
+        {
+            Thread thread = new Thread( r, "flexmojos-test-report-writer" );
+            thread.setDaemon( true );
+            return thread;
+        }
+    } );
+
+    private volatile Exception error;
+
+    /**
+     * Only used by the writer thread
+     */
+    private final TestReportParser parser = new TestReportParser();
+
+    private int tests;
+
+    private int errors;
+
+    private int failures;
+
+    /**
+     * @param history may be null
+     * @param reporter may be null when coverage is disabled
+     */
+    public TestReportWriter( File reportPath, TestTimingHistory history, CoverageReporter reporter, Log log )
+    {
+        this.reportPath = reportPath;
+        this.history = history;
+        this.reporter = reporter;
+        this.log = log;
+    }
+
+    public void testSuiteFinished( final String result )
+    {
+        executor.execute( new Runnable()
+        {
+            public void run()
+            {
+                if ( error != null )
+                {
+                    return;
+                }
+
+                try
+                {
+                    write( result );
+                }
+                catch ( Exception e )
+                {
+                    error = e;
+                }
+            }
+        } );
+    }
+
+    private void write( String result )
+        throws XMLStreamException, IOException
+    {
+        SuiteHandler suite = new SuiteHandler();
+        parser.parse( new StringReader( result ), suite );
+
+        log.debug( "[MOJO] Test report of " + suite.name );
+        log.debug( result );
+
+        File file = new File( reportPath, "TEST-" + suite.name.replace( "::", "." ) + ".xml" );
+        Writer writer = new OutputStreamWriter( new FileOutputStream( file ), "UTF-8" );
+        try
+        {
+            writer.write( result );
+            writer.flush();
+        }
+        finally
+        {
+            IOUtil.close( writer );
+        }
+
+        if ( suite.errors + suite.failures > 0 )
+        {
+            log.warn( "Unit test " + suite.name + " failed." );
+        }
+
+        synchronized ( this )
+        {
+            tests += suite.tests;
+            errors += suite.errors;
+            failures += suite.failures;
+        }
+    }
+
+    /**
+     * Keeps the suite totals, records the method durations and hands the coverage data to the reporter
+     */
+    private class SuiteHandler
+        implements TestReportHandler
+    {
+
+        private String name;
+
+        private int tests;
+
+        private int errors;
+
+        private int failures;
+
+        public void testSuite( String name, int tests, int errors, int failures, double time )
+        {
+            this.name = name;
+            this.tests = tests;
+            this.errors = errors;
+            this.failures = failures;
+        }
+
+        public void testCase( String classname, String name, double time )
+        {
+            if ( history != null )
+            {
+                history.record( classname == null ? this.name : classname, name, Math.round( time * 1000 ) );
+            }
+        }
+
+        public void error( ErrorReport error )
+        {
+        }
+
+        public void failure( ErrorReport failure )
+        {
+        }
+
+        public void coverage( String classname, int[] touchs, int touchCount )
+        {
+            if ( reporter != null )
+            {
+                reporter.addResult( classname, touchs, touchCount );
+            }
+        }
+
+    }
+
+    /**
+     * Wait for the pending reports to be written
+     */
+    public void finish()
+        throws MojoExecutionException
+    {
+        executor.shutdown();
+        try
+        {
+            while ( !executor.awaitTermination( 1, TimeUnit.SECONDS ) )
+            {
+                log.debug( "[MOJO] Waiting test reports to be written" );
+            }
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException( "Interrupted while writing test reports", e );
+        }
+
+        if ( error != null )
+        {
+            throw new MojoExecutionException( "Unable to save test result report", error );
+        }
+    }
+
+    public synchronized int getTests()
+    {
+        return tests;
+    }
+
+    public synchronized int getErrors()
+    {
+        return errors;
+    }
+
+    public synchronized int getFailures()
+    {
+        return failures;
+    }
+
+}
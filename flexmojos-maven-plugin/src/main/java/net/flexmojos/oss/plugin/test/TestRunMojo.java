@@ -18,9 +18,7 @@
 package net.flexmojos.oss.plugin.test;
 
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.io.StringReader;
 import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -32,9 +30,8 @@ import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
 import org.codehaus.plexus.util.DirectoryScanner;
 import org.codehaus.plexus.util.FileUtils;
-import org.codehaus.plexus.util.IOUtil;
-import org.codehaus.plexus.util.xml.Xpp3DomBuilder;
-import org.codehaus.plexus.util.xml.pull.XmlPullParserException;
+import net.flexmojos.oss.coverage.CoverageData;
+import net.flexmojos.oss.coverage.CoverageDataFile;
 import net.flexmojos.oss.coverage.CoverageReportException;
 import net.flexmojos.oss.coverage.CoverageReportRequest;
 import net.flexmojos.oss.coverage.CoverageReporter;
@@ -45,8 +42,6 @@ import net.flexmojos.oss.test.TestRequest;
 import net.flexmojos.oss.test.TestRunner;
 import net.flexmojos.oss.test.TestRunnerException;
 import net.flexmojos.oss.test.launcher.LaunchFlashPlayerException;
-import net.flexmojos.oss.test.report.TestCaseReport;
-import net.flexmojos.oss.test.report.TestCoverageReport;
 import net.flexmojos.oss.util.PathUtil;
 
 /**
@@ -110,6 +105,14 @@ public class TestRunMojo
      */
     private File coverageDataDirectory;
 
+    /**
+     * Add the coverage of this run to the coverage data left by previous runs, like other test shards or executions,
+     * instead of replacing it. The report then covers all of them.
+     * 
+     * @parameter expression="${flex.coverageAppend}" default-value="false"
+     */
+    private boolean coverageAppend;
+
     /**
      * Location to write coverage report
      * 
@@ -222,6 +225,22 @@ public class TestRunMojo
      */
     private boolean testFailureIgnore;
 
+    /**
+     * Zero based index of the test shard this build runs. When test-compile already compiled only this shard test
+     * classes the runner is used as is, otherwise the test runners found on <code>testOutputDirectory</code> are split
+     * among the shards by name.
+     * 
+     * @parameter expression="${flex.testShardIndex}"
+     */
+    private Integer testShardIndex;
+
+    /**
+     * Number of shards the tests are split into.
+     * 
+     * @parameter expression="${flex.testShardCount}"
+     */
+    private Integer testShardCount;
+
     /**
      * @parameter expression="${project.build.testOutputDirectory}"
      * @readonly
@@ -235,6 +254,14 @@ public class TestRunMojo
      */
     private Integer testPort;
 
+    /**
+     * Interval between two pings to Flashplayer, together with testTimeout defines how fast a hanging Flashplayer is
+     * detected.
+     * 
+     * @parameter default-value="500" expression="${flex.testPingInterval}"
+     */
+    private int testPingInterval;
+
     /**
      * @component role="net.flexmojos.oss.test.TestRunner"
      */
@@ -247,6 +274,16 @@ public class TestRunMojo
      */
     private int testTimeout;
 
+    /**
+     * Where the duration of every test method is kept across builds
+     * 
+     * @parameter default-value="${project.build.directory}/flexmojos/test-timings.txt"
+     *            expression="${flex.testTimingHistory}"
+     */
+    private File testTimingHistory;
+
+    private TestTimingHistory timings;
+
     private int time;
 
     /**
@@ -270,10 +307,33 @@ public class TestRunMojo
         else
         {
             run();
+            saveTestImpact();
             tearDown();
         }
     }
 
+    /**
+     * Test impact analysis only remembers a test run when everything passed, so failing tests run again
+     */
+    private void saveTestImpact()
+    {
+        TestImpactIndex impact = getFromPluginContext( TestCompilerMojo.FLEXMOJOS_TEST_IMPACT );
+        if ( impact == null || failures || executionError != null )
+        {
+            return;
+        }
+
+        try
+        {
+            impact.save();
+            getLog().debug( "Test impact index saved at " + impact.getFile() );
+        }
+        catch ( IOException e )
+        {
+            getLog().warn( "Unable to save test impact index: " + e.getMessage() );
+        }
+    }
+
     public File[] getSourcePath()
     {
         List<File> files = new ArrayList<File>();
@@ -307,6 +367,7 @@ public class TestRunMojo
                 reporter = coverageReporterManager.getReporter( coverageProvider );
                 
                 reporter.setExcludes( coverageExclusions );
+                reporter.setCacheDirectory( new File( coverageDataDirectory, "instrumented" ) );
             }
             catch ( CoverageReportException e )
             {
@@ -314,6 +375,8 @@ public class TestRunMojo
             }
         }
 
+        timings = loadTimingHistory();
+
         try
         {
             String[] swfs = scan.getIncludedFiles();
@@ -321,6 +384,8 @@ public class TestRunMojo
         }
         finally
         {
+            saveTimingHistory();
+
             if ( coverage )
             {
                 CoverageReportRequest request =
@@ -329,6 +394,7 @@ public class TestRunMojo
                                                new File( project.getBuild().getSourceDirectory() ) );
                 try
                 {
+                    saveCoverageData( reporter );
                     reporter.generateReport( request );
                     File index = new File(coverageOutputDirectory.getAbsolutePath() + "/index.html");
                     if(index.exists())
@@ -347,6 +413,23 @@ public class TestRunMojo
         }
     }
 
+    private void saveCoverageData( CoverageReporter reporter )
+        throws IOException
+    {
+        File file = new File( coverageDataDirectory, CoverageDataFile.NAME );
+        if ( coverageAppend )
+        {
+            CoverageData previous = CoverageDataFile.read( file );
+            CoverageDataFile.write( reporter.getCoverageData(), file, true );
+            // the report covers the previous runs as well
+            reporter.addCoverageData( previous );
+        }
+        else
+        {
+            CoverageDataFile.write( reporter.getCoverageData(), file, false );
+        }
+    }
+
     public void runTest( String swfName, Integer testPort, Integer testControlPort, CoverageReporter reporter )
         throws MojoExecutionException
     {
@@ -369,6 +452,7 @@ public class TestRunMojo
             testRequest.setFlashPlayerReturnCodesToIgnore( codes );
         }
         testRequest.setTestTimeout( testTimeout );
+        testRequest.setPingInterval( testPingInterval );
         testRequest.setFirstConnectionTimeout( firstConnectionTimeout );
 
         boolean isAirProject = getIsAirProject();
@@ -383,30 +467,21 @@ public class TestRunMojo
             testRequest.setFlashplayerCommand( flashPlayerCommand );
         }
 
-        if ( coverage )
-        {
-            reporter.instrument( swf, getSourcePath() );
-        }
+        // reports are written as each test suite arrives
+        TestReportWriter writer = new TestReportWriter( reportPath, timings, reporter, getLog() );
+        testRequest.setResultListener( writer );
 
+        // whether the test run ended without an exception on its way out
+        boolean completed = false;
         try
         {
-            List<String> results = runTest( testRequest );
-            for ( String result : results )
-            {
-                TestCaseReport report = writeTestReport( result );
-                if ( coverage )
-                {
-                    List<TestCoverageReport> coverageResult = report.getCoverage();
-                    for ( TestCoverageReport testCoverageReport : coverageResult )
-                    {
-                        reporter.addResult( testCoverageReport.getClassname(), testCoverageReport.getTouchs() );
-                    }
-                }
-            }
+            runTest( testRequest );
+            completed = true;
         }
         catch ( TestRunnerException e )
         {
             executionError = e;
+            completed = true;
         }
         catch ( LaunchFlashPlayerException e )
         {
@@ -424,6 +499,30 @@ public class TestRunMojo
                         e );
             }
         }
+        finally
+        {
+            try
+            {
+                writer.finish();
+            }
+            catch ( MojoExecutionException e )
+            {
+                if ( completed )
+                {
+                    throw e;
+                }
+                // don't hide the reason the run failed
+                getLog().error( e.getMessage(), e.getCause() );
+            }
+
+            numTests += writer.getTests();
+            numErrors += writer.getErrors();
+            numFailures += writer.getFailures();
+            if ( writer.getErrors() + writer.getFailures() > 0 )
+            {
+                failures = true;
+            }
+        }
     }
 
     public List<String> runTest( TestRequest testRequest )
@@ -451,14 +550,87 @@ public class TestRunMojo
             // in the "test-compile" goal.
             testControlPort = getFromPluginContext( TestCompilerMojo.FLEXMOJOS_TEST_CONTROL_PORT );
         }
+        swfs = filterShard( swfs );
         getLog().debug( "Found " + swfs.length + " test runners:\n" + Arrays.toString( swfs ) );
         getLog().debug( "Using test port '" + testPort + "' and test control port '" + testControlPort + "'" );
+
+        if ( coverage )
+        {
+            List<File> files = new ArrayList<File>();
+            for ( String swfName : swfs )
+            {
+                files.add( new File( testOutputDirectory, swfName ) );
+            }
+            reporter.instrument( files, getSourcePath() );
+        }
+
         for ( String swfName : swfs )
         {
             runTest( swfName, testPort, testControlPort, reporter );
         }
     }
 
+    private String[] filterShard( String[] swfs )
+        throws MojoExecutionException
+    {
+        TestShard shard;
+        try
+        {
+            shard = TestShard.valueOf( testShardIndex, testShardCount );
+        }
+        catch ( IllegalArgumentException e )
+        {
+            throw new MojoExecutionException( e.getMessage(), e );
+        }
+
+        if ( shard == null )
+        {
+            return swfs;
+        }
+
+        // test classes were already partitioned when the runner got compiled
+        if ( getFromPluginContext( TestCompilerMojo.FLEXMOJOS_TEST_SHARD ) != null )
+        {
+            getLog().info( "Running test shard " + shard );
+            return swfs;
+        }
+
+        List<String> selected = shard.filter( Arrays.asList( swfs ) );
+        getLog().info( "Running test shard " + shard + ": " + selected.size() + " of " + swfs.length
+            + " test runners" );
+        return selected.toArray( new String[selected.size()] );
+    }
+
+    private TestTimingHistory loadTimingHistory()
+    {
+        try
+        {
+            return TestTimingHistory.load( testTimingHistory );
+        }
+        catch ( IOException e )
+        {
+            getLog().warn( "Unable to read test timing history, starting a new one: " + e.getMessage() );
+            return new TestTimingHistory( testTimingHistory );
+        }
+    }
+
+    private void saveTimingHistory()
+    {
+        try
+        {
+            timings.save();
+        }
+        catch ( IOException e )
+        {
+            getLog().warn( "Unable to save test timing history: " + e.getMessage() );
+        }
+
+        if ( getLog().isDebugEnabled() )
+        {
+            getLog().debug( "Slowest tests: " + timings.getSlowest( 10 ) );
+        }
+    }
+
     protected void tearDown()
         throws MojoExecutionException, MojoFailureException
     {
@@ -494,80 +666,4 @@ public class TestRunMojo
 
     }
 
-    /**
-     * Write a test report to disk.
-     * 
-     * @param reportString the report to write.
-     * @return
-     * @throws MojoExecutionException
-     */
-    private TestCaseReport writeTestReport( final String reportString )
-        throws MojoExecutionException
-    {
-        // Parse the report.
-        TestCaseReport report;
-        try
-        {
-            report = new TestCaseReport( Xpp3DomBuilder.build( new StringReader( reportString ) ) );
-        }
-        catch ( XmlPullParserException e )
-        {
-            // should never happen
-            throw new MojoExecutionException( e.getMessage(), e );
-        }
-        catch ( IOException e )
-        {
-            // should never happen
-            throw new MojoExecutionException( e.getMessage(), e );
-        }
-
-        // Get the test attributes.
-        final String name = report.getName();
-        final int numFailures = report.getFailures();
-        final int numErrors = report.getErrors();
-        final int totalProblems = numFailures + numErrors;
-
-        getLog().debug( "[MOJO] Test report of " + name );
-        getLog().debug( reportString );
-
-        // Get the output file name.
-        final File file = new File( reportPath, "TEST-" + name.replace( "::", "." ) + ".xml" );
-
-        FileWriter writer = null;
-        try
-        {
-            writer = new FileWriter( file );
-            IOUtil.copy( reportString, writer );
-            writer.flush();
-        }
-        catch ( IOException e )
-        {
-            throw new MojoExecutionException( "Unable to save test result report", e );
-        }
-        finally
-        {
-            IOUtil.close( writer );
-        }
-
-        // Pretty print the document to disk.
-        // final XMLWriter writer = new XMLWriter( new FileOutputStream( file ), format );
-        // writer.write( document );
-        // writer.close();
-
-        // First write the report, then fail the build if the test failed.
-        if ( totalProblems > 0 )
-        {
-            failures = true;
-
-            getLog().warn( "Unit test " + name + " failed." );
-
-        }
-
-        this.numTests += report.getTests();
-        this.numErrors += report.getErrors();
-        this.numFailures += report.getFailures();
-
-        return report;
-    }
-
 }
@@ -0,0 +1,106 @@
+/**
+ * Flexmojos is a set of maven goals to allow maven users to compile, optimize and test Flex SWF, Flex SWC, Air SWF and Air SWC.
+ * Copyright (C) 2008-2012  Marvin Froeder <marvin@flexmojos.net>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.flexmojos.oss.plugin.test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Deterministic partition of test classes across several build agents. A class is assigned to a shard by the hash of
+ * its name, so it always lands on the same shard for a given shard count, no matter which machine runs the build or in
+ * which order the classes were found.
+ */
+public class TestShard
+{
+
+    private final int index;
+
+    private final int count;
+
+    public TestShard( int index, int count )
+    {
+        if ( count < 1 )
+        {
+            throw new IllegalArgumentException( "Invalid test shard count: " + count );
+        }
+        if ( index < 0 || index >= count )
+        {
+            throw new IllegalArgumentException( "Invalid test shard index " + index + ", must be between 0 and "
+                + ( count - 1 ) );
+        }
+
+        this.index = index;
+        this.count = count;
+    }
+
+    /**
+     * @return the shard described by the given mojo parameters or null when sharding is not enabled
+     */
+    public static TestShard valueOf( Integer index, Integer count )
+    {
+        if ( count == null || count <= 1 )
+        {
+            return null;
+        }
+
+        return new TestShard( index == null ? 0 : index, count );
+    }
+
+    public int getCount()
+    {
+        return count;
+    }
+
+    public int getIndex()
+    {
+        return index;
+    }
+
+    public boolean accept( String name )
+    {
+        return shardOf( name, count ) == index;
+    }
+
+    public List<String> filter( List<String> names )
+    {
+        List<String> accepted = new ArrayList<String>();
+        for ( String name : names )
+        {
+            if ( accept( name ) )
+            {
+                accepted.add( name );
+            }
+        }
+        return accepted;
+    }
+
+    /**
+     * String.hashCode is specified by the JLS, so the assignment is stable across JVMs
+     */
+    public static int shardOf( String name, int count )
+    {
+        return ( name.hashCode() & Integer.MAX_VALUE ) % count;
+    }
+
+    @Override
+    public String toString()
+    {
+        return ( index + 1 ) + "/" + count;
+    }
+
+}
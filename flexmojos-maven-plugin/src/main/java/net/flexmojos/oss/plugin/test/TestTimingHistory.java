@@ -0,0 +1,230 @@
+/**
+ * Flexmojos is a set of maven goals to allow maven users to compile, optimize and test Flex SWF, Flex SWC, Air SWF and Air SWC.
+ * Copyright (C) 2008-2012  Marvin Froeder <marvin@flexmojos.net>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.flexmojos.oss.plugin.test;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.codehaus.plexus.util.IOUtil;
+
+/**
+ * Durations of every test method across builds, keyed by test class and method name.
+ */
+public class TestTimingHistory
+{
+
+    private static final String HEADER = "# flexmojos test timings: class, method, runs, last ms, average ms";
+
+    public static class Timing
+    {
+
+        private final String className;
+
+        private final String methodName;
+
+        private int runs;
+
+        private long last;
+
+        private long average;
+
+        Timing( String className, String methodName )
+        {
+            this.className = className;
+            this.methodName = methodName;
+        }
+
+        public String getClassName()
+        {
+            return className;
+        }
+
+        public String getMethodName()
+        {
+            return methodName;
+        }
+
+        public int getRuns()
+        {
+            return runs;
+        }
+
+        /**
+         * @return the duration on the most recent run, in milliseconds
+         */
+        public long getLast()
+        {
+            return last;
+        }
+
+        /**
+         * @return the average duration over all recorded runs, in milliseconds
+         */
+        public long getAverage()
+        {
+            return average;
+        }
+
+        void add( long millis )
+        {
+            average = ( average * runs + millis ) / ( runs + 1 );
+            runs++;
+            last = millis;
+        }
+
+        @Override
+        public String toString()
+        {
+            return className + "." + methodName + " (" + last + "ms)";
+        }
+
+    }
+
+    private final File file;
+
+    private final Map<String, Timing> timings = new TreeMap<String, Timing>();
+
+    public TestTimingHistory( File file )
+    {
+        this.file = file;
+    }
+
+    /**
+     * @return the history saved on the file, or an empty history when there is none yet
+     */
+    public static TestTimingHistory load( File file )
+        throws IOException
+    {
+        TestTimingHistory history = new TestTimingHistory( file );
+        if ( !file.isFile() )
+        {
+            return history;
+        }
+
+        BufferedReader reader = new BufferedReader( new InputStreamReader( new FileInputStream( file ), "UTF-8" ) );
+        try
+        {
+            String line;
+            while ( ( line = reader.readLine() ) != null )
+            {
+                if ( line.length() == 0 || line.startsWith( "#" ) )
+                {
+                    continue;
+                }
+
+                String[] fields = line.split( "\t" );
+                if ( fields.length != 5 )
+                {
+                    throw new IOException( "Invalid test timing history " + file + ": " + line );
+                }
+
+                Timing timing = history.get( fields[0], fields[1] );
+                try
+                {
+                    timing.runs = Integer.parseInt( fields[2] );
+                    timing.last = Long.parseLong( fields[3] );
+                    timing.average = Long.parseLong( fields[4] );
+                }
+                catch ( NumberFormatException e )
+                {
+                    throw new IOException( "Invalid test timing history " + file + ": " + line );
+                }
+            }
+        }
+        finally
+        {
+            IOUtil.close( reader );
+        }
+        return history;
+    }
+
+    public File getFile()
+    {
+        return file;
+    }
+
+    private Timing get( String className, String methodName )
+    {
+        String key = className + '\t' + methodName;
+        Timing timing = timings.get( key );
+        if ( timing == null )
+        {
+            timing = new Timing( className, methodName );
+            timings.put( key, timing );
+        }
+        return timing;
+    }
+
+    public synchronized void record( String className, String methodName, long millis )
+    {
+        get( className, methodName ).add( millis );
+    }
+
+    /**
+     * @return the methods that took longer on their last run
+     */
+    public synchronized List<Timing> getSlowest( int count )
+    {
+        List<Timing> sorted = new ArrayList<Timing>( timings.values() );
+        Collections.sort( sorted, new Comparator<Timing>()
+        {
+            public int compare( Timing o1, Timing o2 )
+            {
+                return o1.last < o2.last ? 1 : ( o1.last == o2.last ? 0 : -1 );
+            }
+        } );
+        return sorted.subList( 0, Math.min( count, sorted.size() ) );
+    }
+
+    public synchronized void save()
+        throws IOException
+    {
+        file.getParentFile().mkdirs();
+
+        BufferedWriter writer =
+            new BufferedWriter( new OutputStreamWriter( new FileOutputStream( file ), "UTF-8" ) );
+        try
+        {
+            writer.write( HEADER );
+            writer.newLine();
+            for ( Timing timing : timings.values() )
+            {
+                writer.write( timing.className + "\t" + timing.methodName + "\t" + timing.runs + "\t" + timing.last
+                    + "\t" + timing.average );
+                writer.newLine();
+            }
+        }
+        finally
+        {
+            IOUtil.close( writer );
+        }
+    }
+
+}
@@ -18,22 +18,27 @@
 package net.flexmojos.oss.plugin.test.scanners;
 
 import java.io.File;
-import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
-import org.apache.commons.io.FilenameUtils;
 import org.codehaus.plexus.component.annotations.Component;
-import org.codehaus.plexus.util.FileUtils;
+import net.flexmojos.oss.plugin.utilities.SourceIndex;
 
 @Component( role = FlexClassScanner.class, hint = "as3Content" )
 public class AS3ContentFlexClassScanner
     extends AbstractFlexClassScanner
 {
-    private static final String COMMENTS_REGEX = "//.*|(\"(?:\\\\[^\"]|\\\\\"|.)*?\")|(?s)/\\*.*?\\*/";
+
+    /**
+     * Files handed to each thread at once, reading a single small file isn't worth a task
+     */
+    private static final int BATCH_SIZE = 64;
 
     private ArrayList<String> sniplets;
 
@@ -42,59 +47,110 @@ public class AS3ContentFlexClassScanner
         classes = new ArrayList<String>();
         sniplets = new ArrayList<String>();
 
+        // the module index, so sources aren't read again by the next build
+        SourceIndex sourceIndex = (SourceIndex) context.get( SourceIndex.class.getName() );
+        if ( sourceIndex == null )
+        {
+            throw new IllegalArgumentException( "No source index on the as3Content scanner context" );
+        }
+
         for ( File dir : directories )
         {
             List<String> found = scan( dir, exclusions, context );
-            destinateAs3Files( dir, found );
+            destinateAs3Files( dir, found, sourceIndex );
         }
     }
 
-    protected void destinateAs3Files( File basedir, List<String> found )
+    protected void destinateAs3Files( final File basedir, List<String> found, final SourceIndex sourceIndex )
     {
-        for ( String includedFile : found )
+        int threads = Math.min( Runtime.getRuntime().availableProcessors(), found.size() / BATCH_SIZE + 1 );
+        ExecutorService executor = Executors.newFixedThreadPool( threads );
+        try
         {
-            try
+            List<Future<Boolean[]>> results = new ArrayList<Future<Boolean[]>>();
+            for ( int i = 0; i < found.size(); i += BATCH_SIZE )
             {
-                if ( isClassFile( includedFile, basedir ) )
+                final List<String> batch = found.subList( i, Math.min( i + BATCH_SIZE, found.size() ) );
+                results.add( executor.submit( new Callable<Boolean[]>()
                 {
-                    classes.add( includedFile );
-                }
-                else
-                {
-                    sniplets.add( includedFile );
-                }
+                    public Boolean[] call()
+                    {
+                        Boolean[] classFiles = new Boolean[batch.size()];
+                        for ( int j = 0; j < classFiles.length; j++ )
+                        {
+                            classFiles[j] = isClassFile( batch.get( j ), basedir, sourceIndex );
+                        }
+                        return classFiles;
+                    }
+                } ) );
             }
-            catch ( IOException e )
+
+            int index = 0;
+            for ( Future<Boolean[]> result : results )
             {
-                if ( getLogger().isDebugEnabled() )
-                {
-                    getLogger().error( "Error reading class content " + includedFile, e );
-                }
-                else
+                for ( Boolean classFile : get( result ) )
                 {
-                    getLogger().error( "Error reading class content " + includedFile );
+                    String includedFile = found.get( index++ );
+                    if ( classFile == null )
+                    {
+                        // unreadable
+                        continue;
+                    }
+                    if ( classFile )
+                    {
+                        classes.add( includedFile );
+                    }
+                    else
+                    {
+                        sniplets.add( includedFile );
+                    }
                 }
             }
         }
+        finally
+        {
+            executor.shutdownNow();
+        }
     }
 
-    private boolean isClassFile( String pathname, File basedir )
-        throws IOException
+    private static <T> T get( Future<T> result )
+    {
+        try
+        {
+            return result.get();
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException( "Interrupted while reading classes content", e );
+        }
+        catch ( ExecutionException e )
+        {
+            Throwable cause = e.getCause();
+            if ( cause instanceof RuntimeException )
+            {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException( cause.getMessage(), cause );
+        }
+    }
+
+    /**
+     * @return null when the file can't be read
+     */
+    private Boolean isClassFile( String pathname, File basedir, SourceIndex sourceIndex )
     {
         if ( pathname.endsWith( ".mxml" ) )
             return true;
 
         File file = new File( basedir, pathname );
-        String contents = FileUtils.fileRead( file );
-        contents = contents.replaceAll( COMMENTS_REGEX, "$1 " );
-
-        String className = FilenameUtils.getBaseName( file.getName() );
-        String matchRegex = "[\\s]*(class|interface)[\\s]+" + className + "[\\s]*";
-
-        Pattern pattern = Pattern.compile( matchRegex );
-        Matcher matcher = pattern.matcher( contents );
+        if ( !file.canRead() )
+        {
+            getLogger().error( "Error reading class content " + pathname );
+            return null;
+        }
 
-        return matcher.find();
+        return sourceIndex.get( basedir, pathname ).isClass();
     }
 
     public List<String> getAs3Snippets()
@@ -18,6 +18,7 @@
 package net.flexmojos.oss.plugin.test.scanners;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Iterator;
@@ -25,11 +26,8 @@ import java.util.List;
 import java.util.Map;
 
 import org.codehaus.plexus.component.annotations.Component;
-import org.dom4j.Attribute;
-import org.dom4j.Document;
-import org.dom4j.DocumentException;
-import org.dom4j.io.SAXReader;
 import net.flexmojos.oss.plugin.common.FlexClassifier;
+import net.flexmojos.oss.plugin.utilities.LinkReport;
 
 @Component( role = FlexClassScanner.class, hint = "link-report" )
 public class LinkReportFlexClassScanner
@@ -40,41 +38,35 @@ public class LinkReportFlexClassScanner
     {
         classes = new ArrayList<String>();
 
+        LinkReport linkReport = readLinkReport( (File) context.get( FlexClassifier.LINK_REPORT ) );
         for ( File dir : directories )
         {
             List<String> found = scan( dir, exclusions, context );
-            removeUnlinkedIncludedFiles( found, dir, (File) context.get( FlexClassifier.LINK_REPORT ) );
+            removeUnlinkedIncludedFiles( found, dir, linkReport );
             classes.addAll( found );
         }
     }
 
-    @SuppressWarnings( "unchecked" )
-    protected void removeUnlinkedIncludedFiles( List<String> found, File basedir, File linkReport )
+    private LinkReport readLinkReport( File linkReport )
     {
-        List<String> linkedFiles = new ArrayList<String>();
-        SAXReader saxReader = new SAXReader();
-        Document document;
         try
         {
-            document = saxReader.read( linkReport );
+            return LinkReport.read( linkReport );
         }
-        catch ( DocumentException e )
+        catch ( IOException e )
         {
             throw new IllegalStateException( "Error removing unlinked includes using link report '"
                 + linkReport.getAbsolutePath() + "'.", e );
         }
+    }
 
-        List<Attribute> list = document.selectNodes( "//script/@name" );
-        for ( Attribute attribute : list )
-        {
-            linkedFiles.add( attribute.getValue() );
-        }
-
+    protected void removeUnlinkedIncludedFiles( List<String> found, File basedir, LinkReport linkReport )
+    {
         String baseDir = basedir.getAbsolutePath().concat( File.separator );
         for ( Iterator<String> iterator = found.iterator(); iterator.hasNext(); )
         {
             String includedFile = iterator.next();
-            if ( !linkedFiles.contains( baseDir.concat( includedFile ) ) )
+            if ( !linkReport.containsScript( baseDir.concat( includedFile ) ) )
             {
                 iterator.remove();
             }
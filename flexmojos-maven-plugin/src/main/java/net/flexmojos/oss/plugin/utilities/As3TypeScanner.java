@@ -0,0 +1,222 @@
+/**
+ * Flexmojos is a set of maven goals to allow maven users to compile, optimize and test Flex SWF, Flex SWC, Air SWF and Air SWC.
+ * Copyright (C) 2008-2012  Marvin Froeder <marvin@flexmojos.net>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.flexmojos.oss.plugin.utilities;
+
+import java.util.Set;
+
+/**
+ * Single pass scanner over ActionScript sources, telling whether a class or interface is declared outside of comments,
+ * strings and metadata, and which metadata tags show up. Works on the raw bytes: every delimiter is ASCII, so UTF-8 and
+ * single byte encodings are handled without decoding the file, and non ASCII bytes are taken as identifier characters.
+ */
+public class As3TypeScanner
+{
+
+    private static final byte[] CLASS = { 'c', 'l', 'a', 's', 's' };
+
+    private static final byte[] INTERFACE = { 'i', 'n', 't', 'e', 'r', 'f', 'a', 'c', 'e' };
+
+    private As3TypeScanner()
+    {
+    }
+
+    /**
+     * @param name the type name, encoded like the content
+     * @return true when <code>class name</code> or <code>interface name</code> shows up as code
+     */
+    public static boolean declaresType( byte[] content, int length, byte[] name )
+    {
+        return scan( content, length, name, null );
+    }
+
+    /**
+     * Same as {@link #declaresType(byte[], int, byte[])}, also collecting the metadata tags like <code>Test</code> or
+     * <code>Bindable</code>
+     *
+     * @param metadata receives the tag names, may be null
+     */
+    public static boolean scan( byte[] content, int length, byte[] name, Set<String> metadata )
+    {
+        boolean declared = false;
+        boolean typeKeyword = false;
+        int brackets = 0;
+        boolean tagName = false;
+        // last byte of code seen, 0 at the beginning of the file
+        byte last = 0;
+
+        int i = 0;
+        while ( i < length )
+        {
+            byte c = content[i];
+            if ( c == '/' && i + 1 < length && content[i + 1] == '/' )
+            {
+                i = skipLine( content, length, i + 2 );
+                continue;
+            }
+            if ( c == '/' && i + 1 < length && content[i + 1] == '*' )
+            {
+                i = skipBlockComment( content, length, i + 2 );
+                continue;
+            }
+            if ( isWhitespace( c ) )
+            {
+                i++;
+                continue;
+            }
+
+            if ( c == '"' || c == '\'' )
+            {
+                i = skipString( content, length, i + 1, c );
+            }
+            else if ( c == '[' )
+            {
+                // metadata starts a statement, anything else is an array literal or an index
+                tagName = brackets == 0 && ( last == 0 || last == ';' || last == '{' || last == '}' || last == ']' );
+                brackets++;
+                typeKeyword = false;
+                last = c;
+                i++;
+                continue;
+            }
+            else if ( c == ']' )
+            {
+                if ( brackets > 0 )
+                {
+                    brackets--;
+                }
+                i++;
+            }
+            else if ( isIdentifierPart( c ) )
+            {
+                int start = i;
+                while ( i < length && isIdentifierPart( content[i] ) )
+                {
+                    i++;
+                }
+
+                if ( brackets > 0 )
+                {
+                    if ( tagName && metadata != null )
+                    {
+                        metadata.add( ascii( content, start, i ) );
+                    }
+                    tagName = false;
+                    last = 'a';
+                    continue;
+                }
+                if ( typeKeyword && equals( content, start, i, name ) )
+                {
+                    declared = true;
+                    if ( metadata == null )
+                    {
+                        return true;
+                    }
+                }
+                typeKeyword = equals( content, start, i, CLASS ) || equals( content, start, i, INTERFACE );
+                last = 'a';
+                continue;
+            }
+            else
+            {
+                i++;
+            }
+
+            tagName = false;
+            typeKeyword = false;
+            last = c;
+        }
+        return declared;
+    }
+
+    private static String ascii( byte[] content, int start, int end )
+    {
+        char[] chars = new char[end - start];
+        for ( int i = start; i < end; i++ )
+        {
+            chars[i - start] = (char) ( content[i] & 0xFF );
+        }
+        return new String( chars );
+    }
+
+    private static int skipLine( byte[] content, int length, int i )
+    {
+        while ( i < length && content[i] != '\n' && content[i] != '\r' )
+        {
+            i++;
+        }
+        return i;
+    }
+
+    private static int skipBlockComment( byte[] content, int length, int i )
+    {
+        while ( i + 1 < length && !( content[i] == '*' && content[i + 1] == '/' ) )
+        {
+            i++;
+        }
+        return i + 2;
+    }
+
+    private static int skipString( byte[] content, int length, int i, byte quote )
+    {
+        while ( i < length )
+        {
+            byte c = content[i];
+            if ( c == '\\' )
+            {
+                i += 2;
+            }
+            else if ( c == quote || c == '\n' )
+            {
+                return i + 1;
+            }
+            else
+            {
+                i++;
+            }
+        }
+        return i;
+    }
+
+    private static boolean isIdentifierPart( byte c )
+    {
+        return ( c >= 'a' && c <= 'z' ) || ( c >= 'A' && c <= 'Z' ) || ( c >= '0' && c <= '9' ) || c == '_'
+            || c == '$' || c < 0;
+    }
+
+    private static boolean isWhitespace( byte c )
+    {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f';
+    }
+
+    private static boolean equals( byte[] content, int start, int end, byte[] word )
+    {
+        if ( end - start != word.length )
+        {
+            return false;
+        }
+        for ( int i = 0; i < word.length; i++ )
+        {
+            if ( content[start + i] != word[i] )
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
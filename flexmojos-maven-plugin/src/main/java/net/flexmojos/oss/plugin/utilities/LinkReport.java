@@ -0,0 +1,201 @@
+/**
+ * Flexmojos is a set of maven goals to allow maven users to compile, optimize and test Flex SWF, Flex SWC, Air SWF and Air SWC.
+ * Copyright (C) 2008-2012  Marvin Froeder <marvin@flexmojos.net>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.flexmojos.oss.plugin.utilities;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.codehaus.plexus.util.IOUtil;
+
+/**
+ * Index of a compiler link report, read in a single streaming pass. Scripts are source files or library entries like
+ * <code>lib.swc(mx.core:UIComponent)</code>, definitions are classes like <code>mx.core:UIComponent</code>.
+ */
+public class LinkReport
+{
+
+    private static final XMLInputFactory XML_INPUT_FACTORY = XMLInputFactory.newInstance();
+
+    private static final String[] NO_DEPENDENCIES = new String[0];
+
+    private static class Script
+    {
+
+        private final int size;
+
+        private String[] dependencies = NO_DEPENDENCIES;
+
+        Script( int size )
+        {
+            this.size = size;
+        }
+
+    }
+
+    private final Map<String, Script> scripts = new HashMap<String, Script>();
+
+    private final Map<String, String> scriptByDefinition = new HashMap<String, String>();
+
+    private LinkReport()
+    {
+    }
+
+    public static LinkReport read( File linkReport )
+        throws IOException
+    {
+        LinkReport report = new LinkReport();
+
+        // dependency ids repeat a lot, share a single instance of each
+        Map<String, String> ids = new HashMap<String, String>();
+
+        InputStream in = new BufferedInputStream( new FileInputStream( linkReport ) );
+        try
+        {
+            XMLStreamReader reader = XML_INPUT_FACTORY.createXMLStreamReader( in );
+
+            String name = null;
+            Script script = null;
+            List<String> dependencies = new ArrayList<String>();
+            while ( reader.hasNext() )
+            {
+                int event = reader.next();
+                if ( event == XMLStreamConstants.END_ELEMENT && script != null
+                    && "script".equals( reader.getLocalName() ) )
+                {
+                    script.dependencies = dependencies.toArray( new String[dependencies.size()] );
+                    script = null;
+                    continue;
+                }
+                if ( event != XMLStreamConstants.START_ELEMENT )
+                {
+                    continue;
+                }
+
+                String element = reader.getLocalName();
+                if ( "script".equals( element ) )
+                {
+                    name = reader.getAttributeValue( null, "name" );
+                    script = new Script( toInt( reader.getAttributeValue( null, "size" ) ) );
+                    report.scripts.put( name, script );
+                    dependencies.clear();
+                }
+                else if ( script == null )
+                {
+                    continue;
+                }
+                else if ( "def".equals( element ) )
+                {
+                    report.scriptByDefinition.put( intern( ids, reader.getAttributeValue( null, "id" ) ), name );
+                }
+                else if ( "pre".equals( element ) || "dep".equals( element ) )
+                {
+                    dependencies.add( intern( ids, reader.getAttributeValue( null, "id" ) ) );
+                }
+            }
+            reader.close();
+        }
+        catch ( XMLStreamException e )
+        {
+            throw new IOException( "Unable to read link report " + linkReport + ": " + e.getMessage() );
+        }
+        finally
+        {
+            IOUtil.close( in );
+        }
+        return report;
+    }
+
+    private static String intern( Map<String, String> ids, String id )
+    {
+        String shared = ids.get( id );
+        if ( shared == null )
+        {
+            ids.put( id, id );
+            return id;
+        }
+        return shared;
+    }
+
+    private static int toInt( String value )
+    {
+        if ( value == null )
+        {
+            return 0;
+        }
+        try
+        {
+            return Integer.parseInt( value );
+        }
+        catch ( NumberFormatException e )
+        {
+            return 0;
+        }
+    }
+
+    public boolean containsScript( String script )
+    {
+        return scripts.containsKey( script );
+    }
+
+    public Set<String> getScripts()
+    {
+        return Collections.unmodifiableSet( scripts.keySet() );
+    }
+
+    /**
+     * @return the script defining the class, null when it isn't linked
+     */
+    public String getScript( String definition )
+    {
+        return scriptByDefinition.get( definition );
+    }
+
+    /**
+     * @return the definitions the script depends on, empty for unknown scripts
+     */
+    public List<String> getDependencies( String script )
+    {
+        Script s = scripts.get( script );
+        return Collections.unmodifiableList( Arrays.asList( s == null ? NO_DEPENDENCIES : s.dependencies ) );
+    }
+
+    /**
+     * @return the script size in bytes as reported by the compiler, 0 when unknown
+     */
+    public int getSize( String script )
+    {
+        Script s = scripts.get( script );
+        return s == null ? 0 : s.size;
+    }
+
+}
@@ -19,6 +19,7 @@ package net.flexmojos.oss.plugin.utilities;
 
 import java.io.File;
 import java.io.FileFilter;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -43,6 +44,30 @@ public class SourceFileResolver
         return resolveSourceFile( sourceFileName, PathUtil.filesList( sourcePaths ), groupId, artifactId );
     }
 
+    /**
+     * Same as {@link #resolveSourceFile(List, String, String, String)}, looking up MXML root tags on the source index
+     * instead of parsing the files again
+     */
+    public static File resolveSourceFile( List<String> sourcePaths, String sourceFileName, String groupId,
+                                          String artifactId, SourceIndex index )
+    {
+        try
+        {
+            return resolveSourceFile( sourceFileName, PathUtil.filesList( sourcePaths ), groupId, artifactId, index );
+        }
+        finally
+        {
+            try
+            {
+                index.save();
+            }
+            catch ( IOException e )
+            {
+                // only a cache, the files will be parsed again on the next build
+            }
+        }
+    }
+
     public static File resolveSourceFile( List<String> sourcePaths, String sourceFile )
     {
         return resolveSourceFile( sourceFile, PathUtil.filesList( sourcePaths ) );
@@ -80,6 +105,12 @@ public class SourceFileResolver
     public static File resolveSourceFile( String sourceFileName, List<File> sourceRoots, String groupId,
                                           String artifactId )
     {
+        return resolveSourceFile( sourceFileName, sourceRoots, groupId, artifactId, null );
+    }
+
+    private static File resolveSourceFile( String sourceFileName, List<File> sourceRoots, String groupId,
+                                           String artifactId, SourceIndex index )
+    {
 
         if ( sourceFileName != null )
         {
@@ -90,10 +121,10 @@ public class SourceFileResolver
 
         for ( File sourceDirectory : sourceRoots )
         {
-            File sourceFile = resolveFile( sourceDirectory, artifactId );
+            File sourceFile = resolveFile( sourceDirectory, artifactId, index );
             if ( sourceFile == null )
             {
-                sourceFile = resolveSourceFileByGroupIdAndArtifactId( sourceDirectory, groupId, artifactId );
+                sourceFile = resolveSourceFileByGroupIdAndArtifactId( sourceDirectory, groupId, artifactId, index );
             }
 
             if ( sourceFile != null )
@@ -108,7 +139,7 @@ public class SourceFileResolver
                                                 + "/compile-swf-mojo.html#sourceFile" );
     }
 
-    private static File resolveFile( File sourceDirectory, String artifactId )
+    private static File resolveFile( File sourceDirectory, String artifactId, SourceIndex index )
     {
         if ( !sourceDirectory.isDirectory() )
         {
@@ -161,7 +192,7 @@ public class SourceFileResolver
             List<File> appFiles = new ArrayList<File>();
             for ( File file : files )
             {
-                if ( file.getName().endsWith( ".mxml" ) && isApplicationFile( file ) )
+                if ( file.getName().endsWith( ".mxml" ) && isApplicationFile( file, index ) )
                 {
                     appFiles.add( file );
                 }
@@ -178,7 +209,8 @@ public class SourceFileResolver
         return null;
     }
 
-    private static File resolveSourceFileByGroupIdAndArtifactId( File sourceDirectory, String groupId, String artifactId )
+    private static File resolveSourceFileByGroupIdAndArtifactId( File sourceDirectory, String groupId,
+                                                                 String artifactId, SourceIndex index )
     {
         if ( groupId == null )
         {
@@ -195,7 +227,7 @@ public class SourceFileResolver
         }
 
         // let's try just groupId
-        File sourceFile = resolveFile( packageDirectory, artifactId );
+        File sourceFile = resolveFile( packageDirectory, artifactId, index );
         if ( sourceFile != null )
         {
             return sourceFile;
@@ -208,7 +240,7 @@ public class SourceFileResolver
 
         packageDirectory = new File( packageDirectory, artifactId );
 
-        sourceFile = resolveFile( packageDirectory, artifactId );
+        sourceFile = resolveFile( packageDirectory, artifactId, index );
 
         return sourceFile;
     }
@@ -217,10 +249,16 @@ public class SourceFileResolver
      * Parse an MXML file and returns true if the file is an application one
      * 
      * @param file the file to be parsed
+     * @param index where the root tag of the file is looked up, may be null
      * @return true if the file is an application one
      */
-    private static boolean isApplicationFile( File file )
+    private static boolean isApplicationFile( File file, SourceIndex index )
     {
+        if ( index != null )
+        {
+            return index.get( file ).isApplication();
+        }
+
         try
         {
             SAXParser parser = SAXParserFactory.newInstance().newSAXParser();
@@ -0,0 +1,495 @@
+/**
+ * Flexmojos is a set of maven goals to allow maven users to compile, optimize and test Flex SWF, Flex SWC, Air SWF and Air SWC.
+ * Copyright (C) 2008-2012  Marvin Froeder <marvin@flexmojos.net>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.flexmojos.oss.plugin.utilities;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.codehaus.plexus.util.IOUtil;
+import org.codehaus.plexus.util.StringUtils;
+
+/**
+ * What flexmojos needs to know about each ActionScript and MXML source of a module, kept under the target directory
+ * so sources are only read again once their size or last modified date change. Instances are shared by all mojos of
+ * the build working on the same target directory.
+ */
+public class SourceIndex
+{
+
+    /**
+     * Location of the index, relative to the target directory
+     */
+    public static final String PATH = "flexmojos/source-index.idx";
+
+    private static final String HEADER =
+        "# flexmojos source index 1: path, length, last modified, flags, class, root tag, metadata";
+
+    private static final String MXML_NAMESPACE = "http://www.adobe.com/2006/mxml";
+
+    private static final int DECLARES_TYPE = 1;
+
+    private static final int APPLICATION = 2;
+
+    private static final int TEST = 4;
+
+    private static final XMLInputFactory XML_INPUT_FACTORY = XMLInputFactory.newInstance();
+
+    private static final Map<File, SourceIndex> INSTANCES = new HashMap<File, SourceIndex>();
+
+    public static class Entry
+    {
+
+        private final String path;
+
+        private final long length;
+
+        private final long lastModified;
+
+        private final int flags;
+
+        private final String className;
+
+        private final String rootTag;
+
+        private final Set<String> metadata;
+
+        Entry( String path, long length, long lastModified, int flags, String className, String rootTag,
+               Set<String> metadata )
+        {
+            this.path = path;
+            this.length = length;
+            this.lastModified = lastModified;
+            this.flags = flags;
+            this.className = className;
+            this.rootTag = rootTag;
+            this.metadata = metadata;
+        }
+
+        public File getFile()
+        {
+            return new File( path );
+        }
+
+        /**
+         * @return the qualified class name, like <code>com.acme.Main</code>
+         */
+        public String getClassName()
+        {
+            return className;
+        }
+
+        /**
+         * @return the root element of MXML files, like <code>{http://www.adobe.com/2006/mxml}Application</code>, null
+         *         for other files
+         */
+        public String getRootTag()
+        {
+            return rootTag;
+        }
+
+        /**
+         * @return true for MXML files and for ActionScript files declaring the class or interface they are named
+         *         after, false for include snippets
+         */
+        public boolean isClass()
+        {
+            return ( flags & DECLARES_TYPE ) != 0;
+        }
+
+        /**
+         * @return true for MXML files rooted on a Flex 3 <code>Application</code>
+         */
+        public boolean isApplication()
+        {
+            return ( flags & APPLICATION ) != 0;
+        }
+
+        /**
+         * @return true when named like a test, Test*.as or *Test.as, or declaring test metadata
+         */
+        public boolean isTest()
+        {
+            return ( flags & TEST ) != 0;
+        }
+
+        /**
+         * @return the metadata tags found on ActionScript files, like <code>Bindable</code>
+         */
+        public Set<String> getMetadata()
+        {
+            return metadata;
+        }
+
+        boolean isUpToDate( File file )
+        {
+            return file.length() == length && file.lastModified() == lastModified;
+        }
+
+    }
+
+    private final File file;
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+
+    private volatile boolean dirty;
+
+    /**
+     * @param file where the index is saved, null to keep it in memory only
+     */
+    public SourceIndex( File file )
+    {
+        this.file = file;
+    }
+
+    /**
+     * @return the index of the module building on the target directory
+     */
+    public static SourceIndex getInstance( File targetDirectory )
+    {
+        File file = new File( targetDirectory, PATH ).getAbsoluteFile();
+        synchronized ( INSTANCES )
+        {
+            SourceIndex index = INSTANCES.get( file );
+            if ( index == null )
+            {
+                try
+                {
+                    index = load( file );
+                }
+                catch ( IOException e )
+                {
+                    // only a cache, the sources will be read again
+                    index = new SourceIndex( file );
+                }
+                INSTANCES.put( file, index );
+            }
+            return index;
+        }
+    }
+
+    public File getFile()
+    {
+        return file;
+    }
+
+    /**
+     * @param root the source root the file belongs to, the class name is relative to it
+     * @param relativePath the file path relative to the root
+     */
+    public Entry get( File root, String relativePath )
+    {
+        return lookup( new File( root, relativePath ), root );
+    }
+
+    /**
+     * Same as {@link #get(File, String)} for files whose source root isn't known, the class name is left without a
+     * package
+     */
+    public Entry get( File source )
+    {
+        return lookup( source, null );
+    }
+
+    private Entry lookup( File source, File root )
+    {
+        String path = source.getAbsolutePath();
+        String className = className( source, root );
+
+        Entry entry = entries.get( path );
+        if ( entry != null && entry.isUpToDate( source ) )
+        {
+            if ( root == null || entry.className.equals( className ) )
+            {
+                return entry;
+            }
+            entry =
+                new Entry( path, entry.length, entry.lastModified, entry.flags, className, entry.rootTag,
+                           entry.metadata );
+        }
+        else
+        {
+            entry = read( source, className );
+        }
+
+        entries.put( path, entry );
+        dirty = true;
+        return entry;
+    }
+
+    private static String className( File source, File root )
+    {
+        String name = source.getName();
+        int dot = name.lastIndexOf( '.' );
+        if ( dot != -1 )
+        {
+            name = name.substring( 0, dot );
+        }
+        if ( root == null )
+        {
+            return name;
+        }
+
+        String parent = source.getParentFile().getAbsolutePath();
+        String rootPath = root.getAbsolutePath();
+        if ( !parent.startsWith( rootPath ) || parent.length() == rootPath.length() )
+        {
+            return name;
+        }
+        String pkg = parent.substring( rootPath.length() + 1 ).replace( File.separatorChar, '.' );
+        return pkg + "." + name;
+    }
+
+    private static Entry read( File source, String className )
+    {
+        long length = source.length();
+        long lastModified = source.lastModified();
+        String name = source.getName();
+
+        int flags = 0;
+        String rootTag = null;
+        Set<String> metadata = Collections.emptySet();
+        if ( name.endsWith( ".as" ) )
+        {
+            Set<String> found = new TreeSet<String>();
+            try
+            {
+                byte[] content = readFully( source, length );
+                String simpleName = name.substring( 0, name.length() - 3 );
+                if ( As3TypeScanner.scan( content, content.length, simpleName.getBytes( "UTF-8" ), found ) )
+                {
+                    flags |= DECLARES_TYPE;
+                }
+            }
+            catch ( IOException e )
+            {
+                // an unreadable file is no class
+            }
+            metadata = Collections.unmodifiableSet( found );
+            if ( found.contains( "Test" ) || found.contains( "Suite" ) )
+            {
+                flags |= TEST;
+            }
+        }
+        else if ( name.endsWith( ".mxml" ) )
+        {
+            flags |= DECLARES_TYPE;
+            rootTag = readRootTag( source );
+            if ( ( "{" + MXML_NAMESPACE + "}Application" ).equals( rootTag ) )
+            {
+                flags |= APPLICATION;
+            }
+        }
+
+        String simpleName = className.substring( className.lastIndexOf( '.' ) + 1 );
+        if ( simpleName.startsWith( "Test" ) || simpleName.endsWith( "Test" ) )
+        {
+            flags |= TEST;
+        }
+
+        return new Entry( source.getAbsolutePath(), length, lastModified, flags, className, rootTag, metadata );
+    }
+
+    private static byte[] readFully( File source, long length )
+        throws IOException
+    {
+        byte[] content = new byte[(int) length];
+        InputStream in = new FileInputStream( source );
+        try
+        {
+            int read = 0;
+            int n;
+            while ( read < content.length && ( n = in.read( content, read, content.length - read ) ) != -1 )
+            {
+                read += n;
+            }
+            return read == content.length ? content : Arrays.copyOf( content, read );
+        }
+        finally
+        {
+            IOUtil.close( in );
+        }
+    }
+
+    /**
+     * @return the root element as {namespace}name, null when the file isn't valid XML
+     */
+    private static String readRootTag( File source )
+    {
+        InputStream in = null;
+        try
+        {
+            in = new BufferedInputStream( new FileInputStream( source ) );
+            XMLStreamReader reader = XML_INPUT_FACTORY.createXMLStreamReader( in );
+            try
+            {
+                while ( reader.hasNext() )
+                {
+                    if ( reader.next() == XMLStreamConstants.START_ELEMENT )
+                    {
+                        String namespace = reader.getNamespaceURI();
+                        return "{" + ( namespace == null ? "" : namespace ) + "}" + reader.getLocalName();
+                    }
+                }
+                return null;
+            }
+            finally
+            {
+                reader.close();
+            }
+        }
+        catch ( IOException e )
+        {
+            return null;
+        }
+        catch ( XMLStreamException e )
+        {
+            return null;
+        }
+        finally
+        {
+            IOUtil.close( in );
+        }
+    }
+
+    static SourceIndex load( File file )
+        throws IOException
+    {
+        SourceIndex index = new SourceIndex( file );
+        if ( file.isFile() )
+        {
+            index.readEntries();
+        }
+        return index;
+    }
+
+    private void readEntries()
+        throws IOException
+    {
+
+        BufferedReader reader = new BufferedReader( new InputStreamReader( new FileInputStream( file ), "UTF-8" ) );
+        try
+        {
+            String line = reader.readLine();
+            if ( !HEADER.equals( line ) )
+            {
+                // older layout, start over
+                return;
+            }
+
+            while ( ( line = reader.readLine() ) != null )
+            {
+                String[] fields = line.split( "\t", -1 );
+                if ( fields.length != 7 )
+                {
+                    throw new IOException( "Invalid source index " + file + ": " + line );
+                }
+
+                Set<String> metadata = Collections.emptySet();
+                if ( fields[6].length() != 0 )
+                {
+                    metadata = new TreeSet<String>( Arrays.asList( fields[6].split( "," ) ) );
+                    metadata = Collections.unmodifiableSet( metadata );
+                }
+                try
+                {
+                    entries.put( fields[0],
+                                 new Entry( fields[0], Long.parseLong( fields[1] ), Long.parseLong( fields[2] ),
+                                            Integer.parseInt( fields[3] ), fields[4],
+                                            fields[5].length() == 0 ? null : fields[5], metadata ) );
+                }
+                catch ( NumberFormatException e )
+                {
+                    throw new IOException( "Invalid source index " + file + ": " + line );
+                }
+            }
+        }
+        finally
+        {
+            IOUtil.close( reader );
+        }
+    }
+
+    /**
+     * Write the index when something changed since it was loaded, files that no longer exist are dropped
+     */
+    public synchronized void save()
+        throws IOException
+    {
+        if ( file == null || !dirty )
+        {
+            return;
+        }
+        dirty = false;
+
+        file.getParentFile().mkdirs();
+        File tmp = new File( file.getPath() + ".tmp" );
+        BufferedWriter writer = new BufferedWriter( new OutputStreamWriter( new FileOutputStream( tmp ), "UTF-8" ) );
+        try
+        {
+            writer.write( HEADER );
+            writer.newLine();
+            for ( Entry entry : new TreeMap<String, Entry>( entries ).values() )
+            {
+                if ( !new File( entry.path ).exists() )
+                {
+                    entries.remove( entry.path );
+                    continue;
+                }
+                writer.write( entry.path + "\t" + entry.length + "\t" + entry.lastModified + "\t" + entry.flags + "\t"
+                    + entry.className + "\t" + ( entry.rootTag == null ? "" : entry.rootTag ) + "\t"
+                    + StringUtils.join( entry.metadata.iterator(), "," ) );
+                writer.newLine();
+            }
+        }
+        finally
+        {
+            IOUtil.close( writer );
+        }
+
+        if ( !tmp.renameTo( file ) )
+        {
+            file.delete();
+            if ( !tmp.renameTo( file ) )
+            {
+                throw new IOException( "Unable to write source index " + file );
+            }
+        }
+    }
+
+}
@@ -0,0 +1,630 @@
+/**
+ * Flexmojos is a set of maven goals to allow maven users to compile, optimize and test Flex SWF, Flex SWC, Air SWF and Air SWC.
+ * Copyright (C) 2008-2012  Marvin Froeder <marvin@flexmojos.net>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.flexmojos.oss.plugin.utilities;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CodingErrorAction;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import org.codehaus.plexus.util.IOUtil;
+
+/**
+ * Reads single entries out of SWC (zip) files without extracting the whole archive. The central directory of the most
+ * recently used SWCs is kept for the whole build, entries are then streamed straight from their offset in the file.
+ * No file handle is kept open between reads, so the SWCs can still be rewritten, like the digest does. Entries are
+ * checked against their CRC once read to the end, a mismatch drops the cached directory so the SWC is read again.
+ */
+public class SwcArchive
+{
+
+    private static final int MAX_CACHED_ARCHIVES = 64;
+
+    private static final int END_OF_CENTRAL_DIRECTORY = 0x06054b50;
+
+    private static final int CENTRAL_DIRECTORY_HEADER = 0x02014b50;
+
+    private static final int LOCAL_FILE_HEADER = 0x04034b50;
+
+    private static final int STORED = 0;
+
+    private static final int DEFLATED = 8;
+
+    /**
+     * General purpose flag telling the entry name is UTF-8
+     */
+    private static final int UTF8_FLAG = 1 << 11;
+
+    private static final Charset UTF8 = Charset.forName( "UTF-8" );
+
+    /**
+     * Zip default for names without the UTF-8 flag
+     */
+    private static final Charset CP437 =
+        Charset.isSupported( "IBM437" ) ? Charset.forName( "IBM437" ) : Charset.forName( "ISO-8859-1" );
+
+    private static final Map<File, SwcArchive> ARCHIVES =
+        Collections.synchronizedMap( new LinkedHashMap<File, SwcArchive>( 16, 0.75f, true )
+        {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry( Map.Entry<File, SwcArchive> eldest )
+            {
+                return size() > MAX_CACHED_ARCHIVES;
+            }
+        } );
+
+    public static class Entry
+    {
+
+        private final String name;
+
+        private final int method;
+
+        private final long dosTime;
+
+        private final long crc;
+
+        private final long compressedSize;
+
+        private final long size;
+
+        private final long offset;
+
+        Entry( String name, int method, long dosTime, long crc, long compressedSize, long size, long offset )
+        {
+            this.name = name;
+            this.method = method;
+            this.dosTime = dosTime;
+            this.crc = crc;
+            this.compressedSize = compressedSize;
+            this.size = size;
+            this.offset = offset;
+        }
+
+        public String getName()
+        {
+            return name;
+        }
+
+        /**
+         * @return the uncompressed size
+         */
+        public long getSize()
+        {
+            return size;
+        }
+
+        public boolean isDirectory()
+        {
+            return name.endsWith( "/" );
+        }
+
+        /**
+         * @return the modification time, in milliseconds
+         */
+        public long getTime()
+        {
+            Calendar calendar = Calendar.getInstance();
+            calendar.clear();
+            calendar.set( (int) ( ( dosTime >> 25 ) & 0x7f ) + 1980, (int) ( ( dosTime >> 21 ) & 0x0f ) - 1,
+                          (int) ( ( dosTime >> 16 ) & 0x1f ), (int) ( ( dosTime >> 11 ) & 0x1f ),
+                          (int) ( ( dosTime >> 5 ) & 0x3f ), (int) ( ( dosTime << 1 ) & 0x3e ) );
+            return calendar.getTimeInMillis();
+        }
+
+        @Override
+        public String toString()
+        {
+            return name;
+        }
+
+    }
+
+    private final File file;
+
+    private final long length;
+
+    private final long lastModified;
+
+    private final Map<String, Entry> entries = new LinkedHashMap<String, Entry>();
+
+    private SwcArchive( File file )
+    {
+        this.file = file;
+        this.length = file.length();
+        this.lastModified = file.lastModified();
+    }
+
+    /**
+     * @return the archive, reading its central directory only when it is not cached yet or the file changed since
+     */
+    public static SwcArchive open( File file )
+        throws IOException
+    {
+        File key = file.getAbsoluteFile();
+        SwcArchive archive = ARCHIVES.get( key );
+        if ( archive == null || archive.length != key.length() || archive.lastModified != key.lastModified() )
+        {
+            archive = new SwcArchive( key );
+            archive.readCentralDirectory();
+            ARCHIVES.put( key, archive );
+        }
+        return archive;
+    }
+
+    public File getFile()
+    {
+        return file;
+    }
+
+    /**
+     * The cached directory doesn't match the file anymore, it is read again on the next open
+     */
+    private void forget()
+    {
+        synchronized ( ARCHIVES )
+        {
+            if ( ARCHIVES.get( file ) == this )
+            {
+                ARCHIVES.remove( file );
+            }
+        }
+    }
+
+    public boolean contains( String name )
+    {
+        return entries.containsKey( name );
+    }
+
+    /**
+     * @return null when there is no such entry
+     */
+    public Entry getEntry( String name )
+    {
+        return entries.get( name );
+    }
+
+    /**
+     * @return the entries in archive order
+     */
+    public Collection<Entry> getEntries()
+    {
+        return Collections.unmodifiableCollection( entries.values() );
+    }
+
+    /**
+     * @return the uncompressed content of the entry, or null when there is no such entry. Must be closed by the caller.
+     */
+    public InputStream getInputStream( String name )
+        throws IOException
+    {
+        Entry entry = entries.get( name );
+        if ( entry == null )
+        {
+            return null;
+        }
+
+        RandomAccessFile raf = new RandomAccessFile( file, "r" );
+        try
+        {
+            raf.seek( entry.offset );
+            byte[] header = new byte[30];
+            raf.readFully( header );
+            ByteBuffer buffer = ByteBuffer.wrap( header ).order( ByteOrder.LITTLE_ENDIAN );
+            if ( buffer.getInt( 0 ) != LOCAL_FILE_HEADER )
+            {
+                forget();
+                throw new IOException( "Invalid entry " + name + ", " + file + " changed while being read" );
+            }
+            raf.seek( entry.offset + 30 + ( buffer.getShort( 26 ) & 0xffff ) + ( buffer.getShort( 28 ) & 0xffff ) );
+
+            if ( entry.method == STORED )
+            {
+                return new CheckedEntryInputStream( new EntryInputStream( raf, entry.compressedSize, false ), entry );
+            }
+            else if ( entry.method == DEFLATED )
+            {
+                final Inflater inflater = new Inflater( true );
+                int bufferSize = (int) Math.max( 512, Math.min( 65536, entry.compressedSize ) );
+                InputStream data = new EntryInputStream( raf, entry.compressedSize, true );
+                InputStream inflated = new InflaterInputStream( data, inflater, bufferSize )
+                {
+                    private boolean closed;
+
+                    @Override
+                    public void close()
+                        throws IOException
+                    {
+                        if ( !closed )
+                        {
+                            closed = true;
+                            inflater.end();
+                            super.close();
+                        }
+                    }
+                };
+                return new CheckedEntryInputStream( inflated, entry );
+            }
+            else
+            {
+                throw new IOException( "Unsupported compression method " + entry.method + " for " + name + " on "
+                    + file );
+            }
+        }
+        catch ( IOException e )
+        {
+            raf.close();
+            throw e;
+        }
+        catch ( RuntimeException e )
+        {
+            raf.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return the uncompressed content of the entry, or null when there is no such entry
+     */
+    public byte[] read( String name )
+        throws IOException
+    {
+        Entry entry = entries.get( name );
+        if ( entry == null )
+        {
+            return null;
+        }
+
+        InputStream in = getInputStream( name );
+        try
+        {
+            byte[] content = new byte[(int) entry.size];
+            int read = 0;
+            while ( read < content.length )
+            {
+                int count = in.read( content, read, content.length - read );
+                if ( count == -1 )
+                {
+                    throw new IOException( "Truncated entry " + name + " on " + file );
+                }
+                read += count;
+            }
+            // reaching the end verifies the content
+            if ( in.read() != -1 )
+            {
+                throw new IOException( "Entry " + name + " is longer than expected on " + file );
+            }
+            return content;
+        }
+        finally
+        {
+            IOUtil.close( in );
+        }
+    }
+
+    /**
+     * Stream the entry into the target file
+     *
+     * @return false when there is no such entry
+     */
+    public boolean copy( String name, File target )
+        throws IOException
+    {
+        InputStream in = getInputStream( name );
+        if ( in == null )
+        {
+            return false;
+        }
+
+        try
+        {
+            target.getAbsoluteFile().getParentFile().mkdirs();
+            OutputStream out = new FileOutputStream( target );
+            try
+            {
+                IOUtil.copy( in, out, 65536 );
+            }
+            finally
+            {
+                IOUtil.close( out );
+            }
+        }
+        finally
+        {
+            IOUtil.close( in );
+        }
+        return true;
+    }
+
+    /**
+     * Extract the entries starting with the prefix, keeping their path relative to the archive root
+     *
+     * @return the extracted files
+     */
+    public List<File> extract( String prefix, File destination )
+        throws IOException
+    {
+        String root = destination.getCanonicalPath() + File.separator;
+
+        List<File> files = new ArrayList<File>();
+        for ( Entry entry : entries.values() )
+        {
+            if ( entry.isDirectory() || !entry.name.startsWith( prefix ) )
+            {
+                continue;
+            }
+
+            File target = new File( destination, entry.name );
+            if ( !target.getCanonicalPath().startsWith( root ) )
+            {
+                throw new IOException( "Entry " + entry.name + " is outside of the archive on " + file );
+            }
+
+            copy( entry.name, target );
+            files.add( target );
+        }
+        return files;
+    }
+
+    private void readCentralDirectory()
+        throws IOException
+    {
+        RandomAccessFile raf = new RandomAccessFile( file, "r" );
+        try
+        {
+            // the end of central directory record is followed by a comment of up to 64k
+            int tailLength = (int) Math.min( length, 22 + 0xffff );
+            byte[] tail = new byte[tailLength];
+            raf.seek( length - tailLength );
+            raf.readFully( tail );
+            ByteBuffer buffer = ByteBuffer.wrap( tail ).order( ByteOrder.LITTLE_ENDIAN );
+
+            int end = tailLength - 22;
+            while ( end >= 0 && buffer.getInt( end ) != END_OF_CENTRAL_DIRECTORY )
+            {
+                end--;
+            }
+            if ( end < 0 )
+            {
+                throw new IOException( "Invalid SWC, not a zip file: " + file );
+            }
+
+            int count = buffer.getShort( end + 10 ) & 0xffff;
+            long directorySize = buffer.getInt( end + 12 ) & 0xffffffffL;
+            long directoryOffset = buffer.getInt( end + 16 ) & 0xffffffffL;
+            if ( count == 0xffff || directorySize == 0xffffffffL || directoryOffset == 0xffffffffL )
+            {
+                throw new IOException( "Zip64 archives are not supported: " + file );
+            }
+
+            byte[] directory = new byte[(int) directorySize];
+            raf.seek( directoryOffset );
+            raf.readFully( directory );
+            buffer = ByteBuffer.wrap( directory ).order( ByteOrder.LITTLE_ENDIAN );
+
+            int position = 0;
+            for ( int i = 0; i < count; i++ )
+            {
+                if ( buffer.getInt( position ) != CENTRAL_DIRECTORY_HEADER )
+                {
+                    throw new IOException( "Invalid SWC, corrupted zip directory: " + file );
+                }
+
+                int nameLength = buffer.getShort( position + 28 ) & 0xffff;
+                int extraLength = buffer.getShort( position + 30 ) & 0xffff;
+                int commentLength = buffer.getShort( position + 32 ) & 0xffff;
+                int flags = buffer.getShort( position + 8 ) & 0xffff;
+                String name = decodeName( directory, position + 46, nameLength, flags );
+
+                entries.put( name, new Entry( name, buffer.getShort( position + 10 ) & 0xffff,
+                                              buffer.getInt( position + 12 ) & 0xffffffffL,
+                                              buffer.getInt( position + 16 ) & 0xffffffffL,
+                                              buffer.getInt( position + 20 ) & 0xffffffffL,
+                                              buffer.getInt( position + 24 ) & 0xffffffffL,
+                                              buffer.getInt( position + 42 ) & 0xffffffffL ) );
+
+                position += 46 + nameLength + extraLength + commentLength;
+            }
+        }
+        finally
+        {
+            raf.close();
+        }
+    }
+
+    /**
+     * Names flagged as UTF-8 are decoded as such. Others are CP437 by the spec, but many tools write UTF-8 without
+     * setting the flag, so those are only decoded as CP437 when they aren't valid UTF-8, like java.util.zip does.
+     */
+    static String decodeName( byte[] bytes, int offset, int length, int flags )
+        throws IOException
+    {
+        ByteBuffer name = ByteBuffer.wrap( bytes, offset, length );
+        if ( ( flags & UTF8_FLAG ) != 0 )
+        {
+            return UTF8.newDecoder().decode( name ).toString();
+        }
+
+        try
+        {
+            return UTF8.newDecoder().onMalformedInput( CodingErrorAction.REPORT ).decode( name ).toString();
+        }
+        catch ( CharacterCodingException e )
+        {
+            return new String( bytes, offset, length, CP437.name() );
+        }
+    }
+
+    /**
+     * Verifies the size and CRC of the entry when its end is reached
+     */
+    private class CheckedEntryInputStream
+        extends FilterInputStream
+    {
+
+        private final Entry entry;
+
+        private final CRC32 crc = new CRC32();
+
+        private long count;
+
+        CheckedEntryInputStream( InputStream in, Entry entry )
+        {
+            super( in );
+            this.entry = entry;
+        }
+
+        @Override
+        public int read()
+            throws IOException
+        {
+            byte[] b = new byte[1];
+            return read( b, 0, 1 ) == -1 ? -1 : b[0] & 0xff;
+        }
+
+        @Override
+        public int read( byte[] b, int off, int len )
+            throws IOException
+        {
+            int read = in.read( b, off, len );
+            if ( read == -1 )
+            {
+                if ( count != entry.size || crc.getValue() != entry.crc )
+                {
+                    forget();
+                    throw new IOException( "Corrupted entry " + entry.name + " on " + file );
+                }
+                return -1;
+            }
+            crc.update( b, off, read );
+            count += read;
+            return read;
+        }
+
+        @Override
+        public long skip( long n )
+            throws IOException
+        {
+            // skipped bytes still take part on the CRC
+            byte[] buffer = new byte[(int) Math.min( 8192, Math.max( n, 1 ) )];
+            long skipped = 0;
+            while ( skipped < n )
+            {
+                int read = read( buffer, 0, (int) Math.min( buffer.length, n - skipped ) );
+                if ( read == -1 )
+                {
+                    break;
+                }
+                skipped += read;
+            }
+            return skipped;
+        }
+
+        @Override
+        public boolean markSupported()
+        {
+            return false;
+        }
+
+    }
+
+    /**
+     * Bounded view of the entry data, closing the file once done
+     */
+    private static class EntryInputStream
+        extends InputStream
+    {
+
+        private final RandomAccessFile raf;
+
+        private long remaining;
+
+        /**
+         * The inflater may need an extra byte past the deflated data to notice its end
+         */
+        private boolean dummyByte;
+
+        EntryInputStream( RandomAccessFile raf, long length, boolean dummyByte )
+        {
+            this.raf = raf;
+            this.remaining = length;
+            this.dummyByte = dummyByte;
+        }
+
+        @Override
+        public int read()
+            throws IOException
+        {
+            byte[] b = new byte[1];
+            return read( b, 0, 1 ) == -1 ? -1 : b[0] & 0xff;
+        }
+
+        @Override
+        public int read( byte[] b, int off, int len )
+            throws IOException
+        {
+            if ( remaining <= 0 )
+            {
+                if ( dummyByte && len > 0 )
+                {
+                    dummyByte = false;
+                    b[off] = 0;
+                    return 1;
+                }
+                return -1;
+            }
+
+            int count = raf.read( b, off, (int) Math.min( len, remaining ) );
+            if ( count == -1 )
+            {
+                throw new IOException( "Unexpected end of zip entry" );
+            }
+            remaining -= count;
+            return count;
+        }
+
+        @Override
+        public void close()
+            throws IOException
+        {
+            raf.close();
+        }
+
+    }
+
+}
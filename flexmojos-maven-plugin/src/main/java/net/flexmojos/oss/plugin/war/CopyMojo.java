@@ -23,11 +23,15 @@ import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.WeakHashMap;
 
 import org.apache.maven.artifact.Artifact;
+import org.apache.maven.execution.MavenExecutionRequest;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
 import org.apache.maven.project.DefaultProjectBuildingRequest;
@@ -36,7 +40,6 @@ import org.apache.maven.model.Profile;
 import org.apache.maven.project.ProjectBuilder;
 import org.apache.maven.project.ProjectBuildingException;
 import org.apache.maven.project.ProjectBuildingRequest;
-import org.codehaus.plexus.util.FileUtils;
 import org.codehaus.plexus.util.StringUtils;
 import net.flexmojos.oss.plugin.AbstractMavenMojo;
 import net.flexmojos.oss.plugin.common.FlexExtension;
@@ -68,6 +71,21 @@ public class CopyMojo
      */
     private boolean copyRuntimeLocales;
 
+    /**
+     * Write a gzip compressed copy next to each copied SWF and RSL, like <code>main.swf.gz</code>, so static servers
+     * can send them without compressing on the fly. When false, compressed copies left by a previous build are deleted.
+     * 
+     * @parameter default-value="false" expression="${flexmojos.copy.precompress}"
+     */
+    private boolean precompress;
+
+    /**
+     * Extensions of the files precompressed when <code>precompress</code> is true
+     * 
+     * @parameter
+     */
+    private String[] precompressExtensions = { SWF, SWZ };
+
     /**
      * @component
      */
@@ -109,17 +127,41 @@ public class CopyMojo
      */
     private File webappDirectory;
 
-    private void copy( File sourceFile, File destFile )
-        throws MojoExecutionException
+    /**
+     * Project models of the SWF modules by session, shared by the war projects of the build
+     */
+    private static final Map<MavenExecutionRequest, Map<String, SwfModule>> MODULES =
+        new WeakHashMap<MavenExecutionRequest, Map<String, SwfModule>>();
+
+    /**
+     * Project model of a SWF artifact along with the compiler settings needed to place its RSLs and runtime locales
+     */
+    private static class SwfModule
     {
-        try
-        {
-            FileUtils.copyFile( sourceFile, destFile );
-        }
-        catch ( IOException e )
+
+        private final MavenProject project;
+
+        private final String rslUrl;
+
+        private final String runtimeLocaleOutputPath;
+
+        private final String[] runtimeLocales;
+
+        SwfModule( MavenProject project, String rslUrl, String runtimeLocaleOutputPath, String[] runtimeLocales )
         {
-            throw new MojoExecutionException( "Failed to copy " + sourceFile, e );
+            this.project = project;
+            this.rslUrl = rslUrl;
+            this.runtimeLocaleOutputPath = runtimeLocaleOutputPath;
+            this.runtimeLocales = runtimeLocales;
         }
+
+    }
+
+    private FileCopier copier;
+
+    private void copy( File sourceFile, File destFile )
+    {
+        copier.add( sourceFile, destFile );
     }
 
     public void fmExecute()
@@ -140,6 +182,15 @@ public class CopyMojo
 
         webappDirectory.mkdirs();
 
+        copier = new FileCopier();
+        if ( precompress )
+        {
+            for ( String extension : precompressExtensions )
+            {
+                copier.addGzipExtension( extension );
+            }
+        }
+
         List<Artifact> swfDependencies = getSwfArtifacts();
 
         for ( Artifact artifact : swfDependencies )
@@ -164,6 +215,15 @@ public class CopyMojo
             copy( sourceFile, destFile );
         }
 
+        try
+        {
+            copier.execute();
+        }
+        catch ( IOException e )
+        {
+            throw new MojoExecutionException( "Failed to copy flex resources: " + e.getMessage(), e );
+        }
+        getLog().debug( "Copied " + copier.getCopied() + " file(s), " + copier.getSkipped() + " up to date" );
     }
 
     private List<Artifact> getAirArtifacts()
@@ -189,7 +249,7 @@ public class CopyMojo
         throws MojoExecutionException
     {
         boolean isModule = !StringUtils.isEmpty( artifact.getClassifier() );
-        MavenProject pomProject = getProject( artifact );
+        MavenProject pomProject = getModule( artifact ).project;
         String fileName;
         if ( isModule )
         {
@@ -226,8 +286,80 @@ public class CopyMojo
         return destFile;
     }
 
-    private MavenProject getProject( Artifact artifact )
-        throws MojoExecutionException
+    /**
+     * @return the module of the artifact, its project model is only built once per session
+     */
+    private SwfModule getModule( Artifact artifact )
+    {
+        ArrayList<String> ids = new ArrayList<String>();
+        for(Profile profile : project.getActiveProfiles()){
+        	ids.add(profile.getId());
+        }
+
+        Map<String, SwfModule> modules;
+        synchronized ( MODULES )
+        {
+            modules = MODULES.get( session.getRequest() );
+            if ( modules == null )
+            {
+                modules = new HashMap<String, SwfModule>();
+                MODULES.put( session.getRequest(), modules );
+            }
+        }
+
+        String key = artifact.getGroupId() + ":" + artifact.getArtifactId() + ":" + artifact.getBaseVersion() + ids;
+        synchronized ( modules )
+        {
+            SwfModule module = modules.get( key );
+            if ( module == null )
+            {
+                MavenProject artifactProject = getReactorProject( artifact );
+                if ( artifactProject == null )
+                {
+                    artifactProject = getProject( artifact, ids );
+                }
+
+                if ( artifactProject == null )
+                {
+                    module = new SwfModule( null, null, null, null );
+                }
+                else
+                {
+                    module =
+                        new SwfModule( artifactProject, getLastRslUrls( artifactProject ),
+                                       getRuntimeLocaleOutputPath( artifactProject ),
+                                       CompileConfigurationLoader.getCompilerPluginSettings( artifactProject,
+                                                                                             "runtimeLocales" ) );
+                }
+                modules.put( key, module );
+            }
+            return module;
+        }
+    }
+
+    /**
+     * @return the project of the artifact when it is part of the reactor and its dependencies are already resolved
+     */
+    private MavenProject getReactorProject( Artifact artifact )
+    {
+        if ( session.getProjects() == null )
+        {
+            return null;
+        }
+
+        for ( MavenProject reactorProject : session.getProjects() )
+        {
+            if ( reactorProject.getGroupId().equals( artifact.getGroupId() )
+                && reactorProject.getArtifactId().equals( artifact.getArtifactId() )
+                && reactorProject.getVersion().equals( artifact.getBaseVersion() ) )
+            {
+                return reactorProject.getArtifacts().isEmpty() ? null : reactorProject;
+            }
+        }
+        return null;
+    }
+
+    private MavenProject getProject( Artifact artifact, List<String> activeProfileIds )
     {
         try
         {
@@ -235,11 +367,7 @@ public class CopyMojo
             request.setLocalRepository( localRepository );
             request.setRemoteRepositories( remoteRepositories );
             request.setResolveDependencies( true );
-            ArrayList<String> ids = new ArrayList<String>();
-            for(Profile profile : project.getActiveProfiles()){
-            	ids.add(profile.getId());
-            }
-            request.setActiveProfileIds(ids);
+            request.setActiveProfileIds( activeProfileIds );
             request.setRepositorySession( session.getRepositorySession() );
             return projectBuilder.build( artifact, request ).getProject();
         }
@@ -285,10 +413,8 @@ public class CopyMojo
         return runtimeLocaleOutputPath;
     }
 
-    private List<Artifact> getRuntimeLocalesDependencies( MavenProject artifactProject )
+    private List<Artifact> getRuntimeLocalesDependencies( MavenProject artifactProject, String[] runtimeLocales )
     {
-        String[] runtimeLocales =
-            CompileConfigurationLoader.getCompilerPluginSettings( artifactProject, "runtimeLocales" );
         if ( runtimeLocales == null || runtimeLocales.length == 0 )
         {
             return Collections.emptyList();
@@ -309,17 +435,17 @@ public class CopyMojo
         return getArtifacts( SWF, project );
     }
 
-    private void performRslCopy( MavenProject artifactProject )
+    private void performRslCopy( SwfModule module )
         throws MojoExecutionException
     {
-        List<Artifact> rslDeps = getRSLDependencies( artifactProject );
+        List<Artifact> rslDeps = getRSLDependencies( module.project );
 
         if ( rslDeps.isEmpty() )
         {
             return;
         }
 
-        String rslUrls = getLastRslUrls( artifactProject );
+        String rslUrls = module.rslUrl;
 
         for ( Artifact artifact : rslDeps )
         {
@@ -344,17 +470,17 @@ public class CopyMojo
         }
     }
 
-    private void performRuntimeLocalesCopy( MavenProject artifactProject )
+    private void performRuntimeLocalesCopy( SwfModule module )
         throws MojoExecutionException
     {
-        List<Artifact> deps = getRuntimeLocalesDependencies( artifactProject );
+        List<Artifact> deps = getRuntimeLocalesDependencies( module.project, module.runtimeLocales );
 
         if ( deps.isEmpty() )
         {
             return;
         }
 
-        String runtimeLocaleOutputPath = getRuntimeLocaleOutputPath( artifactProject );
+        String runtimeLocaleOutputPath = module.runtimeLocaleOutputPath;
 
         for ( Artifact artifact : deps )
         {
@@ -366,16 +492,16 @@ public class CopyMojo
     private void performSubArtifactsCopy( Artifact artifact )
         throws MojoExecutionException
     {
-        MavenProject artifactProject = getProject( artifact );
-        if ( artifactProject != null )
+        SwfModule module = getModule( artifact );
+        if ( module.project != null )
         {
             if ( copyRSL )
             {
-                performRslCopy( artifactProject );
+                performRslCopy( module );
             }
             if ( copyRuntimeLocales )
             {
-                performRuntimeLocalesCopy( artifactProject );
+                performRuntimeLocalesCopy( module );
             }
         }
     }
@@ -0,0 +1,311 @@
+/**
+ * Flexmojos is a set of maven goals to allow maven users to compile, optimize and test Flex SWF, Flex SWC, Air SWF and Air SWC.
+ * Copyright (C) 2008-2012  Marvin Froeder <marvin@flexmojos.net>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.flexmojos.oss.plugin.war;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+import org.codehaus.plexus.util.IOUtil;
+
+/**
+ * Copies files on a pool of threads, skipping the destinations already holding the same file. Copies keep the source
+ * modification date, a destination with the same length and date as its source is considered identical. Files can
+ * also get a gzip compressed sibling, like <code>main.swf.gz</code>, for static servers to send as is. Siblings left
+ * by a previous run are deleted from the files not compressed anymore, so a server doesn't send an outdated copy.
+ */
+public class FileCopier
+{
+
+    /**
+     * Destination to source, a file shared by several modules is only copied once
+     */
+    private final Map<File, File> files = new LinkedHashMap<File, File>();
+
+    private final Set<String> gzipExtensions = new HashSet<String>();
+
+    private int copied;
+
+    private int skipped;
+
+    public void add( File source, File destination )
+    {
+        files.put( destination.getAbsoluteFile(), source );
+    }
+
+    /**
+     * Write a gzip compressed sibling of the copied files with the extension
+     */
+    public void addGzipExtension( String extension )
+    {
+        gzipExtensions.add( extension.toLowerCase( Locale.ENGLISH ) );
+    }
+
+    /**
+     * @return the number of files copied or compressed by the last run
+     */
+    public int getCopied()
+    {
+        return copied;
+    }
+
+    /**
+     * @return the number of files left untouched by the last run
+     */
+    public int getSkipped()
+    {
+        return skipped;
+    }
+
+    public void execute()
+        throws IOException
+    {
+        copied = 0;
+        skipped = 0;
+        if ( files.isEmpty() )
+        {
+            return;
+        }
+
+        int threads = Math.max( 1, Math.min( files.size(), Runtime.getRuntime().availableProcessors() ) );
+        ExecutorService executor = Executors.newFixedThreadPool( threads );
+        try
+        {
+            List<Future<Boolean>> results = new ArrayList<Future<Boolean>>();
+            for ( final Map.Entry<File, File> file : files.entrySet() )
+            {
+                results.add( executor.submit( new Callable<Boolean>()
+                {
+                    public Boolean call()
+                        throws IOException
+                    {
+                        return copy( file.getValue(), file.getKey() );
+                    }
+                } ) );
+            }
+
+            for ( Future<Boolean> result : results )
+            {
+                if ( get( result ) )
+                {
+                    copied++;
+                }
+                else
+                {
+                    skipped++;
+                }
+            }
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * @return false when the destination was already up to date
+     */
+    protected boolean copy( File source, File destination )
+        throws IOException
+    {
+        boolean copied = false;
+        if ( !isIdentical( source, destination ) )
+        {
+            transfer( source, destination );
+            copied = true;
+        }
+
+        File gzip = new File( destination.getPath() + ".gz" );
+        if ( isGzipped( destination ) )
+        {
+            if ( copied || !isCompressed( source, gzip ) )
+            {
+                gzip( source, gzip );
+                copied = true;
+            }
+        }
+        else if ( gzip.isFile() && !gzip.delete() )
+        {
+            throw new IOException( "Unable to delete outdated " + gzip );
+        }
+        return copied;
+    }
+
+    /**
+     * The compressed file has the source date and its trailer holds the source length (modulo 2^32)
+     */
+    private static boolean isCompressed( File source, File gzip )
+        throws IOException
+    {
+        if ( !gzip.isFile() || gzip.length() < 18 || gzip.lastModified() / 1000 != source.lastModified() / 1000 )
+        {
+            return false;
+        }
+
+        RandomAccessFile in = new RandomAccessFile( gzip, "r" );
+        try
+        {
+            in.seek( gzip.length() - 4 );
+            long size = in.read() | in.read() << 8 | in.read() << 16 | (long) in.read() << 24;
+            return size == ( source.length() & 0xffffffffL );
+        }
+        finally
+        {
+            in.close();
+        }
+    }
+
+    private boolean isGzipped( File destination )
+    {
+        String name = destination.getName();
+        int dot = name.lastIndexOf( '.' );
+        return dot != -1 && gzipExtensions.contains( name.substring( dot + 1 ).toLowerCase( Locale.ENGLISH ) );
+    }
+
+    private void transfer( File source, File destination )
+        throws IOException
+    {
+        destination.getParentFile().mkdirs();
+
+        FileInputStream in = new FileInputStream( source );
+        try
+        {
+            FileOutputStream out = new FileOutputStream( destination );
+            try
+            {
+                FileChannel input = in.getChannel();
+                FileChannel output = out.getChannel();
+                long size = input.size();
+                long position = 0;
+                while ( position < size )
+                {
+                    position += input.transferTo( position, size - position, output );
+                }
+            }
+            finally
+            {
+                IOUtil.close( out );
+            }
+        }
+        finally
+        {
+            IOUtil.close( in );
+        }
+
+        destination.setLastModified( source.lastModified() );
+    }
+
+    /**
+     * The compressed file is written aside and renamed once complete, so a server never picks up a partial file
+     */
+    private void gzip( File source, File gzip )
+        throws IOException
+    {
+        File tmp = new File( gzip.getPath() + ".tmp" );
+        FileInputStream in = new FileInputStream( source );
+        try
+        {
+            OutputStream out = new GZIPOutputStream( new FileOutputStream( tmp ), 65536 )
+            {
+                {
+                    def.setLevel( Deflater.BEST_COMPRESSION );
+                }
+            };
+            try
+            {
+                IOUtil.copy( in, out, 65536 );
+            }
+            finally
+            {
+                IOUtil.close( out );
+            }
+        }
+        finally
+        {
+            IOUtil.close( in );
+        }
+
+        gzip.delete();
+        if ( !tmp.renameTo( gzip ) )
+        {
+            tmp.delete();
+            throw new IOException( "Unable to create " + gzip );
+        }
+        // the compressed file is up to date as long as it has the source date
+        gzip.setLastModified( source.lastModified() );
+    }
+
+    /**
+     * Some file systems keep modification dates in seconds
+     */
+    protected static boolean isIdentical( File source, File destination )
+    {
+        return destination.isFile() && destination.length() == source.length()
+            && destination.lastModified() / 1000 == source.lastModified() / 1000;
+    }
+
+    private static <T> T get( Future<T> result )
+        throws IOException
+    {
+        try
+        {
+            return result.get();
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new IOException( "Interrupted while copying files" );
+        }
+        catch ( ExecutionException e )
+        {
+            Throwable cause = e.getCause();
+            if ( cause instanceof IOException )
+            {
+                throw (IOException) cause;
+            }
+            if ( cause instanceof RuntimeException )
+            {
+                throw (RuntimeException) cause;
+            }
+            if ( cause instanceof Error )
+            {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException( cause );
+        }
+    }
+
+}
@@ -0,0 +1,52 @@
+/**
+ * Flexmojos is a set of maven goals to allow maven users to compile, optimize and test Flex SWF, Flex SWC, Air SWF and Air SWC.
+ * Copyright (C) 2008-2012  Marvin Froeder <marvin@flexmojos.net>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.flexmojos.oss.plugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Method;
+
+import org.codehaus.plexus.util.FileUtils;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+
+/**
+ * Gives each test method an empty directory under target, deleted once the method is done.
+ */
+public abstract class AbstractWorkDirTest
+{
+
+    protected File dir;
+
+    @BeforeMethod
+    public void createDir( Method method )
+        throws IOException
+    {
+        dir = new File( "./target/" + getClass().getSimpleName() + "/" + method.getName() ).getCanonicalFile();
+        FileUtils.deleteDirectory( dir );
+        dir.mkdirs();
+    }
+
+    @AfterMethod
+    public void deleteDir()
+        throws IOException
+    {
+        FileUtils.deleteDirectory( dir );
+    }
+
+}
@@ -0,0 +1,110 @@
+/**
+ * Flexmojos is a set of maven goals to allow maven users to compile, optimize and test Flex SWF, Flex SWC, Air SWF and Air SWC.
+ * Copyright (C) 2008-2012  Marvin Froeder <marvin@flexmojos.net>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.flexmojos.oss.plugin.optimizer;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+
+import net.flexmojos.oss.plugin.AbstractWorkDirTest;
+import org.codehaus.plexus.util.FileUtils;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class OptimizationCacheTest
+    extends AbstractWorkDirTest
+{
+
+    private File swf;
+
+    private OptimizationCache cache;
+
+    @BeforeMethod
+    public void setUp()
+        throws IOException
+    {
+        swf = new File( dir, "library.swf" );
+        FileUtils.fileWrite( swf.getAbsolutePath(), "UTF-8", "FWS original" );
+
+        cache = new OptimizationCache( new File( dir, "cache" ) );
+    }
+
+    @Test
+    public void keyDependsOnContentAndSettings()
+        throws IOException
+    {
+        String key = cache.key( swf, "reduce=true" );
+        assertEquals( cache.key( swf, "reduce=true" ), key );
+        assertFalse( cache.key( swf, "reduce=false" ).equals( key ) );
+
+        FileUtils.fileWrite( swf.getAbsolutePath(), "UTF-8", "FWS changed" );
+        assertFalse( cache.key( swf, "reduce=true" ).equals( key ) );
+    }
+
+    @Test
+    public void storeAndRestore()
+        throws IOException
+    {
+        String key = cache.key( swf, "" );
+        File target = new File( dir, "optimized.swf" );
+        assertFalse( cache.restore( key, "swf", target ) );
+        assertFalse( target.exists() );
+
+        File optimized = new File( dir, "result.swf" );
+        FileUtils.fileWrite( optimized.getAbsolutePath(), "UTF-8", "FWS optimized" );
+        cache.store( key, "swf", optimized );
+
+        assertTrue( cache.restore( key, "swf", target ) );
+        assertEquals( FileUtils.fileRead( target, "UTF-8" ), "FWS optimized" );
+        assertEquals( cache.getDirectory().list().length, 1 );
+    }
+
+    @Test
+    public void hashDependsOnContentOnly()
+        throws IOException
+    {
+        String hash = OptimizationCache.hash( swf );
+        swf.setLastModified( swf.lastModified() - 60000 );
+        assertEquals( OptimizationCache.hash( swf ), hash );
+
+        FileUtils.fileWrite( swf.getAbsolutePath(), "UTF-8", "FWS original!" );
+        assertFalse( OptimizationCache.hash( swf ).equals( hash ) );
+    }
+
+    @Test
+    public void pruneUnusedEntries()
+        throws IOException
+    {
+        cache.store( "used", "swf", swf );
+        cache.store( "unused", "swf", swf );
+        long old = System.currentTimeMillis() - 60 * 60 * 1000;
+        new File( cache.getDirectory(), "used.swf" ).setLastModified( old );
+        new File( cache.getDirectory(), "unused.swf" ).setLastModified( old );
+
+        assertTrue( cache.restore( "used", "swf", new File( dir, "optimized.swf" ) ) );
+        assertEquals( cache.prune( 60 * 1000 ), 1 );
+        assertTrue( new File( cache.getDirectory(), "used.swf" ).isFile() );
+        assertFalse( new File( cache.getDirectory(), "unused.swf" ).exists() );
+
+        assertEquals( new OptimizationCache( new File( dir, "missing" ) ).prune( 0 ), 0 );
+    }
+
+}
@@ -0,0 +1,53 @@
+/**
+ * Flexmojos is a set of maven goals to allow maven users to compile, optimize and test Flex SWF, Flex SWC, Air SWF and Air SWC.
+ * Copyright (C) 2008-2012  Marvin Froeder <marvin@flexmojos.net>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.flexmojos.oss.plugin.optimizer;
+
+import static java.util.Arrays.asList;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+
+import net.flexmojos.oss.plugin.AbstractWorkDirTest;
+import org.codehaus.plexus.util.FileUtils;
+import org.testng.annotations.Test;
+
+public class OptimizerReportTest
+    extends AbstractWorkDirTest
+{
+
+    @Test
+    public void aggregateOnlyThisBuild()
+        throws IOException
+    {
+        File current = new File( dir, "current/" + OptimizerReport.PATH );
+        new OptimizerReport( "com.acme:current:swf:1.0", "swf", "2" ).write( current );
+        File stale = new File( dir, "stale/" + OptimizerReport.PATH );
+        new OptimizerReport( "com.acme:stale:swf:1.0", "swf", "1" ).write( stale );
+
+        File output = new File( dir, OptimizerReport.REACTOR_PATH );
+        OptimizerReport.aggregate( asList( current, stale, new File( dir, "missing/" + OptimizerReport.PATH ) ),
+                                   "2", output );
+
+        String aggregated = FileUtils.fileRead( output, "UTF-8" );
+        assertTrue( aggregated.contains( "com.acme:current:swf:1.0" ) );
+        assertEquals( aggregated.indexOf( "com.acme:stale:swf:1.0" ), -1 );
+    }
+
+}
@@ -0,0 +1,161 @@
+/**
+ * Flexmojos is a set of maven goals to allow maven users to compile, optimize and test Flex SWF, Flex SWC, Air SWF and Air SWC.
+ * Copyright (C) 2008-2012  Marvin Froeder <marvin@flexmojos.net>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.flexmojos.oss.plugin.optimizer;
+
+import static org.testng.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.zip.DeflaterOutputStream;
+
+import net.flexmojos.oss.plugin.AbstractWorkDirTest;
+import org.testng.annotations.Test;
+
+public class SwfStatisticsTest
+    extends AbstractWorkDirTest
+{
+
+    /**
+     * @return the tags of a SWF with a DoABC2 tag holding 10 bytes of byte code, a ShowFrame and the End tag
+     */
+    private byte[] tags()
+        throws IOException
+    {
+        ByteArrayOutputStream tags = new ByteArrayOutputStream();
+        // empty frame size rectangle, frame rate and frame count
+        tags.write( new byte[] { 0, 0, 24, 1, 0 } );
+
+        byte[] doAbc2 = new byte[4 + 2 + 10];
+        doAbc2[4] = 'a';
+        // long tag header, as the compiler writes DoABC2
+        tags.write( ( 82 << 6 | 0x3f ) & 0xff );
+        tags.write( ( 82 << 6 | 0x3f ) >> 8 );
+        tags.write( new byte[] { (byte) doAbc2.length, 0, 0, 0 } );
+        tags.write( doAbc2 );
+
+        // ShowFrame and End
+        tags.write( new byte[] { 0x40, 0, 0, 0 } );
+        return tags.toByteArray();
+    }
+
+    private File swf( char signature, byte[] tags )
+        throws IOException
+    {
+        return swf( signature, 8 + tags.length, tags );
+    }
+
+    private File swf( char signature, int length, byte[] tags )
+        throws IOException
+    {
+        File file = new File( dir, "library.swf" );
+
+        OutputStream out = new FileOutputStream( file );
+        try
+        {
+            out.write( new byte[] { (byte) signature, 'W', 'S', 10, (byte) length, (byte) ( length >> 8 ),
+                (byte) ( length >> 16 ), (byte) ( length >> 24 ) } );
+            if ( signature == 'C' )
+            {
+                DeflaterOutputStream deflater = new DeflaterOutputStream( out );
+                deflater.write( tags );
+                deflater.finish();
+            }
+            else
+            {
+                out.write( tags );
+            }
+        }
+        finally
+        {
+            out.close();
+        }
+        return file;
+    }
+
+    @Test
+    public void uncompressed()
+        throws IOException
+    {
+        File file = swf( 'F', tags() );
+        SwfStatistics statistics = SwfStatistics.read( file );
+
+        assertEquals( statistics.getSize(), file.length() );
+        assertEquals( statistics.getCompression(), "none" );
+        assertEquals( statistics.getVersion(), 10 );
+        assertEquals( statistics.getTags(), 3 );
+        assertEquals( statistics.getAbcs(), 1 );
+        assertEquals( statistics.getAbcSize(), 10 );
+    }
+
+    @Test
+    public void compressed()
+        throws IOException
+    {
+        File file = swf( 'C', tags() );
+        SwfStatistics statistics = SwfStatistics.read( file );
+
+        assertEquals( statistics.getSize(), file.length() );
+        assertEquals( statistics.getCompression(), "zlib" );
+        assertEquals( statistics.getTags(), 3 );
+        assertEquals( statistics.getAbcSize(), 10 );
+    }
+
+    @Test
+    public void lzmaOnlyReportsSize()
+        throws IOException
+    {
+        File file = swf( 'Z', new byte[20] );
+        SwfStatistics statistics = SwfStatistics.read( file );
+
+        assertEquals( statistics.getCompression(), "lzma" );
+        assertEquals( statistics.getTags(), -1 );
+    }
+
+    @Test( expectedExceptions = IOException.class )
+    public void headerLengthPastTheEnd()
+        throws IOException
+    {
+        // no End tag and a length far beyond the content, which must not be allocated
+        byte[] tags = tags();
+        SwfStatistics.read( swf( 'C', Integer.MAX_VALUE, Arrays.copyOf( tags, tags.length - 4 ) ) );
+    }
+
+    @Test
+    public void unsignedHeaderLength()
+        throws IOException
+    {
+        // read as an int, this length used to be negative
+        assertEquals( SwfStatistics.read( swf( 'C', -1, tags() ) ).getTags(), 3 );
+    }
+
+    @Test( expectedExceptions = IOException.class )
+    public void tagPastTheEnd()
+        throws IOException
+    {
+        byte[] tags = tags();
+        // the DoABC2 tag claims more bytes than the file has
+        tags[5 + 2] = (byte) 0xff;
+        tags[5 + 3] = (byte) 0x7f;
+        SwfStatistics.read( swf( 'F', tags ) );
+    }
+
+}
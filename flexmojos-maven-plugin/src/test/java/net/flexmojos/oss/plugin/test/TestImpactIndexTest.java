@@ -0,0 +1,215 @@
+/**
+ * Flexmojos is a set of maven goals to allow maven users to compile, optimize and test Flex SWF, Flex SWC, Air SWF and Air SWC.
+ * Copyright (C) 2008-2012  Marvin Froeder <marvin@flexmojos.net>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.flexmojos.oss.plugin.test;
+
+import static java.util.Arrays.asList;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+
+import net.flexmojos.oss.plugin.AbstractWorkDirTest;
+import org.codehaus.plexus.util.FileUtils;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class TestImpactIndexTest
+    extends AbstractWorkDirTest
+{
+
+    private File model;
+
+    private File view;
+
+    private File modelTest;
+
+    private File viewTest;
+
+    private File linkReport;
+
+    private File pom;
+
+    private File library;
+
+    private final List<String> tests = asList( "com.acme.ModelTest", "com.acme.ViewTest" );
+
+    @BeforeMethod
+    public void setUp()
+        throws IOException
+    {
+        model = source( "Model.as" );
+        view = source( "View.as" );
+        modelTest = source( "ModelTest.as" );
+        viewTest = source( "ViewTest.as" );
+        pom = source( "pom.xml" );
+        library = source( "framework.swc" );
+
+        // ViewTest -> View -> Model, ModelTest -> Model
+        linkReport = new File( dir, "TestRunner-link-report.xml" );
+        FileUtils.fileWrite( linkReport.getAbsolutePath(), "UTF-8", "<report><scripts>" //
+            + script( modelTest, "com.acme:ModelTest", "com.acme:Model", "flexunit:Assert" )
+            + script( viewTest, "com.acme:ViewTest", "com.acme:View" )
+            + script( view, "com.acme:View", "com.acme:Model", "mx.core:UIComponent" )
+            + script( model, "com.acme:Model" )
+            + "<script name=\"" + dir + "/framework.swc(mx.core:UIComponent)\"><def id=\"mx.core:UIComponent\"/></script>"
+            + "</scripts></report>" );
+    }
+
+    private File source( String name )
+        throws IOException
+    {
+        File file = new File( dir, name );
+        FileUtils.fileWrite( file.getAbsolutePath(), "UTF-8", "package com.acme { }" );
+        return file;
+    }
+
+    private String script( File file, String def, String... deps )
+    {
+        StringBuilder script = new StringBuilder();
+        script.append( "<script name=\"" ).append( file.getAbsolutePath() ).append( "\">" );
+        script.append( "<def id=\"" ).append( def ).append( "\"/>" );
+        for ( String dep : deps )
+        {
+            script.append( "<dep id=\"" ).append( dep ).append( "\"/>" );
+        }
+        return script.append( "</script>" ).toString();
+    }
+
+    private TestImpactIndex recorded()
+        throws IOException
+    {
+        TestImpactIndex index = new TestImpactIndex( new File( dir, "test-impact.idx" ) );
+        index.setEnvironment( environment() );
+        index.record( linkReport, tests, tests );
+        index.save();
+        return load( index.getFile() );
+    }
+
+    private TestImpactIndex load( File file )
+        throws IOException
+    {
+        TestImpactIndex index = TestImpactIndex.load( file );
+        index.setEnvironment( environment() );
+        return index;
+    }
+
+    private String environment()
+    {
+        return TestImpactIndex.environment( pom, new File[] { library } );
+    }
+
+    @Test
+    public void emptyIndexSelectsAll()
+    {
+        TestImpactIndex index = new TestImpactIndex( new File( dir, "missing.idx" ) );
+        assertEquals( index.select( tests ), tests );
+    }
+
+    @Test
+    public void nothingChanged()
+        throws IOException
+    {
+        assertEquals( recorded().select( tests ), Collections.emptyList() );
+    }
+
+    @Test
+    public void transitiveChange()
+        throws IOException
+    {
+        TestImpactIndex index = recorded();
+
+        FileUtils.fileWrite( model.getAbsolutePath(), "UTF-8", "package com.acme { class Model { } }" );
+        assertEquals( index.select( tests ), tests );
+    }
+
+    @Test
+    public void onlyAffectedTests()
+        throws IOException
+    {
+        TestImpactIndex index = recorded();
+
+        FileUtils.fileWrite( view.getAbsolutePath(), "UTF-8", "package com.acme { class View { } }" );
+        assertEquals( index.select( tests ), asList( "com.acme.ViewTest" ) );
+        assertTrue( index.getChangedFiles().contains( view.getAbsolutePath() ) );
+    }
+
+    @Test
+    public void newTestRuns()
+        throws IOException
+    {
+        TestImpactIndex index = recorded();
+
+        assertEquals( index.select( asList( "com.acme.ModelTest", "com.acme.OtherTest" ) ),
+                      asList( "com.acme.OtherTest" ) );
+    }
+
+    @Test
+    public void outOfShardTestsStayAffected()
+        throws IOException
+    {
+        TestImpactIndex index = recorded();
+        FileUtils.fileWrite( model.getAbsolutePath(), "UTF-8", "package com.acme { class Model { } }" );
+
+        int count = 2;
+        while ( TestShard.shardOf( tests.get( 0 ), count ) == TestShard.shardOf( tests.get( 1 ), count ) )
+        {
+            count++;
+        }
+        TestShard shard = new TestShard( TestShard.shardOf( tests.get( 0 ), count ), count );
+
+        List<String> compiled = shard.filter( index.select( tests ) );
+        assertEquals( compiled, asList( tests.get( 0 ) ) );
+        index.record( linkReport, tests, compiled );
+        index.save();
+
+        index = load( index.getFile() );
+        assertEquals( index.select( tests ), asList( tests.get( 1 ) ) );
+        assertTrue( index.getChangedFiles().contains( model.getAbsolutePath() ) );
+    }
+
+    @Test
+    public void libraryChangeSelectsAll()
+        throws IOException
+    {
+        TestImpactIndex index = recorded();
+        assertFalse( index.isEnvironmentChanged() );
+
+        FileUtils.fileWrite( library.getAbsolutePath(), "UTF-8", "changed library" );
+        index.setEnvironment( environment() );
+        assertTrue( index.isEnvironmentChanged() );
+        assertEquals( index.select( tests ), tests );
+        assertTrue( index.getChangedFiles().isEmpty() );
+    }
+
+    @Test
+    public void environmentCoversPomAndLibrarySet()
+        throws IOException
+    {
+        String environment = environment();
+        File other = source( "other.swc" );
+        assertFalse( TestImpactIndex.environment( pom, new File[] { library, other } ).equals( environment ) );
+
+        FileUtils.fileWrite( pom.getAbsolutePath(), "UTF-8", "<project/>" );
+        assertFalse( environment().equals( environment ) );
+    }
+
+}
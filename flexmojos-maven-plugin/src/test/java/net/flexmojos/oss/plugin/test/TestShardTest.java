@@ -0,0 +1,90 @@
+/**
+ * Flexmojos is a set of maven goals to allow maven users to compile, optimize and test Flex SWF, Flex SWC, Air SWF and Air SWC.
+ * Copyright (C) 2008-2012  Marvin Froeder <marvin@flexmojos.net>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.flexmojos.oss.plugin.test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.testng.annotations.Test;
+
+public class TestShardTest
+{
+
+    private List<String> classes()
+    {
+        List<String> classes = new ArrayList<String>();
+        for ( int i = 0; i < 200; i++ )
+        {
+            classes.add( "com.example.pkg" + ( i % 7 ) + ".Some" + i + "Test" );
+        }
+        return classes;
+    }
+
+    @Test
+    public void partition()
+    {
+        List<String> classes = classes();
+
+        Set<String> all = new LinkedHashSet<String>();
+        int total = 0;
+        for ( int i = 0; i < 4; i++ )
+        {
+            List<String> shard = new TestShard( i, 4 ).filter( classes );
+            total += shard.size();
+            all.addAll( shard );
+        }
+
+        // every class runs exactly once
+        assertEquals( total, classes.size() );
+        assertEquals( all.size(), classes.size() );
+    }
+
+    @Test
+    public void deterministic()
+    {
+        List<String> classes = classes();
+        List<String> reversed = new ArrayList<String>( classes );
+        Collections.reverse( reversed );
+
+        List<String> a = new TestShard( 2, 3 ).filter( classes );
+        List<String> b = new TestShard( 2, 3 ).filter( reversed );
+        Collections.reverse( b );
+
+        assertEquals( a, b );
+    }
+
+    @Test
+    public void disabled()
+    {
+        assertNull( TestShard.valueOf( null, null ) );
+        assertNull( TestShard.valueOf( 0, 1 ) );
+    }
+
+    @Test( expectedExceptions = IllegalArgumentException.class )
+    public void invalidIndex()
+    {
+        TestShard.valueOf( 3, 3 );
+    }
+
+}
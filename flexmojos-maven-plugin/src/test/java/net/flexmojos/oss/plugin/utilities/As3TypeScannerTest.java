@@ -0,0 +1,91 @@
+/**
+ * Flexmojos is a set of maven goals to allow maven users to compile, optimize and test Flex SWF, Flex SWC, Air SWF and Air SWC.
+ * Copyright (C) 2008-2012  Marvin Froeder <marvin@flexmojos.net>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.flexmojos.oss.plugin.utilities;
+
+import static java.util.Arrays.asList;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.io.UnsupportedEncodingException;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.testng.annotations.Test;
+
+public class As3TypeScannerTest
+{
+
+    private boolean declares( String content, String name )
+        throws UnsupportedEncodingException
+    {
+        byte[] bytes = content.getBytes( "UTF-8" );
+        return As3TypeScanner.declaresType( bytes, bytes.length, name.getBytes( "UTF-8" ) );
+    }
+
+    @Test
+    public void classAndInterface()
+        throws Exception
+    {
+        assertTrue( declares( "package a {\n public class Foo extends Bar { } }", "Foo" ) );
+        assertTrue( declares( "package a { public interface\n\tIFoo { } }", "IFoo" ) );
+        assertTrue( declares( "package a { class /* hidden */ Foo { } }", "Foo" ) );
+    }
+
+    @Test
+    public void snippets()
+        throws Exception
+    {
+        assertFalse( declares( "include \"Foo.as\";\nvar foo:Foo;", "Foo" ) );
+        assertFalse( declares( "package a { public class FooBar { } }", "Foo" ) );
+        assertFalse( declares( "package a { public subclass Foo { } }", "Foo" ) );
+    }
+
+    @Test
+    public void ignoredContent()
+        throws Exception
+    {
+        assertFalse( declares( "// class Foo\nvar a;", "Foo" ) );
+        assertFalse( declares( "/* class Foo\n * long comment */ var a;", "Foo" ) );
+        assertFalse( declares( "var a:String = \"class Foo \\\" class Foo\";", "Foo" ) );
+        assertFalse( declares( "[Inspectable(type='class Foo')] var a;", "Foo" ) );
+        assertFalse( declares( "/* unterminated class Foo", "Foo" ) );
+    }
+
+    @Test
+    public void nonAscii()
+        throws Exception
+    {
+        assertTrue( declares( "// ção\npackage a { public class Maçã { } }", "Maçã" ) );
+        assertFalse( declares( "package a { public class Mação { } }", "Maçã" ) );
+    }
+
+    @Test
+    public void metadata()
+        throws Exception
+    {
+        byte[] bytes = ( "package a {\n[Bindable]\n[Event(name=\"change\", type=\"flash.events.Event\")]\n"
+            + "public class Foo {\n var list:Array = [Bar, 1];\n [Test( async )]\n public function x():void\n"
+            + " { list[Baz] = 2; }\n } }" ).getBytes( "UTF-8" );
+        Set<String> metadata = new TreeSet<String>();
+
+        assertTrue( As3TypeScanner.scan( bytes, bytes.length, "Foo".getBytes( "UTF-8" ), metadata ) );
+        assertEquals( metadata, new TreeSet<String>( asList( "Bindable", "Event", "Test" ) ) );
+    }
+
+}
@@ -0,0 +1,63 @@
+/**
+ * Flexmojos is a set of maven goals to allow maven users to compile, optimize and test Flex SWF, Flex SWC, Air SWF and Air SWC.
+ * Copyright (C) 2008-2012  Marvin Froeder <marvin@flexmojos.net>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.flexmojos.oss.plugin.utilities;
+
+import static java.util.Arrays.asList;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+
+import net.flexmojos.oss.plugin.AbstractWorkDirTest;
+import org.codehaus.plexus.util.FileUtils;
+import org.testng.annotations.Test;
+
+public class LinkReportTest
+    extends AbstractWorkDirTest
+{
+
+    @Test
+    public void read()
+        throws IOException
+    {
+        File file = new File( dir, "link-report.xml" );
+        FileUtils.fileWrite( file.getAbsolutePath(), "UTF-8", "<report><scripts>" //
+            + "<script name=\"/src/com/acme/Main.mxml\" mod=\"1\" size=\"1200\">"
+            + "<def id=\"com.acme:Main\"/><pre id=\"mx.core:Application\"/><dep id=\"com.acme:Model\"/></script>"
+            + "<script name=\"/src/com/acme/Model.as\" mod=\"1\" size=\"300\"><def id=\"com.acme:Model\"/></script>"
+            + "<script name=\"/lib/framework.swc(mx.core:Application)\" mod=\"1\" size=\"9000\">"
+            + "<def id=\"mx.core:Application\"/></script>" //
+            + "</scripts><external-defs><ext id=\"flash.display:Sprite\"/></external-defs></report>" );
+
+        LinkReport report = LinkReport.read( file );
+
+        assertEquals( report.getScripts().size(), 3 );
+        assertTrue( report.containsScript( "/src/com/acme/Model.as" ) );
+        assertFalse( report.containsScript( "/src/com/acme/Other.as" ) );
+        assertEquals( report.getScript( "com.acme:Model" ), "/src/com/acme/Model.as" );
+        assertNull( report.getScript( "flash.display:Sprite" ) );
+        assertEquals( report.getDependencies( "/src/com/acme/Main.mxml" ),
+                      asList( "mx.core:Application", "com.acme:Model" ) );
+        assertTrue( report.getDependencies( "/src/com/acme/Model.as" ).isEmpty() );
+        assertEquals( report.getSize( "/src/com/acme/Main.mxml" ), 1200 );
+    }
+
+}
@@ -0,0 +1,112 @@
+/**
+ * Flexmojos is a set of maven goals to allow maven users to compile, optimize and test Flex SWF, Flex SWC, Air SWF and Air SWC.
+ * Copyright (C) 2008-2012  Marvin Froeder <marvin@flexmojos.net>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.flexmojos.oss.plugin.utilities;
+
+import static java.util.Arrays.asList;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.TreeSet;
+
+import net.flexmojos.oss.plugin.AbstractWorkDirTest;
+import org.codehaus.plexus.util.FileUtils;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class SourceIndexTest
+    extends AbstractWorkDirTest
+{
+
+    private File root;
+
+    private File target;
+
+    @BeforeMethod
+    public void setUp()
+        throws IOException
+    {
+        root = new File( dir, "src" );
+        target = new File( dir, "target" );
+
+        write( "com/acme/Model.as", "package com.acme { [Bindable] public class Model { } }" );
+        write( "com/acme/ModelTest.as", "package com.acme { public class ModelTest { [Test] function x() {} } }" );
+        write( "com/acme/snippet.as", "import com.acme.Model; var model:Model;" );
+        write( "Main.mxml", "<mx:Application xmlns:mx=\"http://www.adobe.com/2006/mxml\"/>" );
+        write( "com/acme/View.mxml", "<mx:Canvas xmlns:mx=\"http://www.adobe.com/2006/mxml\"/>" );
+    }
+
+    private void write( String path, String content )
+        throws IOException
+    {
+        File file = new File( root, path );
+        file.getParentFile().mkdirs();
+        FileUtils.fileWrite( file.getAbsolutePath(), "UTF-8", content );
+    }
+
+    @Test
+    public void entries()
+    {
+        SourceIndex index = SourceIndex.getInstance( target );
+
+        SourceIndex.Entry model = index.get( root, "com/acme/Model.as" );
+        assertEquals( model.getClassName(), "com.acme.Model" );
+        assertTrue( model.isClass() );
+        assertFalse( model.isTest() );
+        assertEquals( model.getMetadata(), new TreeSet<String>( asList( "Bindable" ) ) );
+        assertNull( model.getRootTag() );
+
+        assertTrue( index.get( root, "com/acme/ModelTest.as" ).isTest() );
+        assertFalse( index.get( root, "com/acme/snippet.as" ).isClass() );
+
+        SourceIndex.Entry main = index.get( root, "Main.mxml" );
+        assertEquals( main.getClassName(), "Main" );
+        assertTrue( main.isApplication() );
+        assertEquals( main.getRootTag(), "{http://www.adobe.com/2006/mxml}Application" );
+        assertFalse( index.get( new File( root, "com/acme/View.mxml" ) ).isApplication() );
+    }
+
+    @Test
+    public void persisted()
+        throws IOException
+    {
+        SourceIndex index = SourceIndex.getInstance( target );
+        index.get( root, "com/acme/Model.as" );
+        index.get( root, "Main.mxml" );
+        index.save();
+        assertTrue( index.getFile().isFile() );
+
+        // same size and date, the file isn't read again
+        SourceIndex loaded = SourceIndex.load( index.getFile() );
+        File model = new File( root, "com/acme/Model.as" );
+        long lastModified = model.lastModified();
+        FileUtils.fileWrite( model.getAbsolutePath(), "UTF-8",
+                             "package com.acme { [Bindable] public class Other { } }" );
+        model.setLastModified( lastModified );
+        assertTrue( loaded.get( root, "com/acme/Model.as" ).isClass() );
+        assertTrue( loaded.get( root, "Main.mxml" ).isApplication() );
+
+        // changed ones are
+        model.setLastModified( lastModified - 10000 );
+        assertFalse( loaded.get( root, "com/acme/Model.as" ).isClass() );
+    }
+
+}
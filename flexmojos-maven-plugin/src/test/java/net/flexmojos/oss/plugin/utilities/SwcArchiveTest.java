@@ -0,0 +1,192 @@
+/**
+ * Flexmojos is a set of maven goals to allow maven users to compile, optimize and test Flex SWF, Flex SWC, Air SWF and Air SWC.
+ * Copyright (C) 2008-2012  Marvin Froeder <marvin@flexmojos.net>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.flexmojos.oss.plugin.utilities;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import net.flexmojos.oss.plugin.AbstractWorkDirTest;
+import org.codehaus.plexus.util.FileUtils;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class SwcArchiveTest
+    extends AbstractWorkDirTest
+{
+
+    private File swc;
+
+    private byte[] library;
+
+    @BeforeMethod
+    public void setUp()
+        throws IOException
+    {
+        // half random, half repeated, so it doesn't deflate to nothing
+        library = new byte[300000];
+        new Random( 42 ).nextBytes( library );
+        for ( int i = library.length / 2; i < library.length; i++ )
+        {
+            library[i] = (byte) ( i % 7 );
+        }
+
+        swc = new File( dir, "lib.swc" );
+        ZipOutputStream out = new ZipOutputStream( new FileOutputStream( swc ) );
+        try
+        {
+            out.putNextEntry( new ZipEntry( "catalog.xml" ) );
+            out.write( "<swc/>".getBytes( "UTF-8" ) );
+            out.closeEntry();
+
+            ZipEntry stored = new ZipEntry( "locale/en_US/core.properties" );
+            byte[] properties = "a=b".getBytes( "UTF-8" );
+            CRC32 crc = new CRC32();
+            crc.update( properties );
+            stored.setMethod( ZipEntry.STORED );
+            stored.setSize( properties.length );
+            stored.setCrc( crc.getValue() );
+            out.putNextEntry( stored );
+            out.write( properties );
+            out.closeEntry();
+
+            out.putNextEntry( new ZipEntry( "library.swf" ) );
+            out.write( library );
+            out.closeEntry();
+        }
+        finally
+        {
+            out.close();
+        }
+    }
+
+    @Test
+    public void readEntries()
+        throws IOException
+    {
+        SwcArchive archive = SwcArchive.open( swc );
+
+        assertEquals( archive.getEntries().size(), 3 );
+        assertTrue( archive.contains( "library.swf" ) );
+        assertFalse( archive.contains( "missing.swf" ) );
+        assertNull( archive.read( "missing.swf" ) );
+
+        assertTrue( Arrays.equals( archive.read( "library.swf" ), library ) );
+        assertEquals( new String( archive.read( "catalog.xml" ), "UTF-8" ), "<swc/>" );
+        assertEquals( new String( archive.read( "locale/en_US/core.properties" ), "UTF-8" ), "a=b" );
+
+        File copy = new File( dir, "library.swf" );
+        assertTrue( archive.copy( "library.swf", copy ) );
+        assertEquals( copy.length(), library.length );
+    }
+
+    @Test
+    public void extractPrefix()
+        throws IOException
+    {
+        List<File> files = SwcArchive.open( swc ).extract( "locale/en_US/", new File( dir, "out" ) );
+
+        assertEquals( files.size(), 1 );
+        assertEquals( FileUtils.fileRead( files.get( 0 ), "UTF-8" ), "a=b" );
+    }
+
+    @Test
+    public void reloadChangedArchive()
+        throws IOException
+    {
+        SwcArchive archive = SwcArchive.open( swc );
+        assertTrue( archive == SwcArchive.open( swc ) );
+
+        ZipOutputStream out = new ZipOutputStream( new FileOutputStream( swc ) );
+        try
+        {
+            out.putNextEntry( new ZipEntry( "catalog.xml" ) );
+            out.write( "<swc digest='true'/>".getBytes( "UTF-8" ) );
+            out.closeEntry();
+        }
+        finally
+        {
+            out.close();
+        }
+
+        assertEquals( new String( SwcArchive.open( swc ).read( "catalog.xml" ), "UTF-8" ), "<swc digest='true'/>" );
+    }
+
+    @Test
+    public void corruptedEntryFails()
+        throws IOException
+    {
+        SwcArchive archive = SwcArchive.open( swc );
+
+        // same length and date, only the content of the stored entry changes
+        byte[] content = FileUtils.fileRead( swc, "ISO-8859-1" ).getBytes( "ISO-8859-1" );
+        int offset = FileUtils.fileRead( swc, "ISO-8859-1" ).indexOf( "a=b" );
+        content[offset + 2] = 'c';
+        long lastModified = swc.lastModified();
+        FileOutputStream out = new FileOutputStream( swc );
+        try
+        {
+            out.write( content );
+        }
+        finally
+        {
+            out.close();
+        }
+        swc.setLastModified( lastModified );
+
+        assertTrue( archive == SwcArchive.open( swc ) );
+        try
+        {
+            archive.read( "locale/en_US/core.properties" );
+            fail( "CRC mismatch not detected" );
+        }
+        catch ( IOException e )
+        {
+            // expected
+        }
+        assertFalse( archive == SwcArchive.open( swc ) );
+    }
+
+    @Test
+    public void namesFollowTheUtf8Flag()
+        throws IOException
+    {
+        String name = "locale/fr_FR/\u00e9t\u00e9.properties";
+        byte[] utf8 = name.getBytes( "UTF-8" );
+        assertEquals( SwcArchive.decodeName( utf8, 0, utf8.length, 1 << 11 ), name );
+        // tools writing UTF-8 without the flag are still understood
+        assertEquals( SwcArchive.decodeName( utf8, 0, utf8.length, 0 ), name );
+
+        // 0x82 is \u00e9 on CP437, and not valid UTF-8
+        byte[] cp437 = new byte[] { (byte) 0x82, 't', (byte) 0x82 };
+        assertEquals( SwcArchive.decodeName( cp437, 0, cp437.length, 0 ), "\u00e9t\u00e9" );
+    }
+
+}
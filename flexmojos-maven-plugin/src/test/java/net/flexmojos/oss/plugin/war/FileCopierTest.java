@@ -0,0 +1,172 @@
+/**
+ * Flexmojos is a set of maven goals to allow maven users to compile, optimize and test Flex SWF, Flex SWC, Air SWF and Air SWC.
+ * Copyright (C) 2008-2012  Marvin Froeder <marvin@flexmojos.net>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.flexmojos.oss.plugin.war;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import net.flexmojos.oss.plugin.AbstractWorkDirTest;
+import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.util.IOUtil;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class FileCopierTest
+    extends AbstractWorkDirTest
+{
+
+    private File swf;
+
+    private File rsl;
+
+    @BeforeMethod
+    public void setUp()
+        throws IOException
+    {
+        swf = new File( dir, "main.swf" );
+        FileUtils.fileWrite( swf.getAbsolutePath(), "UTF-8", "FWS main" );
+        rsl = new File( dir, "framework.swz" );
+        FileUtils.fileWrite( rsl.getAbsolutePath(), "UTF-8", "FWS framework" );
+    }
+
+    private FileCopier copier()
+    {
+        File webapp = new File( dir, "webapp" );
+        FileCopier copier = new FileCopier();
+        copier.add( swf, new File( webapp, "main.swf" ) );
+        copier.add( rsl, new File( webapp, "rsls/framework.swz" ) );
+        // the same rsl required by another module
+        copier.add( rsl, new File( webapp, "rsls/framework.swz" ) );
+        return copier;
+    }
+
+    @Test
+    public void copyOnceThenSkip()
+        throws IOException
+    {
+        FileCopier copier = copier();
+        copier.execute();
+        assertEquals( copier.getCopied(), 2 );
+        assertEquals( FileUtils.fileRead( new File( dir, "webapp/rsls/framework.swz" ), "UTF-8" ), "FWS framework" );
+
+        copier = copier();
+        copier.execute();
+        assertEquals( copier.getCopied(), 0 );
+        assertEquals( copier.getSkipped(), 2 );
+    }
+
+    @Test
+    public void copyChanged()
+        throws IOException
+    {
+        copier().execute();
+
+        FileUtils.fileWrite( swf.getAbsolutePath(), "UTF-8", "FWS main changed" );
+        FileCopier copier = copier();
+        copier.execute();
+        assertEquals( copier.getCopied(), 1 );
+        assertEquals( FileUtils.fileRead( new File( dir, "webapp/main.swf" ), "UTF-8" ), "FWS main changed" );
+    }
+
+    @Test
+    public void gzipSiblings()
+        throws IOException
+    {
+        FileCopier copier = copier();
+        copier.addGzipExtension( "SWZ" );
+        copier.execute();
+
+        File gzip = new File( dir, "webapp/rsls/framework.swz.gz" );
+        assertEquals( gunzip( gzip ), "FWS framework" );
+        assertFalse( new File( dir, "webapp/main.swf.gz" ).exists() );
+
+        copier = copier();
+        copier.addGzipExtension( "swz" );
+        copier.execute();
+        assertEquals( copier.getCopied(), 0 );
+    }
+
+    @Test
+    public void gzipSiblingFollowsSourceLength()
+        throws IOException
+    {
+        FileCopier copier = copier();
+        copier.addGzipExtension( "swz" );
+        copier.execute();
+
+        // a sibling with the source date but another content, as left by a build in the same second
+        File gzip = new File( dir, "webapp/rsls/framework.swz.gz" );
+        OutputStream out = new GZIPOutputStream( new FileOutputStream( gzip ) );
+        try
+        {
+            out.write( "FWS older framework".getBytes( "UTF-8" ) );
+        }
+        finally
+        {
+            out.close();
+        }
+        gzip.setLastModified( rsl.lastModified() );
+
+        copier = copier();
+        copier.addGzipExtension( "swz" );
+        copier.execute();
+        assertEquals( copier.getCopied(), 1 );
+        assertEquals( gunzip( gzip ), "FWS framework" );
+    }
+
+    @Test
+    public void gzipSiblingsRemovedWhenDisabled()
+        throws IOException
+    {
+        FileCopier copier = copier();
+        copier.addGzipExtension( "swf" );
+        copier.addGzipExtension( "swz" );
+        copier.execute();
+        File gzip = new File( dir, "webapp/main.swf.gz" );
+        assertTrue( gzip.isFile() );
+
+        copier().execute();
+        assertFalse( gzip.exists() );
+        assertFalse( new File( dir, "webapp/rsls/framework.swz.gz" ).exists() );
+    }
+
+    private static String gunzip( File gzip )
+        throws IOException
+    {
+        InputStream in = new GZIPInputStream( new FileInputStream( gzip ) );
+        try
+        {
+            return IOUtil.toString( in, "UTF-8" );
+        }
+        finally
+        {
+            in.close();
+        }
+    }
+
+}
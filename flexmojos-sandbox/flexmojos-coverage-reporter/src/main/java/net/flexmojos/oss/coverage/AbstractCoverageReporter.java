@@ -17,11 +17,34 @@
  */
 package net.flexmojos.oss.coverage;
 
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.codehaus.plexus.logging.AbstractLogEnabled;
-import org.codehaus.plexus.util.SelectorUtils;
+import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.util.IOUtil;
 import net.flexmojos.oss.coverage.util.ApparatUtil;
+import net.flexmojos.oss.coverage.util.ExclusionMatcher;
 import net.flexmojos.oss.util.PathUtil;
 
 import apparat.tools.coverage.Coverage.CoverageTool;
@@ -31,89 +54,384 @@ public abstract class AbstractCoverageReporter
     extends AbstractLogEnabled
     implements CoverageReporter
 {
-	protected String[] excludes;
+
+    /**
+     * Changes whenever the layout of the cached files does
+     */
+    private static final String CACHE_VERSION = "1";
+
+    private ExclusionMatcher excludes;
+
+    /**
+     * Instrumented lines and hits, exclusions are only applied when converting it to the report
+     */
+    protected final CoverageData coverageData = new CoverageData();
+
+    private File cacheDirectory;
+
+    public void setCacheDirectory( File cacheDirectory )
+    {
+        this.cacheDirectory = cacheDirectory;
+    }
 
     public void instrument( File swf, File... sourcePaths )
+    {
+        instrument( Collections.singletonList( swf ), sourcePaths );
+    }
+
+    public void instrument( List<File> swfs, final File... sourcePaths )
     {
         getLogger().debug( "Instrumenting code to test coverage mode " + System.getProperty( "apparat.threads" ) );
         if ( getLogger().isDebugEnabled() )
         {
-            getLogger().info( "Instrumenting: " + PathUtil.path( swf ) + "\n source paths: \n"
-                                  + PathUtil.pathString( sourcePaths ) );
+            getLogger().debug( "Coverage source paths: \n" + PathUtil.pathString( sourcePaths ) );
+        }
+
+        long started = System.currentTimeMillis();
+
+        int threads = Math.max( 1, Math.min( swfs.size(), Runtime.getRuntime().availableProcessors() ) );
+        ExecutorService executor = Executors.newFixedThreadPool( threads );
+        try
+        {
+            List<Future<Map<String, List<Integer>>>> results = new ArrayList<Future<Map<String, List<Integer>>>>();
+            for ( final File swf : swfs )
+            {
+                results.add( executor.submit( new Callable<Map<String, List<Integer>>>()
+                {
+                    public Map<String, List<Integer>> call()
+                        throws IOException
+                    {
+                        return instrumentSwf( swf, sourcePaths );
+                    }
+                } ) );
+            }
+
+            for ( Future<Map<String, List<Integer>>> result : results )
+            {
+                for ( Map.Entry<String, List<Integer>> file : get( result ).entrySet() )
+                {
+                    for ( Integer line : file.getValue() )
+                    {
+                        coverageData.addLine( file.getKey(), line );
+                    }
+                    if ( getLogger().isDebugEnabled() )
+                    {
+                        getLogger().debug( "Instrumented " + ApparatUtil.toClassname( file.getKey() ) + ": "
+                                               + file.getValue() );
+                    }
+                }
+            }
+        }
+        finally
+        {
+            executor.shutdownNow();
         }
-        else
+
+        pruneCache( started );
+    }
+
+    /**
+     * Drop the cached swfs not used by this run, otherwise every change would leave a copy of the test swf behind
+     */
+    private void pruneCache( long started )
+    {
+        File[] files = cacheDirectory == null ? null : cacheDirectory.listFiles();
+        if ( files == null )
         {
-            getLogger().info( "Instrumenting: " + PathUtil.path( swf ) );
+            return;
         }
 
+        // some file systems keep modification dates in seconds
+        long limit = started - 1000;
+        for ( File file : files )
+        {
+            if ( file.lastModified() < limit && !file.delete() )
+            {
+                getLogger().debug( "Unable to delete stale instrumented file " + file );
+            }
+        }
+    }
+
+    private void touch( File... files )
+    {
+        long now = System.currentTimeMillis();
+        for ( File file : files )
+        {
+            file.setLastModified( now );
+        }
+    }
+
+    private static <T> T get( Future<T> result )
+    {
+        try
+        {
+            return result.get();
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException( "Interrupted while instrumenting", e );
+        }
+        catch ( ExecutionException e )
+        {
+            Throwable cause = e.getCause();
+            if ( cause instanceof RuntimeException )
+            {
+                throw (RuntimeException) cause;
+            }
+            if ( cause instanceof Error )
+            {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException( "Unable to instrument: " + cause.getMessage(), cause );
+        }
+    }
+
+    /**
+     * @return the instrumented lines by apparat file name
+     */
+    private Map<String, List<Integer>> instrumentSwf( File swf, File... sourcePaths )
+        throws IOException
+    {
+        String hash = null;
+        if ( cacheDirectory != null )
+        {
+            hash = hash( swf, sourcePaths );
+
+            File cachedSwf = new File( cacheDirectory, hash + ".swf" );
+            File cachedLines = new File( cacheDirectory, hash + ".lines" );
+            if ( cachedSwf.isFile() && cachedLines.isFile() )
+            {
+                getLogger().info( "Reusing instrumented " + PathUtil.path( swf ) );
+                touch( cachedSwf, cachedLines );
+                FileUtils.copyFile( cachedSwf, swf );
+                // the mapping must survive the pruning too, in case the swf isn't compiled again
+                cacheSource( swf, hash, sourcePaths );
+                return readLines( cachedLines );
+            }
+
+            // the swf may have been instrumented by a previous run when it wasn't compiled again
+            File source = new File( cacheDirectory, hash + ".source" );
+            if ( source.isFile() )
+            {
+                String sourceHash = FileUtils.fileRead( source ).trim();
+                File sourceLines = new File( cacheDirectory, sourceHash + ".lines" );
+                if ( sourceLines.isFile() )
+                {
+                    getLogger().info( "Already instrumented " + PathUtil.path( swf ) );
+                    touch( source, sourceLines, new File( cacheDirectory, sourceHash + ".swf" ) );
+                    return readLines( sourceLines );
+                }
+            }
+        }
+
+        getLogger().info( "Instrumenting: " + PathUtil.path( swf ) );
+
+        final Map<String, List<Integer>> lines = new LinkedHashMap<String, List<Integer>>();
         CoverageTool c = new CoverageTool();
         c.configure( new CoverageConfigurationImpl( swf, swf, sourcePaths ) );
-        c.addObserver( getInstrumentationObserver() );
+        c.addObserver( new CoverageObserver()
+        {
+            public void instrument( String file, int line )
+            {
+                synchronized ( lines )
+                {
+                    List<Integer> fileLines = lines.get( file );
+                    if ( fileLines == null )
+                    {
+                        fileLines = new ArrayList<Integer>();
+                        lines.put( file, fileLines );
+                    }
+                    fileLines.add( line );
+                }
+            }
+        } );
+        c.run();
 
-        if ( getLogger().isDebugEnabled() )
+        if ( hash != null )
         {
-            c.addObserver( new CoverageObserver()
+            try
+            {
+                cacheDirectory.mkdirs();
+                FileUtils.copyFile( swf, new File( cacheDirectory, hash + ".swf" ) );
+                writeLines( new File( cacheDirectory, hash + ".lines" ), lines );
+            }
+            catch ( IOException e )
             {
-                public void instrument( String file, int line )
+                getLogger().warn( "Unable to cache instrumented " + PathUtil.path( swf ) + ": " + e.getMessage() );
+                return lines;
+            }
+            cacheSource( swf, hash, sourcePaths );
+        }
+
+        return lines;
+    }
+
+    /**
+     * Map the instrumented swf to the hash of its source, so it is recognized when it isn't compiled again
+     */
+    private void cacheSource( File instrumented, String hash, File... sourcePaths )
+    {
+        try
+        {
+            FileUtils.fileWrite( new File( cacheDirectory, hash( instrumented, sourcePaths ) + ".source" ), hash );
+        }
+        catch ( IOException e )
+        {
+            getLogger().warn( "Unable to cache instrumented " + PathUtil.path( instrumented ) + ": " + e.getMessage() );
+        }
+    }
+
+    /**
+     * Exclusions don't take part, they are applied when the report is generated
+     */
+    static String hash( File swf, File... sourcePaths )
+        throws IOException
+    {
+        MessageDigest digest;
+        try
+        {
+            digest = MessageDigest.getInstance( "SHA-1" );
+        }
+        catch ( NoSuchAlgorithmException e )
+        {
+            throw new IllegalStateException( e );
+        }
+
+        InputStream in = new FileInputStream( swf );
+        try
+        {
+            byte[] buffer = new byte[8192];
+            int read;
+            while ( ( read = in.read( buffer ) ) != -1 )
+            {
+                digest.update( buffer, 0, read );
+            }
+        }
+        finally
+        {
+            IOUtil.close( in );
+        }
+
+        digest.update( CACHE_VERSION.getBytes( "UTF-8" ) );
+        for ( File sourcePath : sourcePaths )
+        {
+            digest.update( ( '\n' + PathUtil.path( sourcePath ) ).getBytes( "UTF-8" ) );
+        }
+
+        StringBuilder hex = new StringBuilder();
+        for ( byte b : digest.digest() )
+        {
+            hex.append( Character.forDigit( ( b >> 4 ) & 0xF, 16 ) ).append( Character.forDigit( b & 0xF, 16 ) );
+        }
+        return hex.toString();
+    }
+
+    private static Map<String, List<Integer>> readLines( File file )
+        throws IOException
+    {
+        Map<String, List<Integer>> lines = new LinkedHashMap<String, List<Integer>>();
+        BufferedReader reader = new BufferedReader( new InputStreamReader( new FileInputStream( file ), "UTF-8" ) );
+        try
+        {
+            String line;
+            while ( ( line = reader.readLine() ) != null )
+            {
+                int tab = line.lastIndexOf( '\t' );
+                if ( tab == -1 )
+                {
+                    throw new IOException( "Invalid instrumentation cache " + file + ": " + line );
+                }
+
+                List<Integer> fileLines = new ArrayList<Integer>();
+                for ( String number : line.substring( tab + 1 ).split( "," ) )
                 {
-                    getLogger().debug( "Instrumenting " + ApparatUtil.toClassname( file ) + ":" + line );
+                    if ( number.length() != 0 )
+                    {
+                        fileLines.add( Integer.valueOf( number ) );
+                    }
                 }
-            } );
+                lines.put( line.substring( 0, tab ), fileLines );
+            }
         }
-        c.run();
+        catch ( NumberFormatException e )
+        {
+            throw new IOException( "Invalid instrumentation cache " + file + ": " + e.getMessage() );
+        }
+        finally
+        {
+            IOUtil.close( reader );
+        }
+        return lines;
+    }
 
+    private static void writeLines( File file, Map<String, List<Integer>> lines )
+        throws IOException
+    {
+        BufferedWriter writer =
+            new BufferedWriter( new OutputStreamWriter( new FileOutputStream( file ), "UTF-8" ) );
+        try
+        {
+            for ( Map.Entry<String, List<Integer>> entry : lines.entrySet() )
+            {
+                writer.write( entry.getKey() );
+                writer.write( '\t' );
+                for ( int i = 0; i < entry.getValue().size(); i++ )
+                {
+                    if ( i != 0 )
+                    {
+                        writer.write( ',' );
+                    }
+                    writer.write( entry.getValue().get( i ).toString() );
+                }
+                writer.newLine();
+            }
+        }
+        finally
+        {
+            IOUtil.close( writer );
+        }
     }
     
     @Override
-    public void setExcludes(String[] value) {
-    	this.excludes = null;
-    	if ( value != null )
-    	{
-    		excludes = new String[value.length];
-    		for ( int i=0; i<excludes.length; i++)
-    		{
-    			excludes[i] = normalizePattern(value[i]);
-    			getLogger().debug("exclusion added " + excludes[i]);
-    		}
-    	}	
+    public void setExcludes( String[] value )
+    {
+        this.excludes = value == null || value.length == 0 ? null : new ExclusionMatcher( value );
+        if ( excludes != null && getLogger().isDebugEnabled() )
+        {
+            getLogger().debug( "Coverage exclusions " + Arrays.toString( value ) );
+        }
     }
-    
+
     protected boolean isExcluded( String file )
     {
-    	getLogger().debug("isExcluded " + file + "?");
-    	if ( excludes != null )
-    	{
-	    	for ( String exclude : excludes)
-	    	{
-	    		//replace ; with / because file with be in the form
-	    		//fullpath of folder;ClassName.as (or .mxml)
-	    		if ( SelectorUtils.matchPath(exclude, file.replace(';', File.separatorChar)) ) {
-	    			return true;
-	    		}
-	    	}
-    	}
-    	
-    	return false;
-    }
-
-    protected abstract CoverageObserver getInstrumentationObserver();
-    
-    /**
-     * Taken from Ant DirectoryScanner.java
-     * All '/' and '\' characters are replaced by
-     * <code>File.separatorChar</code>, so the separator used need not
-     * match <code>File.separatorChar</codoe>.
-     * 
-     * <p> When a pattern ends with a '/' or '\', "**" is appended.
-     */
-    private String normalizePattern( String p )
+        // file is in the form fullpath of folder;ClassName.as (or .mxml)
+        return excludes != null && excludes.isExcluded( file.replace( ';', File.separatorChar ) );
+    }
+
+    public void addResult( String file, Integer[] touchs )
+    {
+        int[] lines = new int[touchs.length];
+        for ( int i = 0; i < touchs.length; i++ )
+        {
+            lines[i] = touchs[i];
+        }
+        addResult( file, lines, lines.length );
+    }
+
+    public void addResult( String file, int[] touchs, int length )
+    {
+        coverageData.touch( file, touchs, length );
+    }
+
+    public CoverageData getCoverageData()
     {
-    	String pattern = p.replace('/', File.separatorChar)
-    			.replace('\\', File.separatorChar);
-    	if ( pattern.endsWith( File.separator ) ) {
-    		pattern += "**";
-    	}
-    	
-    	return pattern;
+        return coverageData;
     }
+
+    public void addCoverageData( CoverageData data )
+    {
+        coverageData.merge( data );
+    }
+
 }
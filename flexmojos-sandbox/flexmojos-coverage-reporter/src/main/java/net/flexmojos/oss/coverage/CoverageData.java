@@ -0,0 +1,103 @@
+/**
+ * Flexmojos is a set of maven goals to allow maven users to compile, optimize and test Flex SWF, Flex SWC, Air SWF and Air SWC.
+ * Copyright (C) 2008-2012  Marvin Froeder <marvin@flexmojos.net>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.flexmojos.oss.coverage;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Coverage collected during a test run. Hits are accumulated on primitive arrays and only converted to the report
+ * backend model once, when the report is generated.
+ */
+public class CoverageData
+{
+
+    private final Map<String, FileCoverage> files = new HashMap<String, FileCoverage>();
+
+    /**
+     * The last file looked up, test suites usually report several lines of the same file in a row
+     */
+    private FileCoverage last;
+
+    private FileCoverage get( String file )
+    {
+        FileCoverage coverage = last;
+        if ( coverage != null && coverage.getFile().equals( file ) )
+        {
+            return coverage;
+        }
+
+        coverage = files.get( file );
+        if ( coverage == null )
+        {
+            coverage = new FileCoverage( file );
+            files.put( file, coverage );
+        }
+        last = coverage;
+        return coverage;
+    }
+
+    public synchronized void addLine( String file, int line )
+    {
+        get( file ).addLine( line );
+    }
+
+    /**
+     * @param touchs the touched lines, a line may show up more than once
+     * @param length how many entries of touchs are in use
+     */
+    public synchronized void touch( String file, int[] touchs, int length )
+    {
+        FileCoverage coverage = get( file );
+        for ( int i = 0; i < length; i++ )
+        {
+            coverage.touch( touchs[i], 1 );
+        }
+    }
+
+    public synchronized void merge( FileCoverage other )
+    {
+        get( other.getFile() ).merge( other );
+    }
+
+    public void merge( CoverageData other )
+    {
+        for ( FileCoverage file : other.getFiles() )
+        {
+            merge( file );
+        }
+    }
+
+    public synchronized FileCoverage getFile( String file )
+    {
+        return files.get( file );
+    }
+
+    public synchronized Collection<FileCoverage> getFiles()
+    {
+        return new ArrayList<FileCoverage>( files.values() );
+    }
+
+    public synchronized boolean isEmpty()
+    {
+        return files.isEmpty();
+    }
+
+}
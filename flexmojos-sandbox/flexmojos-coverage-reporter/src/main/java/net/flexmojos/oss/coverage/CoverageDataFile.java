@@ -0,0 +1,257 @@
+/**
+ * Flexmojos is a set of maven goals to allow maven users to compile, optimize and test Flex SWF, Flex SWC, Air SWF and Air SWC.
+ * Copyright (C) 2008-2012  Marvin Froeder <marvin@flexmojos.net>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.flexmojos.oss.coverage;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+
+import org.codehaus.plexus.util.IOUtil;
+
+/**
+ * Compact binary form of {@link CoverageData}. Each write appends a self contained segment holding, for every source
+ * file, its apparat name (which maps it back to the source root), the instrumented lines and the line hits. Reading
+ * merges all segments, so several test swfs, shards or modules can be combined without running the tests again.
+ */
+public class CoverageDataFile
+{
+
+    /**
+     * Name of the coverage data file on the coverage data directory
+     */
+    public static final String NAME = "coverage.fmcov";
+
+    private static final int MAGIC = 0x464d4356;
+
+    private static final int VERSION = 1;
+
+    /**
+     * Higher line numbers mean a corrupt file, and would allocate huge hit arrays
+     */
+    private static final int MAX_LINE = 1 << 22;
+
+    private CoverageDataFile()
+    {
+    }
+
+    /**
+     * @param append true to add the data to the existing file, false to replace it
+     */
+    public static void write( CoverageData data, File file, boolean append )
+        throws IOException
+    {
+        file.getParentFile().mkdirs();
+
+        Collection<FileCoverage> files = data.getFiles();
+        DataOutputStream out =
+            new DataOutputStream( new BufferedOutputStream( new FileOutputStream( file, append ) ) );
+        try
+        {
+            out.writeInt( MAGIC );
+            out.writeInt( VERSION );
+            out.writeInt( files.size() );
+            for ( FileCoverage coverage : files )
+            {
+                out.writeUTF( coverage.getFile() );
+
+                writeVarint( out, coverage.getLineCount() );
+                int previous = 0;
+                for ( int line = coverage.nextLine( 0 ); line != -1; line = coverage.nextLine( line + 1 ) )
+                {
+                    writeVarint( out, line - previous );
+                    previous = line;
+                }
+
+                int touched = 0;
+                for ( int line = 0; line < coverage.getHitsLength(); line++ )
+                {
+                    if ( coverage.getHits( line ) != 0 )
+                    {
+                        touched++;
+                    }
+                }
+                writeVarint( out, touched );
+                previous = 0;
+                for ( int line = 0; line < coverage.getHitsLength(); line++ )
+                {
+                    int hits = coverage.getHits( line );
+                    if ( hits != 0 )
+                    {
+                        writeVarint( out, line - previous );
+                        writeVarint( out, hits );
+                        previous = line;
+                    }
+                }
+            }
+        }
+        finally
+        {
+            IOUtil.close( out );
+        }
+    }
+
+    /**
+     * @return all segments of the file merged, empty when the file doesn't exist
+     */
+    public static CoverageData read( File file )
+        throws IOException
+    {
+        CoverageData data = new CoverageData();
+        read( file, data );
+        return data;
+    }
+
+    /**
+     * Merge several coverage data files, missing files are ignored
+     */
+    public static CoverageData merge( List<File> files )
+        throws IOException
+    {
+        CoverageData data = new CoverageData();
+        for ( File file : files )
+        {
+            read( file, data );
+        }
+        return data;
+    }
+
+    private static void read( File file, CoverageData data )
+        throws IOException
+    {
+        if ( !file.isFile() )
+        {
+            return;
+        }
+
+        DataInputStream in = new DataInputStream( new BufferedInputStream( new FileInputStream( file ) ) );
+        try
+        {
+            int magic;
+            while ( ( magic = readSegmentStart( in ) ) != -1 )
+            {
+                if ( magic != MAGIC )
+                {
+                    throw new IOException( "Invalid coverage data file " + file );
+                }
+                int version = in.readInt();
+                if ( version != VERSION )
+                {
+                    throw new IOException( "Unsupported coverage data version " + version + " on " + file );
+                }
+
+                int count = in.readInt();
+                if ( count < 0 )
+                {
+                    throw new IOException( "Malformed coverage data on " + file );
+                }
+                for ( int i = 0; i < count; i++ )
+                {
+                    FileCoverage coverage = new FileCoverage( in.readUTF() );
+
+                    int lines = readVarint( in );
+                    int line = 0;
+                    for ( int j = 0; j < lines; j++ )
+                    {
+                        line = nextLine( in, line, file );
+                        coverage.addLine( line );
+                    }
+
+                    int touched = readVarint( in );
+                    line = 0;
+                    for ( int j = 0; j < touched; j++ )
+                    {
+                        line = nextLine( in, line, file );
+                        coverage.touch( line, readVarint( in ) );
+                    }
+
+                    data.merge( coverage );
+                }
+            }
+        }
+        catch ( EOFException e )
+        {
+            throw new IOException( "Truncated coverage data file " + file );
+        }
+        finally
+        {
+            IOUtil.close( in );
+        }
+    }
+
+    private static int nextLine( DataInputStream in, int line, File file )
+        throws IOException
+    {
+        int delta = readVarint( in );
+        if ( delta < 0 || delta > MAX_LINE - line )
+        {
+            throw new IOException( "Malformed coverage data on " + file );
+        }
+        return line + delta;
+    }
+
+    /**
+     * @return the segment magic number, -1 at the end of the file
+     */
+    private static int readSegmentStart( DataInputStream in )
+        throws IOException
+    {
+        int first = in.read();
+        if ( first == -1 )
+        {
+            return -1;
+        }
+        return ( first << 24 ) | ( in.readUnsignedByte() << 16 ) | ( in.readUnsignedByte() << 8 )
+            | in.readUnsignedByte();
+    }
+
+    private static void writeVarint( DataOutputStream out, int value )
+        throws IOException
+    {
+        while ( ( value & ~0x7F ) != 0 )
+        {
+            out.writeByte( ( value & 0x7F ) | 0x80 );
+            value >>>= 7;
+        }
+        out.writeByte( value );
+    }
+
+    private static int readVarint( DataInputStream in )
+        throws IOException
+    {
+        int value = 0;
+        for ( int shift = 0; shift < 32; shift += 7 )
+        {
+            int b = in.readUnsignedByte();
+            value |= ( b & 0x7F ) << shift;
+            if ( ( b & 0x80 ) == 0 )
+            {
+                return value;
+            }
+        }
+        throw new IOException( "Malformed coverage data" );
+    }
+
+}
@@ -18,17 +18,45 @@
 package net.flexmojos.oss.coverage;
 
 import java.io.File;
+import java.util.List;
 
 public interface CoverageReporter
 {
 
     void instrument( File swf, File... sourcePaths );
+
+    /**
+     * Instrument several swfs at once, independent swfs are instrumented concurrently
+     */
+    void instrument( List<File> swfs, File... sourcePaths );
+
+    /**
+     * Where instrumented swfs are kept, so an unchanged swf isn't instrumented again. Null disables the cache.
+     */
+    void setCacheDirectory( File cacheDirectory );
     
     void generateReport( CoverageReportRequest request )
         throws CoverageReportException;
 
     void addResult( String classname, Integer[] touchs );
+
+    /**
+     * Same as {@link #addResult(String, Integer[])} without boxing the lines
+     *
+     * @param length how many entries of touchs are in use
+     */
+    void addResult( String classname, int[] touchs, int length );
     
     void setExcludes( String[] excludes );
 
+    /**
+     * @return the instrumented lines and hits collected so far
+     */
+    CoverageData getCoverageData();
+
+    /**
+     * Add coverage collected elsewhere, like another module or a previous run, to this report
+     */
+    void addCoverageData( CoverageData data );
+
 }
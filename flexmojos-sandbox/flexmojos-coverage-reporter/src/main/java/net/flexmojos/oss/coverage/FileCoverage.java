@@ -0,0 +1,114 @@
+/**
+ * Flexmojos is a set of maven goals to allow maven users to compile, optimize and test Flex SWF, Flex SWC, Air SWF and Air SWC.
+ * Copyright (C) 2008-2012  Marvin Froeder <marvin@flexmojos.net>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.flexmojos.oss.coverage;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Instrumented lines and hit counts of a single source file, indexed by line number.
+ */
+public class FileCoverage
+{
+
+    private static final int[] NO_HITS = new int[0];
+
+    private final String file;
+
+    private final BitSet lines = new BitSet();
+
+    private int[] hits = NO_HITS;
+
+    public FileCoverage( String file )
+    {
+        this.file = file;
+    }
+
+    /**
+     * @return the apparat file name, source path root, package and file separated by <code>;</code>
+     */
+    public String getFile()
+    {
+        return file;
+    }
+
+    public void addLine( int line )
+    {
+        if ( line >= 0 )
+        {
+            lines.set( line );
+        }
+    }
+
+    public void touch( int line, int count )
+    {
+        if ( line < 0 )
+        {
+            return;
+        }
+        if ( line >= hits.length )
+        {
+            hits = Arrays.copyOf( hits, Math.max( line + 1, hits.length * 2 ) );
+        }
+        hits[line] += count;
+    }
+
+    public boolean isInstrumented( int line )
+    {
+        return lines.get( line );
+    }
+
+    /**
+     * @return the next instrumented line starting from the given one, -1 when there is none
+     */
+    public int nextLine( int from )
+    {
+        return lines.nextSetBit( from );
+    }
+
+    public int getLineCount()
+    {
+        return lines.cardinality();
+    }
+
+    public int getHits( int line )
+    {
+        return line < hits.length ? hits[line] : 0;
+    }
+
+    /**
+     * @return one past the highest line touched so far
+     */
+    public int getHitsLength()
+    {
+        return hits.length;
+    }
+
+    public void merge( FileCoverage other )
+    {
+        lines.or( other.lines );
+        for ( int line = other.hits.length - 1; line >= 0; line-- )
+        {
+            if ( other.hits[line] != 0 )
+            {
+                touch( line, other.hits[line] );
+            }
+        }
+    }
+
+}
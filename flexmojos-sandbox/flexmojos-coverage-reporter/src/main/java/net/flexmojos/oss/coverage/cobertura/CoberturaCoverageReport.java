@@ -18,7 +18,19 @@
 package net.flexmojos.oss.coverage.cobertura;
 
 import java.io.File;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import net.sourceforge.cobertura.coveragedata.ClassData;
 import net.sourceforge.cobertura.coveragedata.CoverageDataFileHandler;
@@ -31,48 +43,78 @@ import net.sourceforge.cobertura.util.FileFinder;
 import net.sourceforge.cobertura.util.Source;
 
 import org.codehaus.plexus.component.annotations.Component;
-import org.codehaus.plexus.personality.plexus.lifecycle.phase.Initializable;
-import org.codehaus.plexus.personality.plexus.lifecycle.phase.InitializationException;
+import org.codehaus.plexus.util.FileUtils;
 import org.codehaus.plexus.util.StringUtils;
 import net.flexmojos.oss.coverage.AbstractCoverageReporter;
 import net.flexmojos.oss.coverage.CoverageReportException;
 import net.flexmojos.oss.coverage.CoverageReportRequest;
 import net.flexmojos.oss.coverage.CoverageReporter;
+import net.flexmojos.oss.coverage.FileCoverage;
 import net.flexmojos.oss.coverage.util.ApparatUtil;
 import net.flexmojos.oss.util.PathUtil;
 
-import apparat.tools.coverage.CoverageObserver;
-
 @Component( role = CoverageReporter.class, hint = "cobertura", instantiationStrategy = "per-lookup" )
 public class CoberturaCoverageReport
     extends AbstractCoverageReporter
-    implements CoverageReporter, Initializable
+    implements CoverageReporter
 {
 
-    private ProjectData coverageProjectData;
+    /**
+     * Changes whenever the rendered reports do
+     */
+    private static final String REPORT_VERSION = "1";
 
-    public void initialize()
-        throws InitializationException
+    /**
+     * @return the collected coverage of the files not excluded, sorted by name. Nothing is collected while the report
+     *         is generated, so it doesn't change while the formats are rendered
+     */
+    private List<FileCoverage> snapshot()
     {
-        this.coverageProjectData = new ProjectData();
+        List<FileCoverage> files = new ArrayList<FileCoverage>();
+        for ( FileCoverage file : coverageData.getFiles() )
+        {
+            if ( isExcluded( file.getFile() ) )
+            {
+                getLogger().debug( "ignoring " + file.getFile() );
+                continue;
+            }
+            files.add( file );
+        }
+        Collections.sort( files, new Comparator<FileCoverage>()
+        {
+            public int compare( FileCoverage o1, FileCoverage o2 )
+            {
+                return o1.getFile().compareTo( o2.getFile() );
+            }
+        } );
+        return files;
     }
 
-    @Override
-    protected CoverageObserver getInstrumentationObserver()
+    /**
+     * Build the cobertura model of the coverage, each format gets a model of its own so they can be rendered at the
+     * same time
+     */
+    private ProjectData createProjectData( List<FileCoverage> files )
     {
-        return new CoverageObserver()
+        ProjectData projectData = new ProjectData();
+        for ( FileCoverage file : files )
         {
-            public void instrument( String file, int line )
+            ClassData classData = projectData.getOrCreateClassData( ApparatUtil.toClassname( file.getFile() ) );
+            classData.setSourceFileName( getSourceFilePath( file.getFile() ) );
+            for ( int line = file.nextLine( 0 ); line != -1; line = file.nextLine( line + 1 ) )
             {
-            	if ( isExcluded( file ) ) {
-            		getLogger().debug("ignoring " + file);
-            	} else {
-	                ClassData classData = coverageProjectData.getOrCreateClassData( ApparatUtil.toClassname( file ) );
-	                classData.setSourceFileName( getSourceFilePath( file ) );
-	                classData.addLine( line, null, null );
-            	}
+                classData.addLine( line, null, null );
             }
-        };
+            for ( int line = 0; line < file.getHitsLength(); line++ )
+            {
+                int hits = file.getHits( line );
+                if ( hits != 0 )
+                {
+                    classData.touch( line, hits );
+                }
+            }
+        }
+        return projectData;
     }
     
     private String getSourceFilePath( String apparatClassname )
@@ -84,11 +126,8 @@ public class CoberturaCoverageReport
         return cn;
     }
 
-    public void generateReport( CoverageReportRequest request )
-        throws CoverageReportException
+    private FileFinder createFinder( List<File> sourcePaths )
     {
-        File dataDirectory = request.getDataDirectory();
-
         FileFinder finder = new FileFinder()
         {
             public Source getSource( String fileName )
@@ -103,61 +142,209 @@ public class CoberturaCoverageReport
             }
         };
 
-        List<File> sp = request.getSourcePaths();
-        for ( File dir : sp )
+        for ( File dir : sourcePaths )
         {
             finder.addSourceDirectory( PathUtil.path( dir ) );
         }
+        return finder;
+    }
 
-        ComplexityCalculator complexity = new ZeroComplexityCalculator( finder );
-        try
+    public void generateReport( final CoverageReportRequest request )
+        throws CoverageReportException
+    {
+        final File dataDirectory = request.getDataDirectory();
+        final File coverageReportDestinationDir = request.getReportDestinationDir();
+        coverageReportDestinationDir.mkdirs();
+
+        String encoding = request.getReportEncoding();
+        if ( StringUtils.isEmpty( encoding ) )
         {
-            File coverageReportDestinationDir = request.getReportDestinationDir();
-            coverageReportDestinationDir.mkdirs();
+            encoding = "UTF-8";
+        }
+        final String coverageReportEncoding = encoding;
+
+        final List<FileCoverage> files = snapshot();
+        final String fingerprint = fingerprint( files, coverageReportEncoding );
 
-            List<String> format = request.getFormats();
-            if ( format.contains( "html" ) )
+        List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+        for ( final String format : new LinkedHashSet<String>( request.getFormats() ) )
+        {
+            final File output = getOutput( coverageReportDestinationDir, format );
+            if ( output == null )
+            {
+                continue;
+            }
+
+            final File fingerprintFile = new File( coverageReportDestinationDir, ".flexmojos-" + format + ".sha1" );
+            if ( output.exists() && fingerprint.equals( readFingerprint( fingerprintFile ) ) )
             {
-                String coverageReportEncoding = request.getReportEncoding();
-                if ( StringUtils.isEmpty( coverageReportEncoding ) )
+                getLogger().info( "Coverage " + format + " report is up to date" );
+                continue;
+            }
+
+            tasks.add( new Callable<Void>()
+            {
+                public Void call()
+                    throws Exception
                 {
-                    coverageReportEncoding = "UTF-8";
+                    fingerprintFile.delete();
+
+                    ProjectData projectData = createProjectData( files );
+                    FileFinder finder = createFinder( request.getSourcePaths() );
+                    ComplexityCalculator complexity = new ZeroComplexityCalculator( finder );
+                    if ( "html".equals( format ) )
+                    {
+                        new HTMLReport( projectData, coverageReportDestinationDir, finder, complexity,
+                                        coverageReportEncoding );
+                    }
+                    else if ( "xml".equals( format ) )
+                    {
+                        new XMLReport( projectData, coverageReportDestinationDir, finder, complexity );
+                    }
+                    else
+                    {
+                        new SummaryXMLReport( projectData, coverageReportDestinationDir, finder, complexity );
+                    }
+
+                    FileUtils.fileWrite( fingerprintFile.getAbsolutePath(), "UTF-8", fingerprint );
+                    return null;
                 }
-                new HTMLReport( coverageProjectData, coverageReportDestinationDir, finder, complexity,
-                                coverageReportEncoding );
-            }
-            
-            if ( format.contains( "xml" ) )
+            } );
+        }
+
+        tasks.add( new Callable<Void>()
+        {
+            public Void call()
             {
-                new XMLReport( coverageProjectData, coverageReportDestinationDir, finder, complexity );
+                CoverageDataFileHandler.saveCoverageData( createProjectData( files ),
+                                                          new File( dataDirectory, "cobertura.ser" ) );
+                return null;
             }
-            
-            if ( format.contains( "summaryXml" ) )
+        } );
+
+        ExecutorService executor = Executors.newFixedThreadPool( tasks.size() );
+        try
+        {
+            for ( Future<Void> result : executor.invokeAll( tasks ) )
             {
-                new SummaryXMLReport( coverageProjectData, coverageReportDestinationDir, finder, complexity );
+                result.get();
             }
         }
-        catch ( Exception e )
+        catch ( InterruptedException e )
         {
-            throw new CoverageReportException( "Unable to write coverage report", e );
+            Thread.currentThread().interrupt();
+            throw new CoverageReportException( "Interrupted while writing coverage report", e );
         }
+        catch ( ExecutionException e )
+        {
+            throw new CoverageReportException( "Unable to write coverage report", e.getCause() );
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
 
-        CoverageDataFileHandler.saveCoverageData( coverageProjectData, new File( dataDirectory, "cobertura.ser" ) );
+    /**
+     * @return the file each format writes first, null for unknown formats
+     */
+    private static File getOutput( File reportDirectory, String format )
+    {
+        if ( "html".equals( format ) )
+        {
+            return new File( reportDirectory, "index.html" );
+        }
+        if ( "xml".equals( format ) )
+        {
+            return new File( reportDirectory, "coverage.xml" );
+        }
+        if ( "summaryXml".equals( format ) )
+        {
+            return new File( reportDirectory, "coverage-summary.xml" );
+        }
+        return null;
+    }
+
+    private static String readFingerprint( File file )
+    {
+        if ( !file.isFile() )
+        {
+            return null;
+        }
+        try
+        {
+            return FileUtils.fileRead( file, "UTF-8" );
+        }
+        catch ( IOException e )
+        {
+            return null;
+        }
+    }
+
+    /**
+     * Digest of everything a report is made of: the coverage of each file and the state of its source
+     */
+    private static String fingerprint( List<FileCoverage> files, String encoding )
+    {
+        MessageDigest digest;
+        try
+        {
+            digest = MessageDigest.getInstance( "SHA-1" );
+        }
+        catch ( NoSuchAlgorithmException e )
+        {
+            throw new IllegalStateException( e );
+        }
+
+        StringBuilder data = new StringBuilder();
+        data.append( REPORT_VERSION ).append( '\n' ).append( encoding ).append( '\n' );
+        for ( FileCoverage file : files )
+        {
+            // apparat names are the source root, the package folder and the file separated by ;
+            File source = new File( file.getFile().replace( ';', File.separatorChar ) );
+            data.append( file.getFile() ).append( '\t' ).append( source.lastModified() ).append( '\t' );
+            data.append( source.length() ).append( '\t' );
+            for ( int line = file.nextLine( 0 ); line != -1; line = file.nextLine( line + 1 ) )
+            {
+                data.append( line ).append( ',' );
+            }
+            data.append( '\t' );
+            for ( int line = 0; line < file.getHitsLength(); line++ )
+            {
+                int hits = file.getHits( line );
+                if ( hits != 0 )
+                {
+                    data.append( line ).append( '=' ).append( hits ).append( ',' );
+                }
+            }
+            data.append( '\n' );
+
+            if ( data.length() > 8192 )
+            {
+                update( digest, data );
+            }
+        }
+        update( digest, data );
+
+        StringBuilder hex = new StringBuilder();
+        for ( byte b : digest.digest() )
+        {
+            hex.append( Character.forDigit( ( b >> 4 ) & 0xF, 16 ) ).append( Character.forDigit( b & 0xF, 16 ) );
+        }
+        return hex.toString();
     }
 
-    public void addResult( String file, Integer[] touchs )
+    private static void update( MessageDigest digest, StringBuilder data )
     {
-    	getLogger().debug("addresult " + file);
-    	
-    	if ( isExcluded( file ) ) {
-    		getLogger().debug("ignoring " + file + " from touch");
-    	} else {
-	        ClassData classData = this.coverageProjectData.getOrCreateClassData( ApparatUtil.toClassname( file ) );
-	        for ( Integer touch : touchs )
-	        {
-	            classData.touch( touch, 1 );
-	        }
-    	}
+        try
+        {
+            digest.update( data.toString().getBytes( "UTF-8" ) );
+        }
+        catch ( IOException e )
+        {
+            throw new IllegalStateException( e );
+        }
+        data.setLength( 0 );
     }
 
 }
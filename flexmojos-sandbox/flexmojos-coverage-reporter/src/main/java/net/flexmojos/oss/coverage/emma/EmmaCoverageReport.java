@@ -26,11 +26,10 @@ import net.flexmojos.oss.coverage.AbstractCoverageReporter;
 import net.flexmojos.oss.coverage.CoverageReportException;
 import net.flexmojos.oss.coverage.CoverageReportRequest;
 import net.flexmojos.oss.coverage.CoverageReporter;
+import net.flexmojos.oss.coverage.FileCoverage;
 import net.flexmojos.oss.coverage.util.ApparatUtil;
 import net.flexmojos.oss.util.PathUtil;
 
-import apparat.tools.coverage.CoverageObserver;
-
 import com.vladium.emma.IAppConstants;
 import com.vladium.emma.data.DataFactory;
 import com.vladium.emma.data.ICoverageData;
@@ -51,29 +50,35 @@ public class EmmaCoverageReport
         this.cdata = DataFactory.newCoverageData();
     }
 
-    @Override
-    protected CoverageObserver getInstrumentationObserver()
+    /**
+     * Only the instrumented lines are known to emma, hits aren't recorded
+     */
+    private void updateCoverageData()
     {
-        return new CoverageObserver()
+        for ( FileCoverage file : coverageData.getFiles() )
         {
-            public void instrument( String file, int line )
+            if ( isExcluded( file.getFile() ) )
             {
-            	if ( !isExcluded( file ) )
-            	{
-	                String classname = ApparatUtil.toClassname( file );
-	                synchronized ( cdata.lock() )
-	                {
-	                    boolean[][] cover = new boolean[0][0];
-	                    cdata.addClass( cover, classname, line );
-	                }
-            	}
+                continue;
             }
-        };
+
+            String classname = ApparatUtil.toClassname( file.getFile() );
+            synchronized ( cdata.lock() )
+            {
+                for ( int line = file.nextLine( 0 ); line != -1; line = file.nextLine( line + 1 ) )
+                {
+                    boolean[][] cover = new boolean[0][0];
+                    cdata.addClass( cover, classname, line );
+                }
+            }
+        }
     }
 
     public void generateReport( CoverageReportRequest request )
         throws CoverageReportException
     {
+        updateCoverageData();
+
         File dataDirectory = request.getDataDirectory();
         File reportDirectory = request.getReportDestinationDir();
 
@@ -105,14 +110,4 @@ public class EmmaCoverageReport
         reporter.run();
     }
 
-    public void addResult( String file, Integer[] touchs )
-    {
-        // mdata.ClassData classData =
-        // this.coverageProjectData.getOrCreateClassData( ApparatUtil.toClassname( classname ) );
-        // for ( Integer touch : touchs )
-        // {
-        // classData.touch( touch );
-        // }
-    }
-
 }
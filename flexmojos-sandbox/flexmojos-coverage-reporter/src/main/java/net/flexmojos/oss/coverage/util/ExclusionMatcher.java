@@ -0,0 +1,251 @@
+/**
+ * Flexmojos is a set of maven goals to allow maven users to compile, optimize and test Flex SWF, Flex SWC, Air SWF and Air SWC.
+ * Copyright (C) 2008-2012  Marvin Froeder <marvin@flexmojos.net>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.flexmojos.oss.coverage.util;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+import org.codehaus.plexus.util.SelectorUtils;
+
+/**
+ * Ant style exclusion patterns compiled once, matching like {@link SelectorUtils#matchPath(String, String)}. Patterns
+ * are indexed on a trie by their leading literal folders, so only the ones sharing the path of a file are evaluated,
+ * and the decision for each file is remembered.
+ */
+public class ExclusionMatcher
+{
+
+    private static final String REGEX_PREFIX = "%regex[";
+
+    private static final String ANT_PREFIX = "%ant[";
+
+    private static final String SEGMENT = "[^/]+";
+
+    private static class Node
+    {
+
+        private final Map<String, Node> children = new HashMap<String, Node>();
+
+        private final List<Pattern> patterns = new ArrayList<Pattern>();
+
+        Node child( String segment )
+        {
+            Node child = children.get( segment );
+            if ( child == null )
+            {
+                child = new Node();
+                children.put( segment, child );
+            }
+            return child;
+        }
+
+    }
+
+    private final Node absoluteRoot = new Node();
+
+    private final Node relativeRoot = new Node();
+
+    /**
+     * <code>%regex[]</code> patterns, left to plexus
+     */
+    private final List<String> regexes = new ArrayList<String>();
+
+    private final Map<String, Boolean> decisions = new ConcurrentHashMap<String, Boolean>();
+
+    /**
+     * @param patterns ant patterns, using either '/' or '\' as separator
+     */
+    public ExclusionMatcher( String... patterns )
+    {
+        for ( String pattern : patterns )
+        {
+            add( pattern );
+        }
+    }
+
+    private void add( String pattern )
+    {
+        if ( pattern.startsWith( REGEX_PREFIX ) && pattern.endsWith( "]" ) )
+        {
+            regexes.add( pattern );
+            return;
+        }
+        if ( pattern.startsWith( ANT_PREFIX ) && pattern.endsWith( "]" ) )
+        {
+            pattern = pattern.substring( ANT_PREFIX.length(), pattern.length() - 1 );
+        }
+
+        // like SelectorUtils, both separators are accepted and a trailing one is ignored
+        pattern = pattern.replace( '\\', '/' );
+
+        boolean absolute = pattern.startsWith( "/" );
+        String[] tokens = tokenize( pattern );
+
+        Node node = absolute ? absoluteRoot : relativeRoot;
+        StringBuilder regex = new StringBuilder();
+        if ( absolute )
+        {
+            regex.append( '/' );
+        }
+
+        boolean literal = true;
+        boolean emitted = false;
+        for ( int i = 0; i < tokens.length; i++ )
+        {
+            String token = tokens[i];
+            if ( "**".equals( token ) )
+            {
+                literal = false;
+                if ( emitted )
+                {
+                    regex.append( "(?:/" ).append( SEGMENT ).append( ")*" );
+                }
+                else if ( i + 1 < tokens.length )
+                {
+                    regex.append( "(?:" ).append( SEGMENT ).append( "/)*" );
+                }
+                else
+                {
+                    regex.append( "(?:" ).append( SEGMENT ).append( "(?:/" ).append( SEGMENT ).append( ")*)?" );
+                }
+                continue;
+            }
+
+            if ( emitted )
+            {
+                regex.append( '/' );
+            }
+            emitted = true;
+
+            if ( literal && token.indexOf( '*' ) == -1 && token.indexOf( '?' ) == -1 )
+            {
+                node = node.child( token );
+                regex.append( Pattern.quote( token ) );
+            }
+            else
+            {
+                literal = false;
+                appendGlob( regex, token );
+            }
+        }
+
+        node.patterns.add( Pattern.compile( regex.toString() ) );
+    }
+
+    private static void appendGlob( StringBuilder regex, String token )
+    {
+        int start = 0;
+        for ( int i = 0; i < token.length(); i++ )
+        {
+            char c = token.charAt( i );
+            if ( c == '*' || c == '?' )
+            {
+                if ( i > start )
+                {
+                    regex.append( Pattern.quote( token.substring( start, i ) ) );
+                }
+                regex.append( c == '*' ? "[^/]*" : "[^/]" );
+                start = i + 1;
+            }
+        }
+        if ( start < token.length() )
+        {
+            regex.append( Pattern.quote( token.substring( start ) ) );
+        }
+    }
+
+    private static String[] tokenize( String path )
+    {
+        List<String> tokens = new ArrayList<String>();
+        int start = 0;
+        for ( int i = 0; i <= path.length(); i++ )
+        {
+            if ( i == path.length() || path.charAt( i ) == '/' )
+            {
+                if ( i > start )
+                {
+                    tokens.add( path.substring( start, i ) );
+                }
+                start = i + 1;
+            }
+        }
+        return tokens.toArray( new String[tokens.size()] );
+    }
+
+    /**
+     * @param file path using either '/' or '\' as separator
+     */
+    public boolean isExcluded( String file )
+    {
+        Boolean excluded = decisions.get( file );
+        if ( excluded == null )
+        {
+            excluded = match( file );
+            decisions.put( file, excluded );
+        }
+        return excluded;
+    }
+
+    private boolean match( String file )
+    {
+        String path = file.replace( '\\', '/' );
+        boolean absolute = path.startsWith( "/" );
+        String[] segments = tokenize( path );
+
+        StringBuilder normalized = new StringBuilder( path.length() );
+        if ( absolute )
+        {
+            normalized.append( '/' );
+        }
+        for ( int i = 0; i < segments.length; i++ )
+        {
+            if ( i > 0 )
+            {
+                normalized.append( '/' );
+            }
+            normalized.append( segments[i] );
+        }
+
+        Node node = absolute ? absoluteRoot : relativeRoot;
+        for ( int i = 0; node != null; i++ )
+        {
+            for ( Pattern pattern : node.patterns )
+            {
+                if ( pattern.matcher( normalized ).matches() )
+                {
+                    return true;
+                }
+            }
+            node = i < segments.length ? node.children.get( segments[i] ) : null;
+        }
+
+        for ( String regex : regexes )
+        {
+            if ( SelectorUtils.matchPath( regex, file ) )
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+}
@@ -0,0 +1,110 @@
+/**
+ * Flexmojos is a set of maven goals to allow maven users to compile, optimize and test Flex SWF, Flex SWC, Air SWF and Air SWC.
+ * Copyright (C) 2008-2012  Marvin Froeder <marvin@flexmojos.net>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.flexmojos.oss.coverage;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.codehaus.plexus.logging.Logger;
+import org.codehaus.plexus.logging.console.ConsoleLogger;
+import org.codehaus.plexus.util.FileUtils;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class AbstractCoverageReporterTest
+{
+
+    private File dir;
+
+    private File cache;
+
+    private File swf;
+
+    @BeforeMethod
+    public void setUp()
+        throws IOException
+    {
+        dir = new File( "./target/coverage-cache" ).getCanonicalFile();
+        FileUtils.deleteDirectory( dir );
+        cache = new File( dir, "cache" );
+        cache.mkdirs();
+
+        swf = new File( dir, "TestRunner.swf" );
+        FileUtils.fileWrite( swf.getAbsolutePath(), "UTF-8", "FWS compiled" );
+    }
+
+    @AfterMethod
+    public void tearDown()
+        throws IOException
+    {
+        FileUtils.deleteDirectory( dir );
+    }
+
+    private AbstractCoverageReporter reporter()
+    {
+        AbstractCoverageReporter reporter = new AbstractCoverageReporter()
+        {
+            public void generateReport( CoverageReportRequest request )
+            {
+            }
+        };
+        reporter.enableLogging( new ConsoleLogger( Logger.LEVEL_DISABLED, "test" ) );
+        reporter.setCacheDirectory( cache );
+        return reporter;
+    }
+
+    /**
+     * Make the cache look like it was written by an older build, so anything not used again gets pruned
+     */
+    private void age()
+    {
+        long old = System.currentTimeMillis() - 60000;
+        for ( File file : cache.listFiles() )
+        {
+            file.setLastModified( old );
+        }
+    }
+
+    @Test
+    public void instrumentPruneInstrument()
+        throws IOException
+    {
+        // instrumented by a previous build, this isn't a real swf so apparat would fail on it
+        String hash = AbstractCoverageReporter.hash( swf );
+        FileUtils.fileWrite( new File( cache, hash + ".swf" ).getAbsolutePath(), "UTF-8", "FWS instrumented" );
+        FileUtils.fileWrite( new File( cache, hash + ".lines" ).getAbsolutePath(), "UTF-8", "/src;Model.as\t3,7\n" );
+        age();
+
+        reporter().instrument( swf );
+        assertEquals( FileUtils.fileRead( swf, "UTF-8" ), "FWS instrumented" );
+        assertTrue( new File( cache, AbstractCoverageReporter.hash( swf ) + ".source" ).isFile() );
+        age();
+
+        // the swf wasn't compiled again, it must not be instrumented twice
+        AbstractCoverageReporter reporter = reporter();
+        reporter.instrument( swf );
+        assertEquals( FileUtils.fileRead( swf, "UTF-8" ), "FWS instrumented" );
+        assertTrue( reporter.getCoverageData().getFile( "/src;Model.as" ).isInstrumented( 7 ) );
+        assertEquals( cache.list().length, 3 );
+    }
+
+}
@@ -0,0 +1,227 @@
+/**
+ * Flexmojos is a set of maven goals to allow maven users to compile, optimize and test Flex SWF, Flex SWC, Air SWF and Air SWC.
+ * Copyright (C) 2008-2012  Marvin Froeder <marvin@flexmojos.net>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.flexmojos.oss.coverage;
+
+import static java.util.Arrays.asList;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import org.codehaus.plexus.util.FileUtils;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class CoverageDataFileTest
+{
+
+    private static final String MODEL = "/src;com/acme;Model.as";
+
+    private static final String VIEW = "/src;com/acme;View.mxml";
+
+    private File dir;
+
+    private File file;
+
+    @BeforeMethod
+    public void setUp()
+        throws IOException
+    {
+        dir = new File( "./target/coverage-data" ).getCanonicalFile();
+        FileUtils.deleteDirectory( dir );
+        file = new File( dir, CoverageDataFile.NAME );
+    }
+
+    @AfterMethod
+    public void tearDown()
+        throws IOException
+    {
+        FileUtils.deleteDirectory( dir );
+    }
+
+    private CoverageData data( String name, int[] lines, int... touchs )
+    {
+        CoverageData data = new CoverageData();
+        for ( int line : lines )
+        {
+            data.addLine( name, line );
+        }
+        data.touch( name, touchs, touchs.length );
+        return data;
+    }
+
+    @Test
+    public void roundTrip()
+        throws IOException
+    {
+        CoverageData data = data( MODEL, new int[] { 3, 7, 200, 70000 }, 3, 3, 70000 );
+        data.merge( data( VIEW, new int[] { 1 } ) );
+        CoverageDataFile.write( data, file, false );
+
+        CoverageData read = CoverageDataFile.read( file );
+        assertEquals( read.getFiles().size(), 2 );
+
+        FileCoverage model = read.getFile( MODEL );
+        assertEquals( model.getLineCount(), 4 );
+        assertTrue( model.isInstrumented( 200 ) );
+        assertTrue( model.isInstrumented( 70000 ) );
+        assertFalse( model.isInstrumented( 4 ) );
+        assertEquals( model.getHits( 3 ), 2 );
+        assertEquals( model.getHits( 7 ), 0 );
+        assertEquals( model.getHits( 70000 ), 1 );
+
+        FileCoverage view = read.getFile( VIEW );
+        assertEquals( view.getLineCount(), 1 );
+        assertEquals( view.getHits( 1 ), 0 );
+    }
+
+    @Test
+    public void appendMergesSegments()
+        throws IOException
+    {
+        CoverageDataFile.write( data( MODEL, new int[] { 3, 7 }, 3 ), file, false );
+        CoverageDataFile.write( data( MODEL, new int[] { 7, 9 }, 3, 7 ), file, true );
+        CoverageDataFile.write( data( VIEW, new int[] { 1 }, 1 ), file, true );
+
+        CoverageData read = CoverageDataFile.read( file );
+        FileCoverage model = read.getFile( MODEL );
+        assertEquals( model.getLineCount(), 3 );
+        assertEquals( model.getHits( 3 ), 2 );
+        assertEquals( model.getHits( 7 ), 1 );
+        assertEquals( model.getHits( 9 ), 0 );
+        assertEquals( read.getFile( VIEW ).getHits( 1 ), 1 );
+    }
+
+    @Test
+    public void writeReplaces()
+        throws IOException
+    {
+        CoverageDataFile.write( data( MODEL, new int[] { 3 }, 3 ), file, false );
+        CoverageDataFile.write( data( VIEW, new int[] { 1 } ), file, false );
+
+        CoverageData read = CoverageDataFile.read( file );
+        assertNull( read.getFile( MODEL ) );
+        assertEquals( read.getFile( VIEW ).getLineCount(), 1 );
+    }
+
+    @Test
+    public void mergeFiles()
+        throws IOException
+    {
+        File other = new File( dir, "other/" + CoverageDataFile.NAME );
+        CoverageDataFile.write( data( MODEL, new int[] { 3 }, 3 ), file, false );
+        CoverageDataFile.write( data( MODEL, new int[] { 3, 4 }, 3, 4 ), other, false );
+
+        CoverageData merged =
+            CoverageDataFile.merge( asList( file, new File( dir, "missing/" + CoverageDataFile.NAME ), other ) );
+        assertEquals( merged.getFile( MODEL ).getLineCount(), 2 );
+        assertEquals( merged.getFile( MODEL ).getHits( 3 ), 2 );
+        assertEquals( merged.getFile( MODEL ).getHits( 4 ), 1 );
+    }
+
+    @Test
+    public void missingFileIsEmpty()
+        throws IOException
+    {
+        assertTrue( CoverageDataFile.read( file ).isEmpty() );
+    }
+
+    @Test( expectedExceptions = IOException.class )
+    public void truncated()
+        throws IOException
+    {
+        CoverageDataFile.write( data( MODEL, new int[] { 3, 7 }, 3 ), file, false );
+        RandomAccessFile raf = new RandomAccessFile( file, "rw" );
+        try
+        {
+            raf.setLength( raf.length() - 2 );
+        }
+        finally
+        {
+            raf.close();
+        }
+
+        CoverageDataFile.read( file );
+    }
+
+    @Test( expectedExceptions = IOException.class )
+    public void truncatedSegmentStart()
+        throws IOException
+    {
+        CoverageDataFile.write( data( MODEL, new int[] { 3 } ), file, false );
+        FileUtils.fileAppend( file.getAbsolutePath(), "FM" );
+
+        CoverageDataFile.read( file );
+    }
+
+    @Test( expectedExceptions = IOException.class )
+    public void corruptLines()
+        throws IOException
+    {
+        CoverageDataFile.write( data( MODEL, new int[] { 3, 7 }, 3 ), file, false );
+
+        // the line deltas become huge varints, which must not turn into huge arrays
+        RandomAccessFile raf = new RandomAccessFile( file, "rw" );
+        try
+        {
+            raf.seek( 12 + 2 + MODEL.length() + 1 );
+            raf.write( new byte[] { (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0x7f } );
+        }
+        finally
+        {
+            raf.close();
+        }
+
+        CoverageDataFile.read( file );
+    }
+
+    @Test( expectedExceptions = IOException.class )
+    public void wrongMagic()
+        throws IOException
+    {
+        dir.mkdirs();
+        FileUtils.fileWrite( file.getAbsolutePath(), "UTF-8", "<coverage/>" );
+
+        CoverageDataFile.read( file );
+    }
+
+    @Test( expectedExceptions = IOException.class )
+    public void unsupportedVersion()
+        throws IOException
+    {
+        CoverageDataFile.write( data( MODEL, new int[] { 3 } ), file, false );
+        RandomAccessFile raf = new RandomAccessFile( file, "rw" );
+        try
+        {
+            raf.seek( 4 );
+            raf.writeInt( 99 );
+        }
+        finally
+        {
+            raf.close();
+        }
+
+        CoverageDataFile.read( file );
+    }
+
+}
@@ -0,0 +1,97 @@
+/**
+ * Flexmojos is a set of maven goals to allow maven users to compile, optimize and test Flex SWF, Flex SWC, Air SWF and Air SWC.
+ * Copyright (C) 2008-2012  Marvin Froeder <marvin@flexmojos.net>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.flexmojos.oss.coverage.util;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import org.codehaus.plexus.util.SelectorUtils;
+import org.testng.annotations.Test;
+
+public class ExclusionMatcherTest
+{
+
+    private static final String[] PATHS =
+        { "/src/com/acme/Model.as", "/src/com/acme/ModelTest.as", "/src/com/acme/view/View.mxml",
+            "/src//com/acme/Model.as", "/src/com/acme", "src/com/acme/Model.as", "com/acme/Model.as",
+            "com/acme/sub/Model.as", "com/acme/View.as", "com/acme", "Model.as", "com\\acme\\Model.as" };
+
+    /**
+     * Every pattern must match exactly the paths {@link SelectorUtils#matchPath(String, String)} does
+     */
+    private void assertParity( String... patterns )
+    {
+        for ( String pattern : patterns )
+        {
+            ExclusionMatcher matcher = new ExclusionMatcher( pattern );
+            for ( String path : PATHS )
+            {
+                assertEquals( matcher.isExcluded( path ), SelectorUtils.matchPath( pattern, path ), pattern + " on "
+                    + path );
+            }
+        }
+    }
+
+    @Test
+    public void doubleStarPrefixAndSuffix()
+    {
+        assertParity( "**/Model.as", "**/acme/**", "com/acme/**", "/src/com/**", "/**/Model.as", "com/**/Model.as",
+                      "**/com/**/**/Model.as", "**/acme", "**" );
+    }
+
+    @Test
+    public void wildcardsInSegments()
+    {
+        assertParity( "**/*Test.as", "**/*Test*.as", "com/acme/Mod?l.as", "/src/*/acme/Model.as", "*", "com/*/*.as",
+                      "**/Model.?s" );
+    }
+
+    @Test
+    public void trailingSeparator()
+    {
+        assertParity( "com/acme/", "/src/com/acme/", "com\\acme\\" );
+
+        assertTrue( new ExclusionMatcher( "com/acme/" ).isExcluded( "com/acme" ) );
+        assertFalse( new ExclusionMatcher( "com/acme/" ).isExcluded( "com/acme/Model.as" ) );
+    }
+
+    @Test
+    public void absoluteAndRelative()
+    {
+        assertParity( "/src/com/acme/Model.as", "src/com/acme/Model.as", "com/acme/Model.as", "/src/com/acme",
+                      "com\\acme\\**" );
+    }
+
+    @Test
+    public void prefixedPatterns()
+    {
+        assertParity( "%ant[**/View.mxml]", "%ant[com/acme/*.as]", "%regex[.*Test\\.as]", "%regex[com/acme/.*]" );
+    }
+
+    @Test
+    public void anyPatternMatches()
+    {
+        ExclusionMatcher matcher = new ExclusionMatcher( "com/acme/View.as", "%regex[.*Test\\.as]", "**/sub/**" );
+        assertTrue( matcher.isExcluded( "com/acme/View.as" ) );
+        assertTrue( matcher.isExcluded( "/src/com/acme/ModelTest.as" ) );
+        assertTrue( matcher.isExcluded( "com/acme/sub/Model.as" ) );
+        assertFalse( matcher.isExcluded( "com/acme/Model.as" ) );
+    }
+
+}
@@ -17,7 +17,7 @@
  */
 package net.flexmojos.oss.test;
 
-import java.lang.Thread.UncaughtExceptionHandler;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.locks.ReentrantLock;
 
 import org.codehaus.plexus.logging.AbstractLogEnabled;
@@ -27,25 +27,42 @@ public abstract class AbstractControlledThread
     implements ControlledThread, Runnable
 {
 
-    protected ThreadStatus status;
+    protected volatile ThreadStatus status;
 
-    protected Throwable error;
+    protected volatile Throwable error;
 
     private ReentrantLock lock;
 
+    private volatile BlockingQueue<ControlledThread> completionQueue;
+
     protected void launch()
     {
-        Thread t = new Thread( this );
-        t.setUncaughtExceptionHandler( new UncaughtExceptionHandler()
+        final BlockingQueue<ControlledThread> queue = completionQueue;
+        Thread t = new Thread( new Runnable()
         {
-            public void uncaughtException( Thread t, Throwable e )
+            public void run()
             {
-                if ( !ThreadStatus.ERROR.equals( status ) )
+                try
+                {
+                    AbstractControlledThread.this.run();
+                }
+                catch ( Throwable e )
                 {
-                    status = ThreadStatus.ERROR;
-                    error = e;
+                    if ( !ThreadStatus.ERROR.equals( status ) )
+                    {
+                        status = ThreadStatus.ERROR;
+                        error = e;
+                    }
+                    getLogger().debug( "[MOJO] Error running: " + AbstractControlledThread.this.getClass(), e );
+                }
+                finally
+                {
+                    // status is final by now, wake up whoever is waiting on this thread
+                    if ( queue != null )
+                    {
+                        queue.offer( AbstractControlledThread.this );
+                    }
                 }
-                getLogger().debug( "[MOJO] Error running: " + getClass(), e );
             }
         } );
 
@@ -64,6 +81,16 @@ public abstract class AbstractControlledThread
         return this.error;
     }
 
+    public void setCompletionQueue( BlockingQueue<ControlledThread> completionQueue )
+    {
+        this.completionQueue = completionQueue;
+    }
+
+    protected BlockingQueue<ControlledThread> getCompletionQueue()
+    {
+        return completionQueue;
+    }
+
     public void lock()
     {
         if ( lock != null )
@@ -17,6 +17,8 @@
  */
 package net.flexmojos.oss.test;
 
+import java.util.concurrent.BlockingQueue;
+
 public interface ControlledThread
 {
 
@@ -30,4 +32,10 @@ public interface ControlledThread
 
     void unlock();
 
+    /**
+     * Once the thread is over, either DONE or ERROR, it will be added to this queue. Must be set before the thread
+     * starts.
+     */
+    void setCompletionQueue( BlockingQueue<ControlledThread> completionQueue );
+
 }
@@ -19,6 +19,9 @@ package net.flexmojos.oss.test;
 
 import java.io.File;
 import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 import org.codehaus.plexus.component.annotations.Component;
 import org.codehaus.plexus.component.annotations.Requirement;
@@ -34,6 +37,16 @@ public class DefaultTestRunner
     implements TestRunner
 {
 
+    /**
+     * Threads signal their completion, this is only a safety net in case a signal is lost
+     */
+    private static final long WAKE_UP_INTERVAL = 1000;
+
+    /**
+     * How long the sockets have to finish after the flashplayer is closed
+     */
+    private static final long SOCKETS_SHUTDOWN_TIMEOUT = 1500;
+
     @Requirement( role = AsVmPing.class )
     private AsVmPing pinger;
 
@@ -59,50 +72,48 @@ public class DefaultTestRunner
 
         getLogger().info( "Running tests " + swf );
 
+        BlockingQueue<ControlledThread> completed = new LinkedBlockingQueue<ControlledThread>();
+        pinger.setCompletionQueue( completed );
+        resultHandler.setCompletionQueue( completed );
+        launcher.setCompletionQueue( completed );
+
         try
         {
-            // Start a thread that pings flashplayer to be sure if it still alive.
+            // Pings flashplayer to be sure if it still alive, both sockets are served by the shared socket monitor.
             pinger.start( testRequest.getTestControlPort(), testRequest.getFirstConnectionTimeout(),
-                          testRequest.getTestTimeout() );
+                          testRequest.getTestTimeout(), testRequest.getPingInterval() );
 
-            // Start a thread that receives the FlexUnit results.
-            resultHandler.start( testRequest.getTestPort() );
+            // Receives the FlexUnit results.
+            resultHandler.start( testRequest.getTestPort(), testRequest.getResultListener() );
 
             // Start the browser and run the FlexUnit tests.
             launcher.start( testRequest );
 
-            // Wait until the tests are complete.
-            while ( true )
+            // Wait until the tests are complete, every thread reports back the moment it is over
+            while ( !hasDone( launcher ) )
             {
-                getLogger().debug( "[MOJO] launcher " + launcher.getStatus() );
-                getLogger().debug( "[MOJO] pinger " + pinger.getStatus() );
-                getLogger().debug( "[MOJO] resultHandler " + resultHandler.getStatus() );
+                checkErrors( swf, launcher, pinger, resultHandler );
 
-                if ( hasError( launcher, pinger, resultHandler ) )
-                {
-                    Throwable executionError = getError( launcher, pinger, resultHandler );
-                    throw new TestRunnerException( executionError.getMessage() + " - " + swf, executionError );
-                }
+                await( completed, WAKE_UP_INTERVAL );
+            }
+
+            // the flashplayer is closed, the sockets must follow shortly
+            long deadline = System.currentTimeMillis() + SOCKETS_SHUTDOWN_TIMEOUT;
+            while ( !( hasDone( resultHandler ) && hasDone( pinger ) ) )
+            {
+                checkErrors( swf, launcher, pinger, resultHandler );
 
-                if ( hasDone( launcher ) )
+                long remaining = deadline - System.currentTimeMillis();
+                if ( remaining <= 0 )
                 {
-                    for ( int i = 0; i < 3; i++ )
-                    {
-                        if ( hasDone( resultHandler ) && hasDone( pinger ) )
-                        {
-                            List<String> results = resultHandler.getTestReportData();
-                            return results; // expected exit!
-                        }
-                        sleep( 500 );
-                    }
-
-                    // the flashplayer is closed, but the sockets still running...
                     throw new TestRunnerException(
                                                    "Invalid state: the flashplayer is closed, but the sockets still running..." );
                 }
 
-                sleep( 1000 );
+                await( completed, remaining );
             }
+
+            return resultHandler.getTestReportData(); // expected exit!
         }
         finally
         {
@@ -110,15 +121,31 @@ public class DefaultTestRunner
         }
     }
 
-    private void sleep( int time )
+    private void await( BlockingQueue<ControlledThread> completed, long timeout )
+        throws TestRunnerException
     {
         try
         {
-            Thread.sleep( time );
+            ControlledThread thread = completed.poll( timeout, TimeUnit.MILLISECONDS );
+            if ( thread != null )
+            {
+                getLogger().debug( "[MOJO] " + thread.getClass().getSimpleName() + " " + thread.getStatus() );
+            }
         }
         catch ( InterruptedException e )
         {
-            // no worries
+            Thread.currentThread().interrupt();
+            throw new TestRunnerException( "Interrupted while waiting for tests to complete", e );
+        }
+    }
+
+    private void checkErrors( File swf, ControlledThread... threads )
+        throws TestRunnerException
+    {
+        if ( hasError( threads ) )
+        {
+            Throwable executionError = getError( threads );
+            throw new TestRunnerException( executionError.getMessage() + " - " + swf, executionError );
         }
     }
 
@@ -19,6 +19,9 @@ package net.flexmojos.oss.test;
 
 import java.io.File;
 
+import net.flexmojos.oss.test.monitor.AsVmPing;
+import net.flexmojos.oss.test.monitor.TestResultListener;
+
 public class TestRequest
 {
 
@@ -32,6 +35,10 @@ public class TestRequest
 
 	private Integer[] flashPlayerReturnCodesToIgnore;
 
+    private int pingInterval = AsVmPing.DEFAULT_PING_INTERVAL;
+
+    private TestResultListener resultListener;
+
     private File swf;
 
     private File swfDescriptor;
@@ -68,6 +75,16 @@ public class TestRequest
 		return flashPlayerReturnCodesToIgnore;
 	}
 
+    public int getPingInterval()
+    {
+        return pingInterval;
+    }
+
+    public TestResultListener getResultListener()
+    {
+        return resultListener;
+    }
+
 	public File getSwf()
     {
         return swf;
@@ -122,6 +139,19 @@ public class TestRequest
 		this.flashPlayerReturnCodesToIgnore = flashPlayerReturnCodesToIgnore;
 	}
 
+    public void setPingInterval( int pingInterval )
+    {
+        this.pingInterval = pingInterval;
+    }
+
+    /**
+     * Receives the test suites as they finish, the test runner won't return them anymore
+     */
+    public void setResultListener( TestResultListener resultListener )
+    {
+        this.resultListener = resultListener;
+    }
+
 	public void setSwf( File swf )
     {
         this.swf = swf;
@@ -24,7 +24,7 @@ import java.io.IOException;
 import java.util.Arrays;
 
 import org.codehaus.plexus.component.annotations.Component;
-import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.component.annotations.Requirement;
 import org.codehaus.plexus.util.cli.StreamConsumer;
 import org.codehaus.plexus.util.cli.StreamPumper;
 import net.flexmojos.oss.test.AbstractControlledThread;
@@ -67,15 +67,18 @@ public class AsVmLauncher
 
     }
 
+    @Requirement
+    private XvfbDisplayPool displayPool;
+
     private boolean allowHeadlessMode;
 
     private String[] asvmCommand;
 
     private StringBuffer consoleLog = new StringBuffer();
 
-    private Integer[] flashPlayerReturnCodesToIgnore;
+    private XvfbDisplay display;
 
-    private File log;
+    private Integer[] flashPlayerReturnCodesToIgnore;
 
     private Process process;
 
@@ -113,38 +116,6 @@ public class AsVmLauncher
 
                 status = ThreadStatus.DONE;
                 return;
-            case 2:
-                if ( useXvfb() )
-                {
-                    errorMessage = "Xvfb-run error: No command run was specified.";
-                    break;
-                }
-            case 3:
-                if ( useXvfb() )
-                {
-                    errorMessage = "Xvfb-run error: The xauth command is not available.";
-                    break;
-                }
-            case 4:
-                if ( useXvfb() )
-                {
-                    errorMessage =
-                        "Xvfb-run error: Temporary directory already exists. This may indicate a race condition.";
-                    break;
-                }
-            case 5:
-                if ( useXvfb() )
-                {
-                    errorMessage =
-                        "Xvfb-run error: A problem was encountered while cleaning up the temporary directory.";
-                    break;
-                }
-            case 6:
-                if ( useXvfb() )
-                {
-                    errorMessage = "Xvfb-run error: A problem was encountered while parsing command-line arguments.";
-                    break;
-                }
 /*            case 7:
                 errorMessage = "This code was typically related with the wrong version of adl being executed.";
                 break;*/
@@ -200,6 +171,10 @@ public class AsVmLauncher
             status = ThreadStatus.ERROR;
             error = new Error( "Error while executing external command, process killed.", e );
         }
+        finally
+        {
+            releaseDisplay();
+        }
     }
 
     private void runFlashplayer( String asvmCommand[], String targetFile )
@@ -226,34 +201,40 @@ public class AsVmLauncher
     private void runFlashplayerHeadless( String[] asvmCommand, String targetFile )
         throws LaunchFlashPlayerException
     {
-        getLogger().warn( "[LAUNCHER] Using xvfb-run to launch headless tests" );
+        display = displayPool.acquire();
 
-        try
-        {
-            log = File.createTempFile( "xvfbrun", "flashplayer" );
-        }
-        catch ( IOException e )
-        {
-            throw new LaunchFlashPlayerException( "Failed to create xvfb-run error-file!", e );
-        }
+        getLogger().warn( "[LAUNCHER] Using Xvfb display " + display.getName() + " to launch headless tests" );
 
         try
         {
-            final String[] cmdArray = merge( new String[]{ "xvfb-run", "-a", "-e", log.getAbsolutePath() },
-                    asvmCommand, new String[] { targetFile } );
+            final String[] cmdArray = merge( asvmCommand, new String[] { targetFile } );
 
             getLogger().debug( "[LAUNCHER] Executing command: " + Arrays.toString( cmdArray ) );
 
-            process = Runtime.getRuntime().exec( cmdArray );
+            ProcessBuilder builder = new ProcessBuilder( cmdArray );
+            builder.environment().put( "DISPLAY", display.getName() );
+            process = builder.start();
+            new StreamPumper( process.getInputStream(), new ConsoleConsumer( "[SYSOUT]: " ) ).start();
+            new StreamPumper( process.getErrorStream(), new ConsoleConsumer( "[SYSERR]: " ) ).start();
         }
         catch ( IOException e )
         {
+            releaseDisplay();
             throw new LaunchFlashPlayerException(
                     "Failed to launch runtime (executable file name: '" + asvmCommand[0] + "') " +
                             "in headless environment.", e );
         }
     }
 
+    private synchronized void releaseDisplay()
+    {
+        if ( display != null )
+        {
+            displayPool.release( display );
+            display = null;
+        }
+    }
+
     /**
      * Run the SWF that contains the FlexUnit tests.
      * 
@@ -349,40 +330,8 @@ public class AsVmLauncher
             }
         }
 
-        if ( useXvfb() )
-        {
-            try
-            {
-                getLogger().debug( "[LAUNCHER] killing Xvfb" );
-                Runtime.getRuntime().exec( new String[] { "killall", "Xvfb" } ).waitFor();
-                Runtime.getRuntime().exec( new String[] { "killall", "xvfb-run" } ).waitFor();
-                Runtime.getRuntime().exec( new String[] { "killall", new File( asvmCommand[0] ).getName() } ).waitFor();
-            }
-            catch ( IOException e )
-            {
-                getLogger().error( "Error killing Xvfb", e );
-            }
-            catch ( InterruptedException e )
-            {
-                // ignore, process wake up call
-            }
-
-            if ( log != null && log.exists() )
-            {
-                try
-                {
-                    consoleLog.append( FileUtils.fileRead( log ) );
-                }
-                catch ( IOException e )
-                {
-                    getLogger().error( "Error reading Xvfb log", e );
-                }
-
-                log.delete();
-            }
-
-        }
-
+        // the display goes back to the pool, it will be shutdown along with the container
+        releaseDisplay();
     }
 
     protected boolean useXvfb()
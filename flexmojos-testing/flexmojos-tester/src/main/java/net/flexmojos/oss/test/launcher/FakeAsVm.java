@@ -0,0 +1,381 @@
+/**
+ * Flexmojos is a set of maven goals to allow maven users to compile, optimize and test Flex SWF, Flex SWC, Air SWF and Air SWC.
+ * Copyright (C) 2008-2012  Marvin Froeder <marvin@flexmojos.net>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.flexmojos.oss.test.launcher;
+
+import static net.flexmojos.oss.test.monitor.CommConstraints.ACK_OF_TEST_RESULT;
+import static net.flexmojos.oss.test.monitor.CommConstraints.END_OF_TEST_RUN;
+import static net.flexmojos.oss.test.monitor.CommConstraints.EOL;
+import static net.flexmojos.oss.test.monitor.CommConstraints.FINISHED;
+import static net.flexmojos.oss.test.monitor.CommConstraints.NULL_BYTE;
+import static net.flexmojos.oss.test.monitor.CommConstraints.OK;
+import static net.flexmojos.oss.test.monitor.CommConstraints.STATUS;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.net.URISyntaxException;
+import java.util.Properties;
+
+import net.flexmojos.oss.test.TestRequest;
+
+/**
+ * Stand-in for the flashplayer that speaks the test runner socket protocol, so the whole test pipeline can be run and
+ * measured on machines without a player or X server. {@link AsVmLauncher} launches it like a player, the
+ * {@link #configure(TestRequest, File)} request points to a properties file describing the run instead of a swf:
+ * <ul>
+ * <li><code>port</code>, <code>controlPort</code>: the test runner ports, required</li>
+ * <li><code>suites</code>, <code>testsPerSuite</code>: volume of results, 1 by default</li>
+ * <li><code>failuresPerSuite</code>, <code>errorsPerSuite</code>: failed tests on each suite, 0 by default</li>
+ * <li><code>startupDelay</code>: milliseconds before connecting, like the player loading the swf</li>
+ * <li><code>suiteLatency</code>: milliseconds spent running each suite before sending it</li>
+ * <li><code>pingLatency</code>: milliseconds before answering each status request</li>
+ * <li><code>invalidPingAnswers</code>: number of status requests answered with garbage</li>
+ * <li><code>hangAfterSuites</code>: stop sending results and answering pings after that many suites</li>
+ * <li><code>crashAfterSuites</code>: exit with code 1 after that many suites, without closing the sockets</li>
+ * <li><code>exitCode</code>: exit code once the run is over, 0 by default</li>
+ * </ul>
+ */
+public class FakeAsVm
+{
+
+    public static final String PORT = "port";
+
+    public static final String CONTROL_PORT = "controlPort";
+
+    public static final String SUITES = "suites";
+
+    public static final String TESTS_PER_SUITE = "testsPerSuite";
+
+    public static final String FAILURES_PER_SUITE = "failuresPerSuite";
+
+    public static final String ERRORS_PER_SUITE = "errorsPerSuite";
+
+    public static final String STARTUP_DELAY = "startupDelay";
+
+    public static final String SUITE_LATENCY = "suiteLatency";
+
+    public static final String PING_LATENCY = "pingLatency";
+
+    public static final String INVALID_PING_ANSWERS = "invalidPingAnswers";
+
+    public static final String HANG_AFTER_SUITES = "hangAfterSuites";
+
+    public static final String CRASH_AFTER_SUITES = "crashAfterSuites";
+
+    public static final String EXIT_CODE = "exitCode";
+
+    private static final String LOCALHOST = "127.0.0.1";
+
+    private static final int CRASH_EXIT_CODE = 1;
+
+    private final int port;
+
+    private final int controlPort;
+
+    private final int suites;
+
+    private final int testsPerSuite;
+
+    private final int failuresPerSuite;
+
+    private final int errorsPerSuite;
+
+    private final int startupDelay;
+
+    private final int suiteLatency;
+
+    private final int pingLatency;
+
+    private int invalidPingAnswers;
+
+    private final int hangAfterSuites;
+
+    private final int crashAfterSuites;
+
+    private final int exitCode;
+
+    private volatile boolean hung;
+
+    private volatile boolean finished;
+
+    public FakeAsVm( Properties settings )
+    {
+        this.port = getInt( settings, PORT, -1 );
+        this.controlPort = getInt( settings, CONTROL_PORT, -1 );
+        if ( port == -1 || controlPort == -1 )
+        {
+            throw new IllegalArgumentException( "Both " + PORT + " and " + CONTROL_PORT + " must be defined" );
+        }
+
+        this.suites = getInt( settings, SUITES, 1 );
+        this.testsPerSuite = getInt( settings, TESTS_PER_SUITE, 1 );
+        this.failuresPerSuite = getInt( settings, FAILURES_PER_SUITE, 0 );
+        this.errorsPerSuite = getInt( settings, ERRORS_PER_SUITE, 0 );
+        this.startupDelay = getInt( settings, STARTUP_DELAY, 0 );
+        this.suiteLatency = getInt( settings, SUITE_LATENCY, 0 );
+        this.pingLatency = getInt( settings, PING_LATENCY, 0 );
+        this.invalidPingAnswers = getInt( settings, INVALID_PING_ANSWERS, 0 );
+        this.hangAfterSuites = getInt( settings, HANG_AFTER_SUITES, -1 );
+        this.crashAfterSuites = getInt( settings, CRASH_AFTER_SUITES, -1 );
+        this.exitCode = getInt( settings, EXIT_CODE, 0 );
+    }
+
+    private static int getInt( Properties settings, String key, int defaultValue )
+    {
+        String value = settings.getProperty( key );
+        if ( value == null || value.trim().length() == 0 )
+        {
+            return defaultValue;
+        }
+
+        try
+        {
+            return Integer.parseInt( value.trim() );
+        }
+        catch ( NumberFormatException e )
+        {
+            throw new IllegalArgumentException( "Invalid " + key + ": " + value );
+        }
+    }
+
+    /**
+     * Make the request launch the fake player instead of the flashplayer
+     *
+     * @param run properties file describing the run
+     */
+    public static void configure( TestRequest request, File run )
+    {
+        request.setFlashplayerCommand( command() );
+        request.setSwf( run );
+        request.setUseAirDebugLauncher( false );
+        // no display needed
+        request.setAllowHeadlessMode( false );
+    }
+
+    /**
+     * @return the command line launching the fake player with the running java
+     */
+    public static String[] command()
+    {
+        File java = new File( new File( System.getProperty( "java.home" ), "bin" ), "java" );
+
+        File classpath;
+        try
+        {
+            classpath = new File( FakeAsVm.class.getProtectionDomain().getCodeSource().getLocation().toURI() );
+        }
+        catch ( URISyntaxException e )
+        {
+            throw new IllegalStateException( "Unable to locate " + FakeAsVm.class.getName(), e );
+        }
+
+        return new String[] { java.getAbsolutePath(), "-cp", classpath.getAbsolutePath(), FakeAsVm.class.getName() };
+    }
+
+    public static void main( String[] args )
+        throws Exception
+    {
+        if ( args.length != 1 )
+        {
+            System.err.println( "Usage: " + FakeAsVm.class.getName() + " <run.properties>" );
+            System.exit( 2 );
+        }
+
+        Properties settings = new Properties();
+        InputStream in = new FileInputStream( args[0] );
+        try
+        {
+            settings.load( in );
+        }
+        finally
+        {
+            in.close();
+        }
+
+        System.exit( new FakeAsVm( settings ).execute() );
+    }
+
+    /**
+     * Run the fake tests
+     *
+     * @return the exit code of the player
+     */
+    public int execute()
+        throws IOException, InterruptedException
+    {
+        Thread.sleep( startupDelay );
+
+        final Socket control = new Socket( LOCALHOST, controlPort );
+        Thread controlThread = new Thread( "fake-asvm-control" )
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    answerPings( control );
+                }
+                catch ( Exception e )
+                {
+                    System.err.println( "Control socket error: " + e );
+                }
+            }
+        };
+        controlThread.setDaemon( true );
+        controlThread.start();
+
+        Socket result = new Socket( LOCALHOST, port );
+        OutputStream out = result.getOutputStream();
+        for ( int i = 0; i < suites; i++ )
+        {
+            if ( i == crashAfterSuites )
+            {
+                System.err.println( "Crashing after " + i + " suites" );
+                return CRASH_EXIT_CODE;
+            }
+            if ( i == hangAfterSuites )
+            {
+                System.err.println( "Hanging after " + i + " suites" );
+                hung = true;
+                // the launcher kills the player once the timeouts expire
+                controlThread.join();
+                return exitCode;
+            }
+
+            Thread.sleep( suiteLatency );
+            send( out, suite( i ) );
+        }
+        send( out, END_OF_TEST_RUN );
+
+        waitAck( result.getInputStream() );
+        result.close();
+        finished = true;
+
+        // like the player, exits once the control socket is closed by the runner
+        controlThread.join();
+        return exitCode;
+    }
+
+    private void answerPings( Socket control )
+        throws IOException, InterruptedException
+    {
+        BufferedReader reader = new BufferedReader( new InputStreamReader( control.getInputStream(), "UTF-8" ) );
+        OutputStream out = control.getOutputStream();
+        try
+        {
+            String line;
+            while ( ( line = reader.readLine() ) != null )
+            {
+                if ( !STATUS.equals( line ) || hung )
+                {
+                    continue;
+                }
+
+                Thread.sleep( pingLatency );
+
+                String answer;
+                if ( invalidPingAnswers > 0 )
+                {
+                    invalidPingAnswers--;
+                    answer = "INVALID";
+                }
+                else
+                {
+                    answer = finished ? FINISHED : OK;
+                }
+
+                out.write( ( answer + EOL ).getBytes( "UTF-8" ) );
+                out.flush();
+            }
+        }
+        finally
+        {
+            control.close();
+        }
+    }
+
+    private String suite( int index )
+    {
+        String name = "net.flexmojos.oss.fake.FakeTest" + index;
+
+        StringBuilder xml = new StringBuilder();
+        xml.append( "<testsuite errors='" ).append( errorsPerSuite );
+        xml.append( "' failures='" ).append( failuresPerSuite );
+        xml.append( "' name='" ).append( name );
+        xml.append( "' tests='" ).append( testsPerSuite );
+        xml.append( "' time='" ).append( suiteLatency / 1000.0 ).append( "' >" );
+        for ( int i = 0; i < testsPerSuite; i++ )
+        {
+            xml.append( "<testcase classname='" ).append( name ).append( "' name='test" ).append( i );
+            xml.append( "' time='0'" );
+            if ( i < failuresPerSuite )
+            {
+                xml.append( "><failure message='fake failure' type='Error'>at test" ).append( i );
+                xml.append( "()</failure></testcase>" );
+            }
+            else if ( i < failuresPerSuite + errorsPerSuite )
+            {
+                xml.append( "><error message='fake error' type='Error'>at test" ).append( i );
+                xml.append( "()</error></testcase>" );
+            }
+            else
+            {
+                xml.append( "/>" );
+            }
+        }
+        xml.append( "</testsuite>" );
+        return xml.toString();
+    }
+
+    private static void send( OutputStream out, String frame )
+        throws IOException
+    {
+        out.write( ( frame + NULL_BYTE ).getBytes( "UTF-8" ) );
+        out.flush();
+    }
+
+    private static void waitAck( InputStream in )
+        throws IOException
+    {
+        ByteArrayOutputStream frame = new ByteArrayOutputStream();
+        int b;
+        while ( ( b = in.read() ) != -1 )
+        {
+            if ( b != NULL_BYTE )
+            {
+                frame.write( b );
+            }
+            else if ( ACK_OF_TEST_RESULT.equals( frame.toString( "UTF-8" ) ) )
+            {
+                return;
+            }
+            else
+            {
+                frame.reset();
+            }
+        }
+        throw new IOException( "Result socket closed before " + ACK_OF_TEST_RESULT );
+    }
+
+}
@@ -0,0 +1,73 @@
+/**
+ * Flexmojos is a set of maven goals to allow maven users to compile, optimize and test Flex SWF, Flex SWC, Air SWF and Air SWC.
+ * Copyright (C) 2008-2012  Marvin Froeder <marvin@flexmojos.net>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.flexmojos.oss.test.launcher;
+
+/**
+ * A running Xvfb server owned by the {@link XvfbDisplayPool}.
+ */
+public class XvfbDisplay
+{
+
+    private final int number;
+
+    private final Process process;
+
+    XvfbDisplay( int number, Process process )
+    {
+        this.number = number;
+        this.process = process;
+    }
+
+    public int getNumber()
+    {
+        return number;
+    }
+
+    /**
+     * @return the value for the DISPLAY environment variable
+     */
+    public String getName()
+    {
+        return ":" + number;
+    }
+
+    public boolean isAlive()
+    {
+        try
+        {
+            process.exitValue();
+            return false;
+        }
+        catch ( IllegalThreadStateException e )
+        {
+            return true;
+        }
+    }
+
+    void destroy()
+    {
+        process.destroy();
+    }
+
+    @Override
+    public String toString()
+    {
+        return "Xvfb " + getName();
+    }
+
+}
@@ -0,0 +1,261 @@
+/**
+ * Flexmojos is a set of maven goals to allow maven users to compile, optimize and test Flex SWF, Flex SWC, Air SWF and Air SWC.
+ * Copyright (C) 2008-2012  Marvin Froeder <marvin@flexmojos.net>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.flexmojos.oss.test.launcher;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+
+import org.codehaus.plexus.component.annotations.Component;
+import org.codehaus.plexus.logging.AbstractLogEnabled;
+import org.codehaus.plexus.personality.plexus.lifecycle.phase.Disposable;
+import org.codehaus.plexus.util.cli.StreamConsumer;
+import org.codehaus.plexus.util.cli.StreamPumper;
+
+/**
+ * Long lived Xvfb servers for headless test runs. A display is held by one launcher at a time and goes back to the pool
+ * once the flashplayer is closed, so the X server startup is paid once per concurrent runner instead of once per test
+ * SWF. Only the servers started here are killed, when the container is disposed or the VM exits.
+ */
+@Component( role = XvfbDisplayPool.class )
+public class XvfbDisplayPool
+    extends AbstractLogEnabled
+    implements Disposable
+{
+
+    private static final int FIRST_DISPLAY = 99;
+
+    private static final int MAX_DISPLAYS = 100;
+
+    /**
+     * How long Xvfb has to create its socket
+     */
+    private static final long STARTUP_TIMEOUT = 10000;
+
+    private static final File X11_UNIX = new File( "/tmp/.X11-unix" );
+
+    private final LinkedList<XvfbDisplay> idle = new LinkedList<XvfbDisplay>();
+
+    private final List<XvfbDisplay> displays = new ArrayList<XvfbDisplay>();
+
+    /**
+     * Display numbers reserved by servers still starting
+     */
+    private final Set<Integer> starting = new HashSet<Integer>();
+
+    private int nextDisplay = FIRST_DISPLAY;
+
+    public XvfbDisplay acquire()
+        throws LaunchFlashPlayerException
+    {
+        synchronized ( this )
+        {
+            while ( !idle.isEmpty() )
+            {
+                XvfbDisplay display = idle.removeFirst();
+                if ( display.isAlive() )
+                {
+                    getLogger().debug( "[LAUNCHER] Reusing " + display );
+                    return display;
+                }
+
+                getLogger().debug( "[LAUNCHER] " + display + " is gone" );
+                displays.remove( display );
+            }
+        }
+
+        return startDisplay();
+    }
+
+    public synchronized void release( XvfbDisplay display )
+    {
+        if ( display == null || !displays.contains( display ) )
+        {
+            return;
+        }
+
+        if ( display.isAlive() )
+        {
+            idle.addFirst( display );
+        }
+        else
+        {
+            displays.remove( display );
+        }
+    }
+
+    /**
+     * The display number is reserved under the pool lock, the server is started and waited for outside of it so
+     * displays can be released and reused meanwhile
+     */
+    private XvfbDisplay startDisplay()
+        throws LaunchFlashPlayerException
+    {
+        IOException lastError = null;
+        for ( int i = 0; i < MAX_DISPLAYS; i++ )
+        {
+            int number = reserveDisplay();
+            if ( number == -1 )
+            {
+                break;
+            }
+
+            XvfbDisplay display = null;
+            try
+            {
+                display = startDisplay( number );
+            }
+            catch ( IOException e )
+            {
+                lastError = e;
+            }
+            finally
+            {
+                synchronized ( this )
+                {
+                    starting.remove( number );
+                    if ( display != null )
+                    {
+                        displays.add( display );
+                    }
+                }
+            }
+
+            if ( display != null )
+            {
+                return display;
+            }
+            if ( lastError != null )
+            {
+                break;
+            }
+        }
+
+        if ( lastError != null )
+        {
+            throw new LaunchFlashPlayerException( "Unable to start Xvfb: " + lastError.getMessage(), lastError );
+        }
+        throw new LaunchFlashPlayerException( "Unable to start Xvfb, no free display found", null );
+    }
+
+    /**
+     * @return the next display number neither used nor being started, -1 when there is none
+     */
+    private synchronized int reserveDisplay()
+    {
+        for ( int i = 0; i < MAX_DISPLAYS; i++ )
+        {
+            int number = nextDisplay++;
+            if ( nextDisplay >= FIRST_DISPLAY + MAX_DISPLAYS )
+            {
+                nextDisplay = FIRST_DISPLAY;
+            }
+
+            // taken by somebody else
+            if ( starting.contains( number ) || new File( "/tmp/.X" + number + "-lock" ).exists()
+                || getSocket( number ).exists() )
+            {
+                continue;
+            }
+
+            starting.add( number );
+            return number;
+        }
+        return -1;
+    }
+
+    /**
+     * @return null when Xvfb didn't manage to use the display
+     */
+    private XvfbDisplay startDisplay( int number )
+        throws IOException
+    {
+        String[] cmdArray = new String[] { "Xvfb", ":" + number, "-screen", "0", "1024x768x24", "-nolisten", "tcp" };
+        getLogger().debug( "[LAUNCHER] Executing command: " + Arrays.toString( cmdArray ) );
+
+        ProcessBuilder builder = new ProcessBuilder( cmdArray );
+        builder.redirectErrorStream( true );
+        Process process = builder.start();
+        process.getOutputStream().close();
+
+        final String prefix = "[XVFB :" + number + "]: ";
+        new StreamPumper( process.getInputStream(), new StreamConsumer()
+        {
+            public void consumeLine( String line )
+            {
+                getLogger().debug( prefix + line );
+            }
+        } ).start();
+
+        XvfbDisplay display = new XvfbDisplay( number, process );
+        File socket = getSocket( number );
+
+        long deadline = System.currentTimeMillis() + STARTUP_TIMEOUT;
+        while ( System.currentTimeMillis() < deadline )
+        {
+            if ( !display.isAlive() )
+            {
+                getLogger().debug( "[LAUNCHER] Xvfb failed on display " + display.getName() );
+                return null;
+            }
+
+            if ( socket.exists() )
+            {
+                getLogger().info( "[LAUNCHER] Started " + display );
+                Runtime.getRuntime().addShutdownHook( new FlashPlayerShutdownHook( process ) );
+                return display;
+            }
+
+            try
+            {
+                Thread.sleep( 50 );
+            }
+            catch ( InterruptedException e )
+            {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+
+        display.destroy();
+        throw new IOException( "Xvfb didn't start on display " + display.getName() + " after " + STARTUP_TIMEOUT
+            + "ms" );
+    }
+
+    private File getSocket( int number )
+    {
+        return new File( X11_UNIX, "X" + number );
+    }
+
+    public synchronized void dispose()
+    {
+        for ( XvfbDisplay display : displays )
+        {
+            getLogger().debug( "[LAUNCHER] Stopping " + display );
+            display.destroy();
+        }
+        displays.clear();
+        idle.clear();
+    }
+
+}
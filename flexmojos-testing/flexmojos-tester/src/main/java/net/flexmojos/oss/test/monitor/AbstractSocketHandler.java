@@ -0,0 +1,367 @@
+/**
+ * Flexmojos is a set of maven goals to allow maven users to compile, optimize and test Flex SWF, Flex SWC, Air SWF and Air SWC.
+ * Copyright (C) 2008-2012  Marvin Froeder <marvin@flexmojos.net>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.flexmojos.oss.test.monitor;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.Charset;
+import java.util.concurrent.BlockingQueue;
+
+import org.codehaus.plexus.component.annotations.Requirement;
+import net.flexmojos.oss.test.AbstractControlledThread;
+import net.flexmojos.oss.test.ControlledThread;
+import net.flexmojos.oss.test.ThreadStatus;
+
+/**
+ * Server socket accepting a single client, driven by the {@link SocketMonitor} thread instead of a thread of its own.
+ * Subclasses react to the socket events, all callbacks happen on the monitor thread.
+ */
+public abstract class AbstractSocketHandler
+    extends AbstractControlledThread
+    implements ControlledThread
+{
+
+    private static final int BUFFER_SIZE = 16 * 1024;
+
+    private static final Charset UTF_8 = Charset.forName( "UTF-8" );
+
+    @Requirement
+    private SocketMonitor monitor;
+
+    private final ByteBuffer readBuffer = ByteBuffer.allocate( BUFFER_SIZE );
+
+    private ServerSocketChannel serverChannel;
+
+    private SocketChannel clientChannel;
+
+    private SelectionKey clientKey;
+
+    private ByteBuffer pendingOutput;
+
+    private boolean closeWhenFlushed;
+
+    private long deadline;
+
+    private boolean over;
+
+    private BlockingQueue<ControlledThread> queue;
+
+    /**
+     * Open the server socket on the monitor thread
+     */
+    protected void listen()
+    {
+        monitor.execute( this );
+    }
+
+    /**
+     * Opens the server socket, invoked on the monitor thread
+     */
+    public void run()
+    {
+        queue = getCompletionQueue();
+        readBuffer.clear();
+        pendingOutput = null;
+        closeWhenFlushed = false;
+        over = false;
+
+        try
+        {
+            serverChannel = ServerSocketChannel.open();
+            serverChannel.socket().bind( new InetSocketAddress( getTestPort() ) );
+            serverChannel.configureBlocking( false );
+            serverChannel.register( monitor.getSelector(), SelectionKey.OP_ACCEPT, this );
+
+            getLogger().debug( "[" + this.getClass().getName() + "] opened server socket on port " + getTestPort() );
+
+            monitor.watch( this );
+            setTimeout( getFirstConnectionTimeout() );
+            status = ThreadStatus.STARTED;
+        }
+        catch ( IOException e )
+        {
+            fail( e );
+        }
+    }
+
+    protected abstract int getFirstConnectionTimeout();
+
+    protected abstract int getTestPort();
+
+    /**
+     * The client is connected and ready to talk
+     */
+    protected abstract void connected()
+        throws IOException;
+
+    /**
+     * Consume all the bytes available on the buffer
+     */
+    protected abstract void received( ByteBuffer data )
+        throws IOException;
+
+    /**
+     * The client closed the socket
+     */
+    protected abstract void endOfStream()
+        throws IOException;
+
+    /**
+     * The timeout set by {@link #setTimeout(int)} is over, by default the socket fails
+     */
+    protected void timeout()
+        throws IOException
+    {
+        fail( new SocketTimeoutException( isConnected() ? "Read timed out" : "Accept timed out" ) );
+    }
+
+    protected boolean isConnected()
+    {
+        return clientChannel != null;
+    }
+
+    void handle( SelectionKey key )
+        throws IOException
+    {
+        if ( !key.isValid() )
+        {
+            return;
+        }
+
+        if ( key.isAcceptable() )
+        {
+            accept();
+            return;
+        }
+
+        if ( key.isReadable() )
+        {
+            read();
+        }
+
+        if ( key.isValid() && key.isWritable() )
+        {
+            flush();
+        }
+    }
+
+    private void accept()
+        throws IOException
+    {
+        SocketChannel channel = serverChannel.accept();
+        if ( channel == null )
+        {
+            return;
+        }
+
+        // one client per run, no need to keep listening
+        closeServerChannel();
+
+        channel.configureBlocking( false );
+        clientChannel = channel;
+        clientKey = channel.register( monitor.getSelector(), SelectionKey.OP_READ, this );
+        setTimeout( 0 );
+
+        getLogger().debug( "[" + this.getClass().getName() + "] accepting data from client" );
+
+        status = ThreadStatus.RUNNING;
+
+        connected();
+    }
+
+    private void read()
+        throws IOException
+    {
+        if ( clientChannel.read( readBuffer ) == -1 )
+        {
+            endOfStream();
+            return;
+        }
+
+        readBuffer.flip();
+        received( readBuffer );
+        readBuffer.clear();
+    }
+
+    protected void send( String data )
+        throws IOException
+    {
+        ByteBuffer output = UTF_8.encode( data );
+        if ( pendingOutput != null )
+        {
+            ByteBuffer joined = ByteBuffer.allocate( pendingOutput.remaining() + output.remaining() );
+            joined.put( pendingOutput ).put( output ).flip();
+            output = joined;
+        }
+
+        clientChannel.write( output );
+        if ( output.hasRemaining() )
+        {
+            pendingOutput = output;
+            clientKey.interestOps( SelectionKey.OP_READ | SelectionKey.OP_WRITE );
+        }
+        else
+        {
+            pendingOutput = null;
+        }
+    }
+
+    private void flush()
+        throws IOException
+    {
+        if ( pendingOutput != null )
+        {
+            clientChannel.write( pendingOutput );
+            if ( pendingOutput.hasRemaining() )
+            {
+                return;
+            }
+            pendingOutput = null;
+        }
+
+        clientKey.interestOps( SelectionKey.OP_READ );
+        if ( closeWhenFlushed )
+        {
+            done();
+        }
+    }
+
+    /**
+     * @param millis 0 means no timeout
+     */
+    protected void setTimeout( int millis )
+    {
+        deadline = millis > 0 ? System.currentTimeMillis() + millis : 0;
+    }
+
+    long getDeadline()
+    {
+        return deadline;
+    }
+
+    void deadlineExpired()
+        throws IOException
+    {
+        deadline = 0;
+        timeout();
+    }
+
+    /**
+     * Close the sockets once everything sent was flushed, marking the handler as DONE
+     */
+    protected void done()
+    {
+        if ( pendingOutput != null )
+        {
+            closeWhenFlushed = true;
+            return;
+        }
+
+        finish( null );
+    }
+
+    /**
+     * Close the sockets, marking the handler as ERROR
+     */
+    protected void fail( Throwable e )
+    {
+        finish( e );
+    }
+
+    private void finish( Throwable e )
+    {
+        if ( over )
+        {
+            return;
+        }
+        over = true;
+
+        closeClientChannel();
+        closeServerChannel();
+        monitor.unwatch( this );
+        deadline = 0;
+
+        if ( e != null )
+        {
+            getLogger().debug( "[" + this.getClass().getName() + "] " + e.getMessage(), e );
+            error = e;
+            status = ThreadStatus.ERROR;
+        }
+        else
+        {
+            status = ThreadStatus.DONE;
+        }
+
+        // wake up whoever is waiting on this handler
+        if ( queue != null )
+        {
+            queue.offer( this );
+        }
+    }
+
+    private void closeServerChannel()
+    {
+        if ( serverChannel != null )
+        {
+            try
+            {
+                serverChannel.close();
+            }
+            catch ( IOException e )
+            {
+                // ignore
+            }
+            serverChannel = null;
+        }
+    }
+
+    private void closeClientChannel()
+    {
+        if ( clientChannel != null )
+        {
+            try
+            {
+                clientChannel.close();
+            }
+            catch ( IOException e )
+            {
+                // ignore
+            }
+            clientChannel = null;
+            clientKey = null;
+        }
+    }
+
+    public void stop()
+    {
+        monitor.execute( new Runnable()
+        {
+            public void run()
+            {
+                fail( new SocketException( "Socket closed" ) );
+            }
+        } );
+    }
+
+}
@@ -22,104 +22,151 @@ import static net.flexmojos.oss.test.monitor.CommConstraints.FINISHED;
 import static net.flexmojos.oss.test.monitor.CommConstraints.OK;
 import static net.flexmojos.oss.test.monitor.CommConstraints.STATUS;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.net.SocketException;
 import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.codehaus.plexus.component.annotations.Component;
-import org.codehaus.plexus.util.IOUtil;
-import net.flexmojos.oss.test.ThreadStatus;
 
 /**
- * This class will ping Action Script virtual machine to make sure if the application still running
+ * This class will ping Action Script virtual machine to make sure if the application still running. The player must
+ * answer every ping within the test timeout, a new ping goes out a ping interval after each answer.
  * 
  * @author velo
  */
 @Component( role = AsVmPing.class, instantiationStrategy = "per-lookup" )
 public class AsVmPing
-    extends AbstractSocketThread
+    extends AbstractSocketHandler
 {
 
+    public static final int DEFAULT_PING_INTERVAL = 500;
+
+    private final FrameDecoder decoder = new FrameDecoder( 64, EOL );
+
+    private final List<String> answers = new ArrayList<String>();
+
     private int testControlPort;
 
     private int firstConnectionTimeout;
 
     private int testTimeout;
 
+    private int pingInterval;
+
+    private int errorCount;
+
+    private boolean waitingAnswer;
+
     @Override
-    protected void handleRequest()
-        throws SocketTimeoutException, SocketException, IOException
+    protected void connected()
+        throws IOException
     {
         getLogger().debug( "[CONTROL] AsVmControl handleRequest" );
 
-        clientSocket.setSoTimeout( testTimeout );
+        errorCount = 0;
+        ping();
+    }
 
-        int errorCount = 0;
+    private void ping()
+        throws IOException
+    {
+        getLogger().debug( "[CONTROL] query status" );
+
+        waitingAnswer = true;
+        setTimeout( testTimeout );
+        send( STATUS + "" + EOL );
+    }
 
-        while ( true )
+    @Override
+    protected void received( ByteBuffer data )
+        throws IOException
+    {
+        decoder.decode( data, answers );
+        for ( String result : answers )
         {
-            try
+            if ( !handleStatus( result ) )
             {
-                getLogger().debug( "[CONTROL] query status" );
-                IOUtil.copy( STATUS + EOL, out );
-
-                getLogger().debug( "[CONTROL] received status" );
-                BufferedReader in = new BufferedReader( new InputStreamReader( super.in ) );
-                String result = in.readLine();
-                getLogger().debug( "[CONTROL] status is: " + result );
-                if ( !OK.equals( result ) && !FINISHED.equals( result ) )
-                {
-                    errorCount++;
-                    if ( errorCount >= 3 )
-                    {
-                        status = ThreadStatus.ERROR;
-                        error = new Error( "Invalid virtual machine status: " + result );
-
-                        return;
-                    }
-                }
-                else if ( FINISHED.equals( result ) )
-                {
-                    getLogger().debug( "[CONTROL] FINISHED received, terminating the thread" );
-                    return;
-                }
-                else
-                {
-                    errorCount = 0;
-
-                    try
-                    {
-                        Thread.sleep( 2000 );
-                    }
-                    catch ( InterruptedException e )
-                    {
-                        // wake up call, no problem
-                    }
-                }
+                break;
             }
-            catch ( SocketException e )
+        }
+        answers.clear();
+    }
+
+    /**
+     * @return false once the ping is over
+     */
+    private boolean handleStatus( String result )
+        throws IOException
+    {
+        getLogger().debug( "[CONTROL] status is: " + result );
+
+        waitingAnswer = false;
+        if ( !OK.equals( result ) && !FINISHED.equals( result ) )
+        {
+            errorCount++;
+            if ( errorCount >= 3 )
             {
-                errorCount++;
-                if ( errorCount >= 3 )
-                {
-                    status = ThreadStatus.ERROR;
-                    error = e;
-
-                    return;
-                }
+                fail( new Error( "Invalid virtual machine status: " + result ) );
+                return false;
             }
+            ping();
+        }
+        else if ( FINISHED.equals( result ) )
+        {
+            getLogger().debug( "[CONTROL] FINISHED received, terminating the ping" );
+            done();
+            return false;
         }
+        else
+        {
+            errorCount = 0;
+            setTimeout( pingInterval );
+        }
+        return true;
+    }
+
+    @Override
+    protected void timeout()
+        throws IOException
+    {
+        if ( !isConnected() )
+        {
+            super.timeout();
+        }
+        else if ( waitingAnswer )
+        {
+            fail( new SocketTimeoutException( "No answer from the virtual machine in " + testTimeout + "ms" ) );
+        }
+        else
+        {
+            ping();
+        }
+    }
+
+    @Override
+    protected void endOfStream()
+    {
+        fail( new SocketException( "Control socket closed by the virtual machine" ) );
+    }
+
+    public void start( int testControlPort, int firstConnectionTimeout, int testTimeout )
+    {
+        start( testControlPort, firstConnectionTimeout, testTimeout, DEFAULT_PING_INTERVAL );
     }
 
-    public void start(int testControlPort, int firstConnectionTimeout, int testTimeout)
+    public void start( int testControlPort, int firstConnectionTimeout, int testTimeout, int pingInterval )
     {
         reset();
         this.testControlPort = testControlPort;
         this.firstConnectionTimeout = firstConnectionTimeout;
         this.testTimeout = testTimeout;
-        launch();
+        this.pingInterval = pingInterval;
+        this.waitingAnswer = false;
+        decoder.reset();
+        listen();
     }
 
     @Override
@@ -0,0 +1,116 @@
+/**
+ * Flexmojos is a set of maven goals to allow maven users to compile, optimize and test Flex SWF, Flex SWC, Air SWF and Air SWC.
+ * Copyright (C) 2008-2012  Marvin Froeder <marvin@flexmojos.net>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.flexmojos.oss.test.monitor;
+
+import static net.flexmojos.oss.test.monitor.CommConstraints.NULL_BYTE;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.List;
+
+/**
+ * Incremental decoder for the NULL terminated frames the test runner writes on the result socket, or the EOL terminated
+ * lines of the control socket. Bytes are fed as they arrive, a frame may span any number of reads and a single read may
+ * complete several frames.
+ */
+public class FrameDecoder
+{
+
+    private static final Charset UTF_8 = Charset.forName( "UTF-8" );
+
+    private final byte delimiter;
+
+    private byte[] pending;
+
+    private int pendingLength;
+
+    public FrameDecoder( int initialCapacity )
+    {
+        this( initialCapacity, NULL_BYTE );
+    }
+
+    public FrameDecoder( int initialCapacity, char delimiter )
+    {
+        this.pending = new byte[initialCapacity];
+        this.delimiter = (byte) delimiter;
+    }
+
+    /**
+     * Consume all remaining bytes of the buffer, adding every completed frame to frames.
+     */
+    public void decode( ByteBuffer buffer, List<String> frames )
+    {
+        byte[] bytes = buffer.array();
+        int offset = buffer.arrayOffset();
+        int start = offset + buffer.position();
+        int limit = offset + buffer.limit();
+
+        for ( int i = start; i < limit; i++ )
+        {
+            if ( bytes[i] == delimiter )
+            {
+                if ( pendingLength == 0 )
+                {
+                    // common case, whole frame on this read, no need to copy it around
+                    frames.add( new String( bytes, start, i - start, UTF_8 ) );
+                }
+                else
+                {
+                    append( bytes, start, i - start );
+                    frames.add( new String( pending, 0, pendingLength, UTF_8 ) );
+                    pendingLength = 0;
+                }
+                start = i + 1;
+            }
+        }
+
+        append( bytes, start, limit - start );
+        buffer.position( buffer.limit() );
+    }
+
+    /**
+     * @return the bytes received after the last frame, usually nothing
+     */
+    public String getPending()
+    {
+        return new String( pending, 0, pendingLength, UTF_8 );
+    }
+
+    public void reset()
+    {
+        pendingLength = 0;
+    }
+
+    private void append( byte[] bytes, int start, int length )
+    {
+        if ( length == 0 )
+        {
+            return;
+        }
+
+        if ( pendingLength + length > pending.length )
+        {
+            byte[] grown = new byte[Math.max( pending.length * 2, pendingLength + length )];
+            System.arraycopy( pending, 0, grown, 0, pendingLength );
+            pending = grown;
+        }
+        System.arraycopy( bytes, start, pending, pendingLength, length );
+        pendingLength += length;
+    }
+
+}
@@ -22,28 +22,43 @@ import static net.flexmojos.oss.test.monitor.CommConstraints.END_OF_TEST_RUN;
 import static net.flexmojos.oss.test.monitor.CommConstraints.END_OF_TEST_SUITE;
 import static net.flexmojos.oss.test.monitor.CommConstraints.NULL_BYTE;
 
-import java.io.BufferedWriter;
 import java.io.IOException;
-import java.io.OutputStreamWriter;
-import java.net.SocketException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import org.codehaus.plexus.component.annotations.Component;
 import net.flexmojos.oss.test.ControlledThread;
 
 /**
- * Create a server socket for receiving the test reports from FlexUnit. We read the test reports inside of a Thread.
+ * Create a server socket for receiving the test reports from FlexUnit. The test reports are read by the
+ * {@link SocketMonitor} thread.
+ * <p>
+ * Data is read in bulk and split on NULL bytes as it arrives, each finished test suite is handed to the
+ * {@link TestResultListener} right away. Test suites are only kept on {@link #getTestReportData()} when there is no
+ * listener.
+ * </p>
  */
 @Component( role = ResultHandler.class, instantiationStrategy = "per-lookup" )
 public class ResultHandler
-    extends AbstractSocketThread
+    extends AbstractSocketHandler
     implements ControlledThread
 {
     public static final String ROLE = ResultHandler.class.getName();
 
+    private static final int BUFFER_SIZE = 16 * 1024;
+
+    private final FrameDecoder decoder = new FrameDecoder( BUFFER_SIZE );
+
     private int testReportPort;
 
+    private TestResultListener listener;
+
+    private final List<String> frames = new ArrayList<String>();
+
+    private boolean endOfTestRun;
+
     protected List<String> testReportData;
 
     public List<String> getTestReportData()
@@ -51,57 +66,100 @@ public class ResultHandler
         return testReportData;
     }
 
-    protected void handleRequest()
-        throws SocketException, IOException
+    @Override
+    protected void connected()
     {
-        StringBuffer buffer = new StringBuffer();
-        int bite = -1;
+        decoder.reset();
+    }
 
-        while ( ( bite = in.read() ) != -1 )
+    @Override
+    protected void received( ByteBuffer data )
+        throws IOException
+    {
+        if ( endOfTestRun )
         {
-            final char chr = (char) bite;
+            // waiting the ACK to be flushed, nothing else matters
+            data.position( data.limit() );
+            return;
+        }
 
-            if ( chr == NULL_BYTE )
+        decoder.decode( data, frames );
+        try
+        {
+            for ( String frame : frames )
             {
-                final String data = buffer.toString();
-                getLogger().debug( "[RESULT] Recivied data: " + data );
-                buffer = new StringBuffer();
-
-                if ( data.endsWith( END_OF_TEST_SUITE ) )
+                if ( handleFrame( frame ) )
                 {
-                    getLogger().debug( "[RESULT] End test suite" );
-
-                    this.testReportData.add( data );
+                    endOfTestRun = true;
+                    done();
+                    return;
                 }
-                else if ( data.equals( END_OF_TEST_RUN ) )
-                {
-                    getLogger().debug( "[RESULT] End test run - sending ACK: " + ACK_OF_TEST_RESULT );
+            }
+        }
+        finally
+        {
+            frames.clear();
+        }
+    }
 
-                    // Sending the acknowledgement to testrunner
+    @Override
+    protected void endOfStream()
+    {
+        getLogger().debug( "[RESULT] Socket buffer " + decoder.getPending() );
+        done();
+    }
 
-                    BufferedWriter out = new BufferedWriter( new OutputStreamWriter( super.out ) );
-                    out.write( ACK_OF_TEST_RESULT + NULL_BYTE );
-                    out.flush();
-                    break;
-                }
+    /**
+     * @return true when the test run is over
+     */
+    private boolean handleFrame( String data )
+        throws IOException
+    {
+        if ( getLogger().isDebugEnabled() )
+        {
+            getLogger().debug( "[RESULT] Recivied data: " + data );
+        }
+
+        if ( data.endsWith( END_OF_TEST_SUITE ) )
+        {
+            getLogger().debug( "[RESULT] End test suite" );
+
+            // once handed to the listener there is no reason to keep it around
+            if ( listener != null )
+            {
+                listener.testSuiteFinished( data );
             }
             else
             {
-                buffer.append( chr );
+                this.testReportData.add( data );
             }
         }
+        else if ( data.equals( END_OF_TEST_RUN ) )
+        {
+            getLogger().debug( "[RESULT] End test run - sending ACK: " + ACK_OF_TEST_RESULT );
+
+            // Sending the acknowledgement to testrunner
+            send( ACK_OF_TEST_RESULT + NULL_BYTE );
+            return true;
+        }
+        return false;
+    }
 
-        getLogger().debug( "[RESULT] Socket buffer " + buffer );
+    public void start( int testPort )
+    {
+        start( testPort, null );
     }
 
-    public void start(int testPort)
+    public void start( int testPort, TestResultListener listener )
     {
         reset();
 
         testReportPort = testPort;
-        testReportData = new ArrayList<String>();
+        testReportData = Collections.synchronizedList( new ArrayList<String>() );
+        this.listener = listener;
+        this.endOfTestRun = false;
 
-        launch();
+        listen();
     }
 
     @Override
@@ -110,6 +168,7 @@ public class ResultHandler
         super.reset();
 
         testReportData = null;
+        listener = null;
     }
 
     @Override
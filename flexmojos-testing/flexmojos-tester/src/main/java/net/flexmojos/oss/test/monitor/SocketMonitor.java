@@ -0,0 +1,234 @@
+/**
+ * Flexmojos is a set of maven goals to allow maven users to compile, optimize and test Flex SWF, Flex SWC, Air SWF and Air SWC.
+ * Copyright (C) 2008-2012  Marvin Froeder <marvin@flexmojos.net>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.flexmojos.oss.test.monitor;
+
+import java.io.IOException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import org.codehaus.plexus.component.annotations.Component;
+import org.codehaus.plexus.logging.AbstractLogEnabled;
+import org.codehaus.plexus.personality.plexus.lifecycle.phase.Disposable;
+
+/**
+ * Single thread serving the control and result sockets of every running test. Each socket is a
+ * {@link AbstractSocketHandler} registered on one selector, so concurrent test runs don't cost extra threads.
+ * <p>
+ * Everything touching the selector or the handlers channels runs on the monitor thread, other threads hand work over
+ * using {@link #execute(Runnable)}.
+ * </p>
+ */
+@Component( role = SocketMonitor.class )
+public class SocketMonitor
+    extends AbstractLogEnabled
+    implements Runnable, Disposable
+{
+
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<Runnable>();
+
+    /**
+     * Handlers waiting on a deadline, only accessed from the monitor thread
+     */
+    private final Set<AbstractSocketHandler> handlers = new LinkedHashSet<AbstractSocketHandler>();
+
+    private Selector selector;
+
+    private Thread thread;
+
+    /**
+     * Run the task on the monitor thread, starting it when needed
+     */
+    public void execute( Runnable task )
+    {
+        Selector selector = open();
+        tasks.add( task );
+        selector.wakeup();
+    }
+
+    private synchronized Selector open()
+    {
+        if ( thread == null )
+        {
+            try
+            {
+                selector = Selector.open();
+            }
+            catch ( IOException e )
+            {
+                throw new IllegalStateException( "Unable to open socket selector", e );
+            }
+
+            thread = new Thread( this, "flexmojos-socket-monitor" );
+            thread.setDaemon( true );
+            thread.start();
+        }
+        return selector;
+    }
+
+    Selector getSelector()
+    {
+        return selector;
+    }
+
+    void watch( AbstractSocketHandler handler )
+    {
+        handlers.add( handler );
+    }
+
+    void unwatch( AbstractSocketHandler handler )
+    {
+        handlers.remove( handler );
+    }
+
+    public void run()
+    {
+        Selector selector = this.selector;
+        while ( selector.isOpen() )
+        {
+            try
+            {
+                selector.select( nextTimeout() );
+            }
+            catch ( IOException e )
+            {
+                getLogger().debug( "[MONITOR] Select failed", e );
+            }
+            catch ( RuntimeException e )
+            {
+                // selector closed
+                break;
+            }
+
+            runTasks();
+
+            if ( !selector.isOpen() )
+            {
+                break;
+            }
+
+            Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+            while ( keys.hasNext() )
+            {
+                SelectionKey key = keys.next();
+                keys.remove();
+
+                AbstractSocketHandler handler = (AbstractSocketHandler) key.attachment();
+                try
+                {
+                    handler.handle( key );
+                }
+                catch ( Throwable e )
+                {
+                    handler.fail( e );
+                }
+            }
+
+            checkDeadlines();
+        }
+    }
+
+    private void runTasks()
+    {
+        Runnable task;
+        while ( ( task = tasks.poll() ) != null )
+        {
+            try
+            {
+                task.run();
+            }
+            catch ( Throwable e )
+            {
+                getLogger().debug( "[MONITOR] Error running task " + task, e );
+            }
+        }
+    }
+
+    private void checkDeadlines()
+    {
+        long now = System.currentTimeMillis();
+
+        List<AbstractSocketHandler> expired = new ArrayList<AbstractSocketHandler>();
+        for ( AbstractSocketHandler handler : handlers )
+        {
+            long deadline = handler.getDeadline();
+            if ( deadline != 0 && deadline <= now )
+            {
+                expired.add( handler );
+            }
+        }
+
+        for ( AbstractSocketHandler handler : expired )
+        {
+            try
+            {
+                handler.deadlineExpired();
+            }
+            catch ( Throwable e )
+            {
+                handler.fail( e );
+            }
+        }
+    }
+
+    /**
+     * @return how long select may block, 0 when nobody is waiting on a deadline
+     */
+    private long nextTimeout()
+    {
+        long next = 0;
+        for ( AbstractSocketHandler handler : handlers )
+        {
+            long deadline = handler.getDeadline();
+            if ( deadline != 0 && ( next == 0 || deadline < next ) )
+            {
+                next = deadline;
+            }
+        }
+
+        if ( next == 0 )
+        {
+            return 0;
+        }
+        return Math.max( 1, next - System.currentTimeMillis() );
+    }
+
+    public synchronized void dispose()
+    {
+        if ( selector != null )
+        {
+            try
+            {
+                selector.close();
+            }
+            catch ( IOException e )
+            {
+                getLogger().debug( "[MONITOR] Error closing selector", e );
+            }
+        }
+        thread = null;
+        selector = null;
+    }
+
+}
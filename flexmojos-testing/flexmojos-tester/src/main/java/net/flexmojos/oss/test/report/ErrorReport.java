@@ -19,35 +19,45 @@ package net.flexmojos.oss.test.report;
 
 import org.codehaus.plexus.util.xml.Xpp3Dom;
 
-@SuppressWarnings( "unused" )
 public class ErrorReport
 {
-    private String message;
+    private final String message;
 
-    private String stackTrace;
+    private final String stackTrace;
 
-    private String type;
-
-    private Xpp3Dom dom;
+    private final String type;
 
     public ErrorReport( Xpp3Dom dom )
     {
-        this.dom = dom;
+        this( dom.getAttribute( "message" ), dom.getAttribute( "type" ), getStackTrace( dom ) );
+    }
+
+    ErrorReport( String message, String type, String stackTrace )
+    {
+        this.message = message;
+        this.type = type;
+        this.stackTrace = stackTrace;
+    }
+
+    private static String getStackTrace( Xpp3Dom dom )
+    {
+        String stackTrace = dom.getAttribute( "stackTrace" );
+        return stackTrace != null ? stackTrace : dom.getValue();
     }
 
     public String getMessage()
     {
-        return dom.getAttribute( "message" );
+        return message;
     }
 
     public String getStackTrace()
     {
-        return dom.getAttribute( "stackTrace" );
+        return stackTrace;
     }
 
     public String getType()
     {
-        return dom.getAttribute( "type" );
+        return type;
     }
 
     public void setMessage( String message )
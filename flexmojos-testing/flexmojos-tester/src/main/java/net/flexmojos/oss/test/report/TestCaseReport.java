@@ -22,80 +22,96 @@ import java.util.List;
 
 import org.codehaus.plexus.util.xml.Xpp3Dom;
 
-@SuppressWarnings( "unused" )
+/**
+ * Test suite result, the attributes are parsed once and no XML tree is kept around. Use {@link TestReportParser} to
+ * stream a report without building a DOM.
+ */
 public class TestCaseReport
 {
 
-    private List<TestCoverageReport> coverage;
-
-    private Xpp3Dom dom;
+    private final List<TestCoverageReport> coverage;
 
-    private int errors;
+    private final int errors;
 
-    private int failures;
+    private final int failures;
 
-    private List<TestMethodReport> methods;
+    private final List<TestMethodReport> methods;
 
-    private String name;
+    private final String name;
 
-    private int tests;
+    private final int tests;
 
-    private double time;
+    private final double time;
 
     public TestCaseReport( Xpp3Dom dom )
     {
-        this.dom = dom;
+        this( dom.getAttribute( "name" ), toInt( dom.getAttribute( "tests" ) ), toInt( dom.getAttribute( "errors" ) ),
+              toInt( dom.getAttribute( "failures" ) ), toDouble( dom.getAttribute( "time" ) ) );
+
+        for ( Xpp3Dom child : dom.getChildren( "testcase" ) )
+        {
+            methods.add( new TestMethodReport( child ) );
+        }
+        for ( Xpp3Dom child : dom.getChildren( "coverage" ) )
+        {
+            coverage.add( new TestCoverageReport( child ) );
+        }
+    }
+
+    private TestCaseReport( String name, int tests, int errors, int failures, double time )
+    {
+        this.name = name;
+        this.tests = tests;
+        this.errors = errors;
+        this.failures = failures;
+        this.time = time;
+        this.methods = new ArrayList<TestMethodReport>();
+        this.coverage = new ArrayList<TestCoverageReport>();
+    }
+
+    static int toInt( String value )
+    {
+        return value == null ? 0 : Integer.parseInt( value.trim() );
+    }
+
+    static double toDouble( String value )
+    {
+        return value == null ? 0 : Double.parseDouble( value.trim() );
     }
 
     public List<TestCoverageReport> getCoverage()
     {
-        if ( this.coverage == null )
-        {
-            this.coverage = new ArrayList<TestCoverageReport>();
-            for ( Xpp3Dom child : dom.getChildren( "coverage" ) )
-            {
-                coverage.add( new TestCoverageReport( child ) );
-            }
-        }
         return coverage;
     }
 
     public int getErrors()
     {
-        return Integer.parseInt( dom.getAttribute( "errors" ) );
+        return errors;
     }
 
     public int getFailures()
     {
-        return Integer.parseInt( dom.getAttribute( "failures" ) );
+        return failures;
     }
 
     public List<TestMethodReport> getMethods()
     {
-        if ( this.methods == null )
-        {
-            this.methods = new ArrayList<TestMethodReport>();
-            for ( Xpp3Dom child : dom.getChildren( "testcase" ) )
-            {
-                methods.add( new TestMethodReport( child ) );
-            }
-        }
-        return this.methods;
+        return methods;
     }
 
     public String getName()
     {
-        return dom.getAttribute( "name" );
+        return name;
     }
 
     public int getTests()
     {
-        return Integer.parseInt( dom.getAttribute( "tests" ) );
+        return tests;
     }
 
     public double getTime()
     {
-        return Double.parseDouble( dom.getAttribute( "time" ) );
+        return time;
     }
 
     public void setCoverage( List<TestCoverageReport> coverage )
@@ -17,29 +17,30 @@
  */
 package net.flexmojos.oss.test.report;
 
-import java.util.ArrayList;
-import java.util.List;
-
 import org.codehaus.plexus.util.xml.Xpp3Dom;
 
-@SuppressWarnings( "unused" )
 public class TestCoverageReport
 {
 
-    private String classname;
-
-    private Integer[] touchs;
+    private final String classname;
 
-    private Xpp3Dom dom;
+    private final int[] touchs;
 
     public TestCoverageReport( Xpp3Dom dom )
     {
-        this.dom = dom;
+        this.classname = dom.getAttribute( "classname" );
+
+        Xpp3Dom[] children = dom.getChildren( "touch" );
+        this.touchs = new int[children.length];
+        for ( int i = 0; i < children.length; i++ )
+        {
+            touchs[i] = Integer.parseInt( children[i].getValue().trim() );
+        }
     }
 
     public String getClassname()
     {
-        return dom.getAttribute( "classname" );
+        return classname;
     }
 
     public void setClassname( String classname )
@@ -47,20 +48,22 @@ public class TestCoverageReport
         throw new UnsupportedOperationException();
     }
 
+    /**
+     * @return the touched lines, without boxing them
+     */
+    public int[] getTouchedLines()
+    {
+        return touchs;
+    }
+
     public Integer[] getTouchs()
     {
-        if ( touchs == null )
+        Integer[] boxed = new Integer[touchs.length];
+        for ( int i = 0; i < touchs.length; i++ )
         {
-            List<Integer> t = new ArrayList<Integer>();
-            Xpp3Dom[] children = dom.getChildren("touch");
-            for ( Xpp3Dom c : children )
-            {
-                t.add( Integer.valueOf( c.getValue() ) );
-            }
-
-            touchs = t.toArray( new Integer[0] );
+            boxed[i] = touchs[i];
         }
-        return touchs;
+        return boxed;
     }
 
     public void setTouchs( Integer[] touchs )
@@ -19,53 +19,58 @@ package net.flexmojos.oss.test.report;
 
 import org.codehaus.plexus.util.xml.Xpp3Dom;
 
-@SuppressWarnings( "unused" )
 public class TestMethodReport
 {
 
+    private final String name;
+
+    private final double time;
+
     private ErrorReport error;
 
     private ErrorReport failure;
 
-    private String name;
+    public TestMethodReport( Xpp3Dom dom )
+    {
+        this( dom.getAttribute( "name" ), TestCaseReport.toDouble( dom.getAttribute( "time" ) ) );
 
-    private double time;
+        Xpp3Dom child = dom.getChild( "error" );
+        if ( child != null )
+        {
+            error = new ErrorReport( child );
+        }
 
-    private Xpp3Dom dom;
+        child = dom.getChild( "failure" );
+        if ( child != null )
+        {
+            failure = new ErrorReport( child );
+        }
+    }
 
-    public TestMethodReport( Xpp3Dom dom )
+    TestMethodReport( String name, double time )
     {
-        this.dom = dom;
+        this.name = name;
+        this.time = time;
     }
 
     public ErrorReport getError()
     {
-        Xpp3Dom child = this.dom.getChild( "error" );
-        if ( child != null )
-        {
-            return new ErrorReport( child );
-        }
-        return null;
+        return error;
     }
 
     public ErrorReport getFailure()
     {
-        Xpp3Dom child = this.dom.getChild( "failure" );
-        if ( child != null )
-        {
-            return new ErrorReport( child );
-        }
-        return null;
+        return failure;
     }
 
     public String getName()
     {
-        return dom.getAttribute( "name" );
+        return name;
     }
 
     public double getTime()
     {
-        return Double.parseDouble( dom.getAttribute( "time" ) );
+        return time;
     }
 
     public void setError( ErrorReport error )
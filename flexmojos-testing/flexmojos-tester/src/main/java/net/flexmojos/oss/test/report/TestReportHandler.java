@@ -0,0 +1,48 @@
+/**
+ * Flexmojos is a set of maven goals to allow maven users to compile, optimize and test Flex SWF, Flex SWC, Air SWF and Air SWC.
+ * Copyright (C) 2008-2012  Marvin Froeder <marvin@flexmojos.net>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.flexmojos.oss.test.report;
+
+/**
+ * Receives the parts of a test suite report as {@link TestReportParser} reads them.
+ */
+public interface TestReportHandler
+{
+
+    void testSuite( String name, int tests, int errors, int failures, double time );
+
+    /**
+     * @param classname may be null, the test suite name is the class then
+     */
+    void testCase( String classname, String name, double time );
+
+    /**
+     * Error of the last test case
+     */
+    void error( ErrorReport error );
+
+    /**
+     * Failure of the last test case
+     */
+    void failure( ErrorReport failure );
+
+    /**
+     * @param touchs touched lines, only valid until the method returns
+     */
+    void coverage( String classname, int[] touchs, int touchCount );
+
+}
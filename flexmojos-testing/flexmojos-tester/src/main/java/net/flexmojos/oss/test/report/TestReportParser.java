@@ -0,0 +1,139 @@
+/**
+ * Flexmojos is a set of maven goals to allow maven users to compile, optimize and test Flex SWF, Flex SWC, Air SWF and Air SWC.
+ * Copyright (C) 2008-2012  Marvin Froeder <marvin@flexmojos.net>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.flexmojos.oss.test.report;
+
+import java.io.Reader;
+import java.util.Arrays;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Streams the first test suite of a report to a {@link TestReportHandler} without building a DOM or keeping the test
+ * cases around. The touched lines buffer is reused between reports, so an instance must not be shared by threads.
+ */
+public class TestReportParser
+{
+
+    private static final XMLInputFactory XML_INPUT_FACTORY = XMLInputFactory.newInstance();
+
+    private int[] touchs = new int[256];
+
+    public void parse( Reader reader, TestReportHandler handler )
+        throws XMLStreamException
+    {
+        XMLStreamReader xml = XML_INPUT_FACTORY.createXMLStreamReader( reader );
+        try
+        {
+            boolean suite = false;
+            boolean testCase = false;
+            String coverageClass = null;
+            int touchCount = 0;
+
+            while ( xml.hasNext() )
+            {
+                int event = xml.next();
+                if ( event == XMLStreamConstants.START_ELEMENT )
+                {
+                    String element = xml.getLocalName();
+                    if ( !suite )
+                    {
+                        if ( "testsuite".equals( element ) )
+                        {
+                            suite = true;
+                            handler.testSuite( xml.getAttributeValue( null, "name" ),
+                                               TestCaseReport.toInt( xml.getAttributeValue( null, "tests" ) ),
+                                               TestCaseReport.toInt( xml.getAttributeValue( null, "errors" ) ),
+                                               TestCaseReport.toInt( xml.getAttributeValue( null, "failures" ) ),
+                                               TestCaseReport.toDouble( xml.getAttributeValue( null, "time" ) ) );
+                        }
+                    }
+                    else if ( "testcase".equals( element ) )
+                    {
+                        testCase = true;
+                        handler.testCase( xml.getAttributeValue( null, "classname" ),
+                                          xml.getAttributeValue( null, "name" ),
+                                          TestCaseReport.toDouble( xml.getAttributeValue( null, "time" ) ) );
+                    }
+                    else if ( testCase && ( "error".equals( element ) || "failure".equals( element ) ) )
+                    {
+                        String message = xml.getAttributeValue( null, "message" );
+                        String type = xml.getAttributeValue( null, "type" );
+                        String stackTrace = xml.getAttributeValue( null, "stackTrace" );
+                        if ( stackTrace == null )
+                        {
+                            stackTrace = xml.getElementText();
+                        }
+
+                        ErrorReport error = new ErrorReport( message, type, stackTrace );
+                        if ( "error".equals( element ) )
+                        {
+                            handler.error( error );
+                        }
+                        else
+                        {
+                            handler.failure( error );
+                        }
+                    }
+                    else if ( "coverage".equals( element ) )
+                    {
+                        coverageClass = xml.getAttributeValue( null, "classname" );
+                        touchCount = 0;
+                    }
+                    else if ( coverageClass != null && "touch".equals( element ) )
+                    {
+                        if ( touchCount == touchs.length )
+                        {
+                            touchs = Arrays.copyOf( touchs, touchCount * 2 );
+                        }
+                        touchs[touchCount++] = TestCaseReport.toInt( xml.getElementText() );
+                    }
+                }
+                else if ( event == XMLStreamConstants.END_ELEMENT && suite )
+                {
+                    String element = xml.getLocalName();
+                    if ( "testcase".equals( element ) )
+                    {
+                        testCase = false;
+                    }
+                    else if ( "coverage".equals( element ) && coverageClass != null )
+                    {
+                        handler.coverage( coverageClass, touchs, touchCount );
+                        coverageClass = null;
+                    }
+                    else if ( "testsuite".equals( element ) )
+                    {
+                        return;
+                    }
+                }
+            }
+
+            if ( !suite )
+            {
+                throw new XMLStreamException( "No testsuite found" );
+            }
+        }
+        finally
+        {
+            xml.close();
+        }
+    }
+
+}
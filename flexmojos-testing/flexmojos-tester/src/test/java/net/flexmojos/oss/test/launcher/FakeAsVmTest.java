@@ -0,0 +1,140 @@
+/**
+ * Flexmojos is a set of maven goals to allow maven users to compile, optimize and test Flex SWF, Flex SWC, Air SWF and Air SWC.
+ * Copyright (C) 2008-2012  Marvin Froeder <marvin@flexmojos.net>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.flexmojos.oss.test.launcher;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Properties;
+
+import org.codehaus.plexus.PlexusTestNGCase;
+import net.flexmojos.oss.test.TestRequest;
+import net.flexmojos.oss.test.TestRunner;
+import net.flexmojos.oss.test.TestRunnerException;
+import net.flexmojos.oss.util.SocketUtil;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class FakeAsVmTest
+    extends PlexusTestNGCase
+{
+
+    private Properties settings;
+
+    @BeforeMethod
+    public void setUp()
+        throws Exception
+    {
+        settings = new Properties();
+        settings.setProperty( FakeAsVm.PORT, String.valueOf( SocketUtil.freePort() ) );
+        settings.setProperty( FakeAsVm.CONTROL_PORT, String.valueOf( SocketUtil.freePort() ) );
+    }
+
+    private List<String> run()
+        throws Exception
+    {
+        File file = File.createTempFile( "fake-asvm", ".properties" );
+        file.deleteOnExit();
+        OutputStream out = new FileOutputStream( file );
+        try
+        {
+            settings.store( out, null );
+        }
+        finally
+        {
+            out.close();
+        }
+
+        TestRequest request = new TestRequest();
+        FakeAsVm.configure( request, file );
+        request.setTestControlPort( Integer.parseInt( settings.getProperty( FakeAsVm.CONTROL_PORT ) ) );
+        request.setTestPort( Integer.parseInt( settings.getProperty( FakeAsVm.PORT ) ) );
+        request.setFirstConnectionTimeout( 10000 );
+        request.setTestTimeout( 2000 );
+        request.setPingInterval( 100 );
+
+        return lookup( TestRunner.class ).run( request );
+    }
+
+    @Test( timeOut = 30000 )
+    public void runSuites()
+        throws Exception
+    {
+        settings.setProperty( FakeAsVm.SUITES, "500" );
+        settings.setProperty( FakeAsVm.TESTS_PER_SUITE, "20" );
+        settings.setProperty( FakeAsVm.FAILURES_PER_SUITE, "1" );
+
+        List<String> results = run();
+
+        assertEquals( results.size(), 500 );
+        assertTrue( results.get( 0 ).contains( "failures='1'" ), results.get( 0 ) );
+    }
+
+    @Test( timeOut = 30000 )
+    public void slowPingAnswers()
+        throws Exception
+    {
+        settings.setProperty( FakeAsVm.SUITES, "5" );
+        settings.setProperty( FakeAsVm.SUITE_LATENCY, "100" );
+        settings.setProperty( FakeAsVm.PING_LATENCY, "500" );
+
+        assertEquals( run().size(), 5 );
+    }
+
+    @Test( timeOut = 30000 )
+    public void crash()
+        throws Exception
+    {
+        settings.setProperty( FakeAsVm.SUITES, "5" );
+        settings.setProperty( FakeAsVm.CRASH_AFTER_SUITES, "2" );
+
+        try
+        {
+            run();
+            fail( "The player crashed" );
+        }
+        catch ( TestRunnerException e )
+        {
+            // either the exit code or the closed sockets are noticed first
+        }
+    }
+
+    @Test( timeOut = 30000 )
+    public void hang()
+        throws Exception
+    {
+        settings.setProperty( FakeAsVm.SUITES, "5" );
+        settings.setProperty( FakeAsVm.HANG_AFTER_SUITES, "2" );
+
+        try
+        {
+            run();
+            fail( "The player hung" );
+        }
+        catch ( TestRunnerException e )
+        {
+            assertTrue( e.getMessage().contains( "No answer" ), e.getMessage() );
+        }
+    }
+
+}
@@ -22,6 +22,7 @@ import static net.flexmojos.oss.test.monitor.CommConstraints.FINISHED;
 import static net.flexmojos.oss.test.monitor.CommConstraints.OK;
 import static net.flexmojos.oss.test.monitor.CommConstraints.STATUS;
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
 
 import java.io.BufferedReader;
 import java.io.InputStreamReader;
@@ -163,4 +164,43 @@ public class AsVmPingTest
         s.close();
     }
 
+    @Test( timeOut = 20000 )
+    public void checkPingInterval()
+        throws Exception
+    {
+        ping.start( port, firstConnectionTimeout, testTimeout, 50 );
+
+        do
+        {
+            Thread.yield();
+            Thread.sleep( 100 );
+        }
+        while ( !ThreadStatus.STARTED.equals( ping.getStatus() ) );
+
+        Socket s = new Socket( "localhost", port );
+        BufferedReader in = new BufferedReader( new InputStreamReader( s.getInputStream() ) );
+        OutputStream out = s.getOutputStream();
+
+        long start = System.currentTimeMillis();
+        for ( int i = 0; i < 10; i++ )
+        {
+            assertEquals( in.readLine(), STATUS );
+            IOUtil.copy( OK + EOL, out );
+        }
+        assertEquals( in.readLine(), STATUS );
+        IOUtil.copy( FINISHED + EOL, out );
+
+        do
+        {
+            Thread.yield();
+            Thread.sleep( 100 );
+        }
+        while ( !ThreadStatus.DONE.equals( ping.getStatus() ) );
+
+        // the old fixed 2 seconds interval would take 20 seconds
+        assertTrue( System.currentTimeMillis() - start < 5000 );
+
+        s.close();
+    }
+
 }
@@ -21,12 +21,17 @@ import static org.hamcrest.MatcherAssert.assertThat;
 import static net.flexmojos.oss.test.monitor.CommConstraints.END_OF_TEST_RUN;
 import static net.flexmojos.oss.test.monitor.CommConstraints.END_OF_TEST_SUITE;
 import static net.flexmojos.oss.test.monitor.CommConstraints.NULL_BYTE;
+import static net.flexmojos.oss.test.monitor.CommConstraints.ACK_OF_TEST_RESULT;
 import static org.testng.Assert.assertEquals;
 
+import java.io.BufferedOutputStream;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.ServerSocket;
 import java.net.Socket;
 import java.net.SocketException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.codehaus.plexus.PlexusTestNGCase;
 import org.codehaus.plexus.util.IOUtil;
@@ -143,4 +148,69 @@ public class ResultHandlerTest
         assertEquals( result.getTestReportData().size(), 2 );
         assertThat( result.getTestReportData(), IsCollectionContaining.hasItems( REPORT1, REPORT2 ) );
     }
+
+    @Test( timeOut = 60000 )
+    public void throughput()
+        throws Exception
+    {
+        final int suites = 5000;
+
+        StringBuilder report = new StringBuilder( "<testsuite name=\"com.Throughput\">" );
+        while ( report.length() < 2048 )
+        {
+            report.append( "<testcase classname=\"com.Throughput\" time=\"0.001\" name=\"testSomething\"/>" );
+        }
+        report.append( END_OF_TEST_SUITE );
+        byte[] frame = ( report.toString() + NULL_BYTE ).getBytes( "UTF-8" );
+
+        final AtomicInteger received = new AtomicInteger();
+        final AtomicReference<String> last = new AtomicReference<String>();
+        result.start( port, new TestResultListener()
+        {
+            public void testSuiteFinished( String result )
+            {
+                received.incrementAndGet();
+                last.set( result );
+            }
+        } );
+
+        do
+        {
+            Thread.yield();
+            Thread.sleep( 100 );
+        }
+        while ( !ThreadStatus.STARTED.equals( result.getStatus() ) );
+
+        // fake test runner
+        Socket s = new Socket( "localhost", port );
+        OutputStream out = new BufferedOutputStream( s.getOutputStream() );
+        for ( int i = 0; i < suites; i++ )
+        {
+            out.write( frame );
+        }
+        out.write( ( END_OF_TEST_RUN + NULL_BYTE ).getBytes( "UTF-8" ) );
+        out.flush();
+
+        InputStream in = s.getInputStream();
+        StringBuilder ack = new StringBuilder();
+        int b;
+        while ( ( b = in.read() ) > 0 )
+        {
+            ack.append( (char) b );
+        }
+        s.close();
+
+        do
+        {
+            Thread.yield();
+            Thread.sleep( 10 );
+        }
+        while ( !ThreadStatus.DONE.equals( result.getStatus() ) );
+
+        assertEquals( ack.toString(), ACK_OF_TEST_RESULT );
+        // streamed to the listener, nothing kept in memory
+        assertEquals( result.getTestReportData().size(), 0 );
+        assertEquals( received.get(), suites );
+        assertEquals( last.get(), report.toString() );
+    }
 }
@@ -17,10 +17,20 @@
  */
 package net.flexmojos.oss.test.util;
 
+import static java.util.Arrays.asList;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
 import java.io.StringReader;
+import java.util.Arrays;
 
 import org.codehaus.plexus.util.xml.Xpp3DomBuilder;
+import net.flexmojos.oss.test.report.ErrorReport;
 import net.flexmojos.oss.test.report.TestCaseReport;
+import net.flexmojos.oss.test.report.TestMethodReport;
+import net.flexmojos.oss.test.report.TestReportHandler;
+import net.flexmojos.oss.test.report.TestReportParser;
 import org.testng.annotations.Test;
 
 public class TestXmlParser
@@ -34,7 +44,8 @@ public class TestXmlParser
             + "<failure message=\"All artifacts should be deleted by SnapshotRemoverTask.\" type=\"junit.framework.AssertionFailedError\">"
             + "junit.framework.AssertionFailedError: All artifacts should be deleted by SnapshotRemoverTask."
             + "at junit.framework.Assert.fail(Assert.java:47)" + "at junit.framework.Assert.assertTrue(Assert.java:20)"
-            + "</failure>" + "</testcase>" + "</testsuite>";
+            + "</failure>" + "</testcase>" + "<coverage classname=\"flex.Test\"><touch>3</touch><touch>7</touch></coverage>"
+            + "</testsuite>";
 
     @Test
     public void parseXml()
@@ -42,5 +53,74 @@ public class TestXmlParser
     {
         TestCaseReport report = new TestCaseReport( Xpp3DomBuilder.build( new StringReader( XML ) ) );
         System.out.println( report );
+        check( report );
+    }
+
+    @Test
+    public void streamXml()
+        throws Exception
+    {
+        final StringBuilder events = new StringBuilder();
+        TestReportHandler handler = new TestReportHandler()
+        {
+            public void testSuite( String name, int tests, int errors, int failures, double time )
+            {
+                events.append( "suite " + name + " " + tests + " " + time + "\n" );
+            }
+
+            public void testCase( String classname, String name, double time )
+            {
+                events.append( "case " + classname + " " + name + " " + time + "\n" );
+            }
+
+            public void error( ErrorReport error )
+            {
+                events.append( "error " + error.getType() + "\n" );
+            }
+
+            public void failure( ErrorReport failure )
+            {
+                events.append( "failure " + failure.getType() + "\n" );
+            }
+
+            public void coverage( String classname, int[] touchs, int touchCount )
+            {
+                events.append( "coverage " + classname + " " + Arrays.toString( Arrays.copyOf( touchs, touchCount ) )
+                    + "\n" );
+            }
+        };
+
+        // attributes are trimmed
+        new TestReportParser().parse( new StringReader( XML.replace( "tests=\"1\"", "tests=\" 1 \"" ) ), handler );
+
+        assertEquals( events.toString(), "suite com.Test 1 0.312\n" //
+            + "case flex.Test testExecute 0.297\n" //
+            + "case flex.Test testExecute 0.297\n" //
+            + "case null removeAllSnapshots 3.125\n" //
+            + "failure junit.framework.AssertionFailedError\n" //
+            + "coverage flex.Test [3, 7]\n" );
+    }
+
+    private void check( TestCaseReport report )
+    {
+        assertEquals( report.getName(), "com.Test" );
+        assertEquals( report.getTests(), 1 );
+        assertEquals( report.getFailures(), 0 );
+        assertEquals( report.getTime(), 0.312 );
+        assertEquals( report.getMethods().size(), 3 );
+
+        TestMethodReport first = report.getMethods().get( 0 );
+        assertEquals( first.getName(), "testExecute" );
+        assertEquals( first.getTime(), 0.297 );
+        assertNull( first.getFailure() );
+
+        TestMethodReport failed = report.getMethods().get( 2 );
+        assertEquals( failed.getFailure().getType(), "junit.framework.AssertionFailedError" );
+        assertTrue( failed.getFailure().getStackTrace().startsWith( "junit.framework.AssertionFailedError" ) );
+        assertNull( failed.getError() );
+
+        assertEquals( report.getCoverage().size(), 1 );
+        assertEquals( report.getCoverage().get( 0 ).getClassname(), "flex.Test" );
+        assertEquals( asList( report.getCoverage().get( 0 ).getTouchs() ), asList( 3, 7 ) );
     }
 }
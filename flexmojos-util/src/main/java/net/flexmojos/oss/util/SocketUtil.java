@@ -35,4 +35,35 @@ public class SocketUtil
             ss.close();
         }
     }
+
+    /**
+     * @return true when nothing is listening on the port
+     */
+    public static boolean isFree( int port )
+    {
+        ServerSocket ss = null;
+        try
+        {
+            ss = new ServerSocket( port );
+            return true;
+        }
+        catch ( IOException e )
+        {
+            return false;
+        }
+        finally
+        {
+            if ( ss != null )
+            {
+                try
+                {
+                    ss.close();
+                }
+                catch ( IOException e )
+                {
+                    // ignore
+                }
+            }
+        }
+    }
 }